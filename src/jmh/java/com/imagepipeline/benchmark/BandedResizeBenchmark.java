@@ -0,0 +1,62 @@
+package com.imagepipeline.benchmark;
+
+import com.imagepipeline.image.FitMode;
+import com.imagepipeline.image.ImageScaler;
+import com.imagepipeline.image.ResampleFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes a panorama-sized image to the 1080-pixel rendition on the calling thread and
+ * in row bands on a fork/join pool with one worker per processor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BandedResizeBenchmark {
+
+    private static final int LONG_EDGE = 1080;
+
+    // Bicubic resizes are drawn by Java2D on the calling thread, so only convolution filters split.
+    @Param({"LANCZOS3", "MITCHELL"})
+    public ResampleFilter filter;
+
+    private BufferedImage source;
+    private ForkJoinPool forkJoinPool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = BenchmarkImages.image(48);
+        forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        forkJoinPool.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage sequential() {
+        return ImageScaler.resample(source, LONG_EDGE, LONG_EDGE * 3 / 4, FitMode.FIT, filter, null, null);
+    }
+
+    @Benchmark
+    public BufferedImage banded() {
+        return ImageScaler.resample(source, LONG_EDGE, LONG_EDGE * 3 / 4, FitMode.FIT, filter, null, forkJoinPool);
+    }
+
+}
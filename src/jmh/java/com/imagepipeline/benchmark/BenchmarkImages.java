@@ -0,0 +1,55 @@
+package com.imagepipeline.benchmark;
+
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Synthetic test images shared by the benchmarks.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Builds a 4:3 image with the given number of megapixels.
+     *
+     * @param megapixels the approximate pixel count in millions.
+     * @return the rendered image.
+     */
+    static BufferedImage image(int megapixels) {
+        int width = (int) Math.round(Math.sqrt(megapixels * 1_000_000d * 4 / 3));
+        int height = width * 3 / 4;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        g2d.fillRect(0, 0, width, height);
+        g2d.setColor(Color.WHITE);
+        for (int x = 0; x < width; x += 64) {
+            g2d.drawLine(x, 0, width - x, height);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    /**
+     * Encodes a synthetic image as JPEG and wraps it as an upload.
+     *
+     * @param megapixels the approximate pixel count in millions.
+     * @return the JPEG upload.
+     * @throws IOException if encoding fails.
+     */
+    static MockMultipartFile jpegFile(int megapixels) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(image(megapixels), "jpg", baos);
+        return new MockMultipartFile("file", "benchmark.jpg", "image/jpeg", baos.toByteArray());
+    }
+
+}
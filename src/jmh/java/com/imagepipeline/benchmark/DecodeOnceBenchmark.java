@@ -0,0 +1,59 @@
+package com.imagepipeline.benchmark;
+
+import com.imagepipeline.image.ImageContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the CPU time per image of the former per-stage decode (metadata and
+ * thumbnail each calling {@code ImageIO.read}) against a shared {@link ImageContext}.
+ * Both variants run single-threaded, so the average time is the CPU cost per image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DecodeOnceBenchmark {
+
+    @Param({"2", "12"})
+    public int megapixels;
+
+    private MockMultipartFile file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkImages.jpegFile(megapixels);
+    }
+
+    @Benchmark
+    public void decodePerStage(Blackhole blackhole) throws IOException {
+        // Metadata stage.
+        BufferedImage forMetadata = ImageIO.read(file.getInputStream());
+        blackhole.consume(forMetadata.getWidth());
+        // Thumbnail stage.
+        BufferedImage forThumbnail = ImageIO.read(file.getInputStream());
+        blackhole.consume(forThumbnail.getRGB(0, 0));
+    }
+
+    @Benchmark
+    public void sharedContext(Blackhole blackhole) throws IOException {
+        try (ImageContext context = new ImageContext(file)) {
+            blackhole.consume(context.getWidth());
+            blackhole.consume(context.getImage().getRGB(0, 0));
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.imagepipeline.benchmark;
+
+import com.imagepipeline.image.ByteBufferPool;
+import com.imagepipeline.image.ChromaSubsampling;
+import com.imagepipeline.image.ChunkedImageOutputStream;
+import com.imagepipeline.image.ImageEncoder;
+import com.imagepipeline.image.ImageScaler;
+import com.imagepipeline.image.JpegEncoder;
+import com.imagepipeline.image.WebpEncoder;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode time and output size of a 1080-pixel rendition for each encoder setting,
+ * against the former {@code ImageIO.write(image, "jpg", ...)} at its default quality.
+ * Every setting encodes the same rendition to the same bytes; their number is reported
+ * as the {@code bytes} secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EncoderBenchmark {
+
+    private static final int LONG_EDGE = 1080;
+
+    private static final int TARGET_BYTES = 100_000;
+
+    @Param({"imageio-default", "jpeg-q75", "jpeg-q85", "jpeg-q85-progressive", "jpeg-q85-444",
+            "jpeg-target-100KB", "webp-q75", "webp-q85"})
+    public String setting;
+
+    private BufferedImage rendition;
+
+    private ImageEncoder encoder;
+
+    private final ChunkedImageOutputStream output = new ChunkedImageOutputStream(new ByteBufferPool(1 << 16, 64));
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rendition = ImageScaler.resample(BenchmarkImages.image(12), LONG_EDGE, LONG_EDGE * 3 / 4);
+        encoder = switch (setting) {
+            case "imageio-default" -> null;
+            case "jpeg-q85-progressive" -> new JpegEncoder(true, true, ChromaSubsampling.YUV420);
+            case "jpeg-q85-444" -> new JpegEncoder(false, true, ChromaSubsampling.YUV444);
+            case "webp-q75", "webp-q85" -> {
+                if (!WebpEncoder.isAvailable()) {
+                    throw new IllegalStateException("No WebP writer on the benchmark classpath");
+                }
+                yield new WebpEncoder(false);
+            }
+            default -> new JpegEncoder(false, true, ChromaSubsampling.YUV420);
+        };
+    }
+
+    /**
+     * Size of the encoded rendition, reported next to the timing.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+
+        public long bytes;
+
+    }
+
+    @Benchmark
+    public byte[] encode(EncodedSize size) throws IOException {
+        byte[] encoded = encode();
+        size.bytes = encoded.length;
+        return encoded;
+    }
+
+    private byte[] encode() throws IOException {
+        return switch (setting) {
+            case "imageio-default" -> {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ImageIO.write(rendition, "jpg", baos);
+                yield baos.toByteArray();
+            }
+            case "jpeg-q75", "webp-q75" -> encoder.encode(rendition, 0.75f);
+            case "jpeg-target-100KB" -> {
+                encoder.encodeWithin(rendition, TARGET_BYTES, 0.4f, 0.85f, output);
+                yield output.toByteArray();
+            }
+            default -> encoder.encode(rendition, 0.85f);
+        };
+    }
+
+}
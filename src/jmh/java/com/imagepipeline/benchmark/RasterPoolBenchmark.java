@@ -0,0 +1,80 @@
+package com.imagepipeline.benchmark;
+
+import com.imagepipeline.image.FitMode;
+import com.imagepipeline.image.ImageScaler;
+import com.imagepipeline.image.RasterPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GC pressure of the rendition chain with new rasters against pooled ones.
+ * Run with the {@code gc} profiler (enabled in the build) and compare
+ * {@code gc.alloc.rate.norm}, the bytes allocated per chain, and {@code gc.count}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-XX:+UseG1GC"})
+public class RasterPoolBenchmark {
+
+    private static final int[] LONG_EDGES = {2048, 1080, 480};
+
+    private static final int THUMBNAIL_SIZE = 150;
+
+    @Param({"false", "true"})
+    public boolean pooled;
+
+    private BufferedImage decoded;
+
+    private RasterPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // The chain starts from an image decoded close to the largest rendition.
+        decoded = ImageScaler.resample(BenchmarkImages.image(12), 2730, 2048);
+        pool = pooled ? new RasterPool(256L << 20) : null;
+    }
+
+    @Benchmark
+    public int renditionChain() {
+        BufferedImage previous = decoded;
+        int checksum = 0;
+        for (int longEdge : LONG_EDGES) {
+            BufferedImage image = resample(previous, longEdge, longEdge * 3 / 4, FitMode.FIT);
+            checksum += image.getRGB(0, 0);
+            if (previous != decoded) {
+                release(previous);
+            }
+            previous = image;
+        }
+        BufferedImage thumbnail = resample(previous, THUMBNAIL_SIZE, THUMBNAIL_SIZE, FitMode.CROP);
+        checksum += thumbnail.getRGB(0, 0);
+        release(thumbnail);
+        release(previous);
+        return checksum;
+    }
+
+    private BufferedImage resample(BufferedImage source, int width, int height, FitMode mode) {
+        return pool != null
+                ? ImageScaler.resample(source, width, height, mode, pool)
+                : ImageScaler.resample(source, width, height, mode);
+    }
+
+    private void release(BufferedImage image) {
+        if (pool != null) {
+            pool.release(image);
+        }
+    }
+
+}
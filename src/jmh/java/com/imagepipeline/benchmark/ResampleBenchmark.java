@@ -0,0 +1,55 @@
+package com.imagepipeline.benchmark;
+
+import com.imagepipeline.image.FitMode;
+import com.imagepipeline.image.ImageScaler;
+import com.imagepipeline.image.ResampleFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resamples a decoded image to the 1080-pixel rendition with each filter, on the SIMD
+ * kernel and with the scalar kernel forced. Java2D bicubic does not use the kernel and
+ * serves as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ResampleBenchmark {
+
+    private static final int LONG_EDGE = 1080;
+
+    @Param({"BICUBIC", "LANCZOS3", "MITCHELL", "AREA"})
+    public ResampleFilter filter;
+
+    private BufferedImage decoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // What the subsampled decode hands the resample: about twice the target size.
+        decoded = ImageScaler.resample(BenchmarkImages.image(12), 2 * LONG_EDGE, 2 * LONG_EDGE * 3 / 4);
+    }
+
+    @Benchmark
+    public BufferedImage vector() {
+        return ImageScaler.resample(decoded, LONG_EDGE, LONG_EDGE * 3 / 4, FitMode.FIT, filter, null);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dpipeline.resample.scalar=true"})
+    public BufferedImage scalar() {
+        return ImageScaler.resample(decoded, LONG_EDGE, LONG_EDGE * 3 / 4, FitMode.FIT, filter, null);
+    }
+
+}
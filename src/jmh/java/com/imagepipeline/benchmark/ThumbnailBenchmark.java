@@ -0,0 +1,67 @@
+package com.imagepipeline.benchmark;
+
+import com.imagepipeline.image.ImageContext;
+import com.imagepipeline.image.ImageScaler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the former full-resolution decode plus {@code getScaledInstance(SCALE_SMOOTH)}
+ * thumbnail path against the subsampled decode plus single bicubic resample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ThumbnailBenchmark {
+
+    private static final int THUMBNAIL_SIZE = 150;
+
+    @Param({"12", "24", "50"})
+    public int megapixels;
+
+    private MockMultipartFile file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkImages.jpegFile(megapixels);
+    }
+
+    @Benchmark
+    public BufferedImage scaledInstance() throws IOException {
+        BufferedImage original = ImageIO.read(file.getInputStream());
+        Image scaled = original.getScaledInstance(THUMBNAIL_SIZE, THUMBNAIL_SIZE, Image.SCALE_SMOOTH);
+        BufferedImage thumbnail = new BufferedImage(THUMBNAIL_SIZE, THUMBNAIL_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = thumbnail.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(scaled, 0, 0, null);
+        g2d.dispose();
+        return thumbnail;
+    }
+
+    @Benchmark
+    public BufferedImage subsampledDecode() throws IOException {
+        try (ImageContext context = new ImageContext(file)) {
+            BufferedImage source = context.getImage(THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+            return ImageScaler.resample(source, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+        }
+    }
+
+}
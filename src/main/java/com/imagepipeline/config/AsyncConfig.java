@@ -1,25 +1,104 @@
 package com.imagepipeline.config;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Configuration for the asynchronous executor.
+ * Configuration for the pipeline executors.
+ * CPU-bound stages (decode, resize, encode) run on a bounded platform-thread pool
+ * sized to the number of cores; blocking I/O stages (S3, DynamoDB, SNS) run on
+ * virtual threads with a concurrency cap. Both have bounded queues and publish
+ * queue depth, active workers and rejections as metrics tagged with the executor name.
+ * A fork/join pool splits the resize of large images across cores.
  */
 @Configuration
 public class AsyncConfig {
 
     /**
-     * Creates a fixed thread pool executor with 10 threads.
+     * Creates the executor for CPU-bound stages.
+     * When its queue is full new tasks are rejected, which fails the stage that
+     * submitted them. Running them on the submitting thread instead would put a
+     * decode or an encode on an AWS SDK completion thread and stall every S3,
+     * DynamoDB and SNS response behind it.
      *
-     * @return an Executor instance.
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param meterRegistry      the registry for executor metrics.
+     * @return the CPU executor.
      */
-    @Bean
-    public Executor taskExecutor() {
-        return Executors.newFixedThreadPool(5);
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor cpuExecutor(PipelineProperties pipelineProperties, MeterRegistry meterRegistry) {
+        PipelineProperties.Executors.Cpu cpu = pipelineProperties.getExecutors().getCpu();
+        int threads = cpu.getThreads() > 0 ? cpu.getThreads() : Runtime.getRuntime().availableProcessors();
+        AtomicLong rejected = new AtomicLong();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(cpu.getQueueCapacity()),
+                Thread.ofPlatform().name("pipeline-cpu-", 0).factory(),
+                (task, pool) -> {
+                    rejected.incrementAndGet();
+                    throw new RejectedExecutionException("CPU executor saturated: " + pool.getQueue().size()
+                            + " tasks queued");
+                });
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "pipeline.cpu");
+        FunctionCounter.builder("executor.rejected", rejected, AtomicLong::get)
+                .tag("name", "pipeline.cpu")
+                .description("Tasks that did not fit in the queue")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Creates the executor for blocking I/O stages, backed by virtual threads.
+     * When its queue is full new tasks are rejected.
+     *
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param meterRegistry      the registry for executor metrics.
+     * @return the I/O executor.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BoundedVirtualThreadExecutor ioExecutor(PipelineProperties pipelineProperties, MeterRegistry meterRegistry) {
+        PipelineProperties.Executors.Io io = pipelineProperties.getExecutors().getIo();
+        BoundedVirtualThreadExecutor executor =
+                new BoundedVirtualThreadExecutor("pipeline-io", io.getMaxConcurrency(), io.getQueueCapacity());
+        Gauge.builder("executor.active", executor, BoundedVirtualThreadExecutor::getActiveCount)
+                .tag("name", "pipeline.io")
+                .description("Tasks currently running")
+                .register(meterRegistry);
+        Gauge.builder("executor.queued", executor, BoundedVirtualThreadExecutor::getQueueSize)
+                .tag("name", "pipeline.io")
+                .description("Tasks waiting to run")
+                .register(meterRegistry);
+        FunctionCounter.builder("executor.rejected", executor, BoundedVirtualThreadExecutor::getRejectedCount)
+                .tag("name", "pipeline.io")
+                .description("Tasks rejected because the queue was full")
+                .register(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * Creates the fork/join pool that resizes large images in parallel row bands.
+     * It is separate from the CPU executor, whose threads block in it while the bands run.
+     *
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param meterRegistry      the registry for executor metrics.
+     * @return the resize pool.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool resizePool(PipelineProperties pipelineProperties, MeterRegistry meterRegistry) {
+        int parallelism = pipelineProperties.getExecutors().getResize().getParallelism();
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        ExecutorServiceMetrics.monitor(meterRegistry, pool, "pipeline.resize");
+        return pool;
     }
 
 }
@@ -4,13 +4,25 @@ import lombok.AllArgsConstructor;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+
+import java.net.URI;
 
 /**
  * AWS configuration for creating AWS SDK client beans.
+ * All clients are asynchronous and share one Netty HTTP client, and with it one event loop
+ * group; no thread is held while a request is in flight. Pool sizes, timeouts and the retry
+ * policy come from {@link AwsProperties}.
  */
 @Configuration
 @EnableConfigurationProperties(AwsProperties.class)
@@ -19,40 +31,99 @@ public class AwsConfig {
 
     private final AwsProperties awsProperties;
 
+    /**
+     * Creates the non-blocking HTTP client shared by all AWS clients.
+     * The SDK does not close a client it was given, so the bean closes it on shutdown.
+     *
+     * @return a Netty-based SdkAsyncHttpClient.
+     */
+    @Bean(destroyMethod = "close")
+    public SdkAsyncHttpClient awsHttpClient() {
+        AwsProperties.Http http = awsProperties.getHttp();
+        SdkEventLoopGroup.Builder eventLoop = SdkEventLoopGroup.builder();
+        if (http.getEventLoopThreads() > 0) {
+            eventLoop.numberOfThreads(http.getEventLoopThreads());
+        }
+        return NettyNioAsyncHttpClient.builder()
+                .eventLoopGroupBuilder(eventLoop)
+                .maxConcurrency(http.getMaxConnections())
+                .maxPendingConnectionAcquires(http.getMaxPendingConnectionAcquires())
+                .connectionTimeout(http.getConnectionTimeout())
+                .connectionAcquisitionTimeout(http.getConnectionAcquisitionTimeout())
+                .readTimeout(http.getReadTimeout())
+                .writeTimeout(http.getWriteTimeout())
+                .connectionMaxIdleTime(http.getConnectionMaxIdleTime())
+                .build();
+    }
+
     /**
      * Creates an Amazon S3 client.
+     * An endpoint override points the client at a local S3 stand-in.
      *
-     * @return an S3Client instance configured for a specific region.
+     * @param awsHttpClient the shared HTTP client.
+     * @return an S3AsyncClient instance configured for a specific region.
      */
     @Bean
-    public S3Client s3Client() {
-        return S3Client.builder()
-                .region(Region.of(awsProperties.getRegion()))
+    public S3AsyncClient s3Client(SdkAsyncHttpClient awsHttpClient) {
+        return configure(S3AsyncClient.builder()
+                        .forcePathStyle(awsProperties.getS3().isPathStyleAccess())
+                        .httpClient(awsHttpClient),
+                awsProperties.getS3().getEndpoint())
                 .build();
     }
 
     /**
      * Creates an Amazon DynamoDB client.
+     * An endpoint override points the client at DynamoDB Local.
      *
-     * @return a DynamoDbClient instance configured for a specific region.
+     * @param awsHttpClient the shared HTTP client.
+     * @return a DynamoDbAsyncClient instance configured for a specific region.
      */
     @Bean
-    public DynamoDbClient dynamoDbClient() {
-        return DynamoDbClient.builder()
-                .region(Region.of(awsProperties.getRegion()))
+    public DynamoDbAsyncClient dynamoDbClient(SdkAsyncHttpClient awsHttpClient) {
+        return configure(DynamoDbAsyncClient.builder().httpClient(awsHttpClient),
+                awsProperties.getDynamodb().getEndpoint())
                 .build();
     }
 
     /**
      * Creates an Amazon SNS client.
      *
-     * @return an SnsClient instance configured for a specific region.
+     * @param awsHttpClient the shared HTTP client.
+     * @return an SnsAsyncClient instance configured for a specific region.
      */
     @Bean
-    public SnsClient snsClient() {
-        return SnsClient.builder()
-                .region(Region.of(awsProperties.getRegion()))
+    public SnsAsyncClient snsClient(SdkAsyncHttpClient awsHttpClient) {
+        return configure(SnsAsyncClient.builder().httpClient(awsHttpClient),
+                awsProperties.getSns().getEndpoint())
                 .build();
     }
 
+    /**
+     * Applies the settings common to all clients: region, endpoint override, retry policy and timeouts.
+     *
+     * @param builder         the client builder.
+     * @param serviceEndpoint the service-specific endpoint override, or null.
+     * @param <B>             the builder type.
+     * @param <C>             the client type.
+     * @return the builder.
+     */
+    private <B extends AwsClientBuilder<B, C>, C> B configure(B builder, String serviceEndpoint) {
+        AwsProperties.Http http = awsProperties.getHttp();
+        AwsProperties.Retry retry = awsProperties.getRetry();
+        builder.region(Region.of(awsProperties.getRegion()))
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .retryStrategy(AwsRetryStrategy.forRetryMode(retry.getMode()).toBuilder()
+                                .maxAttempts(Math.max(1, retry.getMaxAttempts()))
+                                .build())
+                        .apiCallTimeout(http.getApiCallTimeout())
+                        .apiCallAttemptTimeout(http.getApiCallAttemptTimeout())
+                        .build());
+        String endpoint = StringUtils.hasText(serviceEndpoint) ? serviceEndpoint : awsProperties.getEndpoint();
+        if (StringUtils.hasText(endpoint)) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder;
+    }
+
 }
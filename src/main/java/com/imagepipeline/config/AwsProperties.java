@@ -4,6 +4,10 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.retry.RetryMode;
+
+import java.time.Duration;
 
 /**
  * Configuration properties for AWS settings.
@@ -19,6 +23,23 @@ public class AwsProperties {
     @Setter
     private String region;
 
+    /**
+     * Optional endpoint override for all services, e.g. LocalStack.
+     * A service-specific endpoint takes precedence.
+     */
+    @Setter
+    private String endpoint;
+
+    /**
+     * Settings of the HTTP client shared by all AWS clients.
+     */
+    private final Http http = new Http();
+
+    /**
+     * Retry policy of all AWS clients.
+     */
+    private final Retry retry = new Retry();
+
     /**
      * S3 specific settings.
      */
@@ -34,6 +55,78 @@ public class AwsProperties {
      */
     private final Sns sns = new Sns();
 
+    @Setter
+    @Getter
+    public static class Http {
+
+        /**
+         * Maximum number of open connections per service endpoint.
+         */
+        private int maxConnections = 200;
+
+        /**
+         * Maximum number of requests waiting for a connection.
+         */
+        private int maxPendingConnectionAcquires = 10_000;
+
+        /**
+         * Number of event loop threads; 0 uses the SDK default.
+         */
+        private int eventLoopThreads;
+
+        /**
+         * Timeout for establishing a connection.
+         */
+        private Duration connectionTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Timeout for obtaining a connection from the pool.
+         */
+        private Duration connectionAcquisitionTimeout = Duration.ofSeconds(10);
+
+        /**
+         * Timeout for reading from a connection.
+         */
+        private Duration readTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Timeout for writing to a connection.
+         */
+        private Duration writeTimeout = Duration.ofSeconds(30);
+
+        /**
+         * Idle connections are closed after this time.
+         */
+        private Duration connectionMaxIdleTime = Duration.ofSeconds(60);
+
+        /**
+         * Optional timeout of a whole API call, including retries.
+         */
+        private Duration apiCallTimeout;
+
+        /**
+         * Optional timeout of a single attempt of an API call.
+         */
+        private Duration apiCallAttemptTimeout;
+
+    }
+
+    @Setter
+    @Getter
+    public static class Retry {
+
+        /**
+         * SDK retry mode: standard, adaptive or legacy.
+         */
+        private RetryMode mode = RetryMode.STANDARD;
+
+        /**
+         * Attempts per API call, including the first.
+         */
+        private int maxAttempts = 3;
+
+    }
+
     @Setter
     @Getter
     public static class S3 {
@@ -43,6 +136,36 @@ public class AwsProperties {
          */
         private String bucket;
 
+        /**
+         * Optional endpoint override, e.g. a local S3 stand-in such as MinIO or LocalStack.
+         */
+        private String endpoint;
+
+        /**
+         * Use path-style addressing (required by most local S3 stand-ins).
+         */
+        private boolean pathStyleAccess;
+
+        /**
+         * Objects of at least this size are uploaded with a streaming multipart upload.
+         */
+        private DataSize multipartThreshold = DataSize.ofMegabytes(64);
+
+        /**
+         * Size of each multipart part. S3 requires at least 5 MB for all but the last part.
+         */
+        private DataSize partSize = DataSize.ofMegabytes(8);
+
+        /**
+         * Maximum number of parts uploaded in parallel.
+         */
+        private int multipartConcurrency = 4;
+
+        /**
+         * Attempts per part before the whole upload is aborted.
+         */
+        private int partMaxAttempts = 3;
+
     }
 
     @Setter
@@ -54,6 +177,26 @@ public class AwsProperties {
          */
         private String table;
 
+        /**
+         * Optional endpoint override, e.g. DynamoDB Local.
+         */
+        private String endpoint;
+
+        /**
+         * Maximum number of items per BatchWriteItem request (DynamoDB allows at most 25).
+         */
+        private int batchSize = 25;
+
+        /**
+         * How long a pending item may wait for its batch to fill before it is sent anyway.
+         */
+        private Duration batchLinger = Duration.ofMillis(20);
+
+        /**
+         * Attempts per batch, counting retries of unprocessed items, before its items fail.
+         */
+        private int batchMaxAttempts = 8;
+
     }
 
     @Setter
@@ -65,5 +208,56 @@ public class AwsProperties {
          */
         private String topicArn;
 
+        /**
+         * Optional endpoint override, e.g. LocalStack.
+         */
+        private String endpoint;
+
+        /**
+         * Maximum number of messages per PublishBatch request (SNS allows at most 10).
+         */
+        private int batchSize = 10;
+
+        /**
+         * How long a pending message may wait for its batch to fill before it is sent anyway.
+         */
+        private Duration batchLinger = Duration.ofMillis(50);
+
+        /**
+         * Attempts per message, counting retries of failed batch entries, before it fails.
+         */
+        private int batchMaxAttempts = 5;
+
+        /**
+         * Publish one message per uploaded image.
+         */
+        private boolean individual = true;
+
+        /**
+         * Digest messages that combine many uploads into one.
+         */
+        private final Digest digest = new Digest();
+
+        @Setter
+        @Getter
+        public static class Digest {
+
+            /**
+             * Also publish digest messages; subscribers pick them with a filter policy on {@code type}.
+             */
+            private boolean enabled;
+
+            /**
+             * Maximum time an upload waits before its digest is published.
+             */
+            private Duration interval = Duration.ofSeconds(60);
+
+            /**
+             * Maximum number of uploads per digest.
+             */
+            private int maxImages = 100;
+
+        }
+
     }
 }
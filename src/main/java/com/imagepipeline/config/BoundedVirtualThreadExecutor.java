@@ -0,0 +1,109 @@
+package com.imagepipeline.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor that runs each task on a new virtual thread, with a cap on the number
+ * of tasks running at once and a bounded queue for the rest.
+ * Tasks submitted while the queue is full are rejected with a
+ * {@link RejectedExecutionException}.
+ */
+public class BoundedVirtualThreadExecutor implements Executor {
+
+    private final String name;
+    private final Semaphore permits;
+    private final BlockingQueue<Runnable> queue;
+    private final ThreadFactory threadFactory;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean shutdown;
+
+    /**
+     * Constructs a BoundedVirtualThreadExecutor.
+     *
+     * @param name           the thread name prefix.
+     * @param maxConcurrency the maximum number of tasks running at once.
+     * @param queueCapacity  the maximum number of tasks waiting to run.
+     */
+    public BoundedVirtualThreadExecutor(String name, int maxConcurrency, int queueCapacity) {
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrency);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.threadFactory = Thread.ofVirtual().name(name + "-", 0).factory();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown || !queue.offer(task)) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException(name + " executor saturated: " + queue.size() + " tasks queued");
+        }
+        drain();
+    }
+
+    /**
+     * Starts queued tasks while permits are available. Called after every submission
+     * and every task completion, so a queued task is never left behind.
+     */
+    private void drain() {
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            Runnable next = queue.poll();
+            if (next == null) {
+                permits.release();
+                continue;
+            }
+            active.incrementAndGet();
+            threadFactory.newThread(() -> {
+                try {
+                    next.run();
+                } finally {
+                    active.decrementAndGet();
+                    permits.release();
+                    drain();
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * Returns the number of tasks currently running.
+     *
+     * @return the active task count.
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     *
+     * @return the queue depth.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of tasks rejected since startup.
+     *
+     * @return the rejected task count.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Stops accepting new tasks. Running and queued tasks still complete.
+     */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+}
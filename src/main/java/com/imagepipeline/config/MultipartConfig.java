@@ -0,0 +1,44 @@
+package com.imagepipeline.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
+
+/**
+ * Multipart resolution that leaves batch uploads alone.
+ * The standard resolver has the servlet container read every part of a multipart
+ * request before the handler runs. Batch uploads are parsed by their handler as a
+ * stream instead, so the resolver skips them.
+ */
+@Configuration
+public class MultipartConfig {
+
+    /**
+     * Path of the batch upload endpoint, whose body is parsed as a stream.
+     */
+    static final String BATCH_PATH = "/api/images/batch";
+
+    /**
+     * Creates the multipart resolver, configured from the {@code spring.servlet.multipart} properties.
+     *
+     * @param multipartProperties the multipart properties.
+     * @return the resolver.
+     */
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public StandardServletMultipartResolver multipartResolver(MultipartProperties multipartProperties) {
+        StandardServletMultipartResolver resolver = new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                String path = request.getRequestURI().substring(request.getContextPath().length());
+                return !BATCH_PATH.equals(path) && super.isMultipart(request);
+            }
+        };
+        resolver.setResolveLazily(multipartProperties.isResolveLazily());
+        resolver.setStrictServletCompliance(multipartProperties.isStrictServletCompliance());
+        return resolver;
+    }
+
+}
@@ -0,0 +1,532 @@
+package com.imagepipeline.config;
+
+import com.imagepipeline.image.ChromaSubsampling;
+import com.imagepipeline.image.FitMode;
+import com.imagepipeline.image.OutputFormat;
+import com.imagepipeline.image.ResampleFilter;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties for the image processing pipeline.
+ */
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "pipeline")
+public class PipelineProperties {
+
+    /**
+     * Renditions generated for every upload.
+     */
+    @Setter
+    private List<Rendition> renditions = new ArrayList<>();
+
+    /**
+     * Output encoding of renditions and resized variants.
+     */
+    private final Encoding encoding = new Encoding();
+
+    /**
+     * Pool of pixel arrays reused by the resize stages.
+     */
+    private final RasterPool rasterPool = new RasterPool();
+
+    /**
+     * Memory limits for decoding uploads.
+     */
+    private final Decode decode = new Decode();
+
+    /**
+     * Executor settings for CPU-bound and I/O-bound stages.
+     */
+    private final Executors executors = new Executors();
+
+    /**
+     * Admission control for new uploads.
+     */
+    private final Admission admission = new Admission();
+
+    /**
+     * On-disk spool holding the uploads of unfinished jobs.
+     */
+    private final Spool spool = new Spool();
+
+    /**
+     * Content-hash deduplication of uploads.
+     */
+    private final Dedup dedup = new Dedup();
+
+    /**
+     * Near-duplicate search by perceptual hash.
+     */
+    private final Similarity similarity = new Similarity();
+
+    /**
+     * Cache of renditions served by the API.
+     */
+    private final RenditionCache renditionCache = new RenditionCache();
+
+    /**
+     * On-demand resizing of stored images.
+     */
+    private final Resize resize = new Resize();
+
+    /**
+     * Imports from an existing S3 prefix.
+     */
+    private final S3Import s3Import = new S3Import();
+
+    @Setter
+    @Getter
+    public static class Rendition {
+
+        /**
+         * Rendition name, used in the S3 key.
+         */
+        private String name;
+
+        /**
+         * Target size of the long edge in pixels. Images are never upscaled.
+         */
+        private int longEdge;
+
+        /**
+         * Whether to fit the whole image or center-crop it to a square.
+         */
+        private FitMode mode = FitMode.FIT;
+
+        /**
+         * Optional size budget; the encoding quality is lowered as far as the minimum
+         * quality to fit it. Without a budget the configured quality is used.
+         */
+        private DataSize targetSize;
+
+        /**
+         * Resampling filter; the convolution filters take longer than Java2D bicubic but
+         * filter every source pixel.
+         */
+        private ResampleFilter filter = ResampleFilter.BICUBIC;
+
+    }
+
+    @Getter
+    public static class Encoding {
+
+        /**
+         * Format of the stored renditions; it also sets their S3 key extension.
+         */
+        @Setter
+        private OutputFormat format = OutputFormat.JPEG;
+
+        /**
+         * Encoding quality, from 0 to 1.
+         */
+        @Setter
+        private float quality = 0.85f;
+
+        /**
+         * Lowest quality a rendition with a target size may be encoded at.
+         */
+        @Setter
+        private float minQuality = 0.4f;
+
+        /**
+         * JPEG-specific settings.
+         */
+        private final Jpeg jpeg = new Jpeg();
+
+        /**
+         * WebP-specific settings.
+         */
+        private final Webp webp = new Webp();
+
+        /**
+         * Pool of direct buffers that renditions are encoded into and uploaded from.
+         */
+        private final Buffers buffers = new Buffers();
+
+        @Setter
+        @Getter
+        public static class Jpeg {
+
+            /**
+             * Write progressive scans, which are usually smaller and render coarse-to-fine.
+             */
+            private boolean progressive = true;
+
+            /**
+             * Compute Huffman tables per image instead of using the standard tables.
+             */
+            private boolean optimizeHuffman = true;
+
+            /**
+             * Resolution of the chroma channels relative to luma.
+             */
+            private ChromaSubsampling chromaSubsampling = ChromaSubsampling.YUV420;
+
+        }
+
+        @Setter
+        @Getter
+        public static class Webp {
+
+            /**
+             * Encode WebP losslessly, ignoring the quality.
+             */
+            private boolean lossless;
+
+        }
+
+        @Setter
+        @Getter
+        public static class Buffers {
+
+            /**
+             * Size of each pooled buffer; an encoded rendition spans as many as it needs.
+             */
+            private DataSize chunkSize = DataSize.ofKilobytes(64);
+
+            /**
+             * Maximum total size of the idle buffers kept for reuse.
+             */
+            private DataSize maxRetained = DataSize.ofMegabytes(32);
+
+        }
+    }
+
+    @Setter
+    @Getter
+    public static class RasterPool {
+
+        /**
+         * Maximum total size of the idle pixel arrays kept for reuse; 0 disables pooling.
+         */
+        private DataSize maxRetained = DataSize.ofMegabytes(256);
+
+    }
+
+    @Setter
+    @Getter
+    public static class Decode {
+
+        /**
+         * Largest raster a decode may hold; larger ones are decoded in bands and downscaled
+         * on the fly, so their memory depends on the output size instead of the upload's.
+         */
+        private DataSize memoryBudget = DataSize.ofMegabytes(64);
+
+        /**
+         * Pixel memory of one band of a streamed decode. JPEG and PNG decode the rows above
+         * each band again, so smaller bands save memory at the cost of decode time.
+         */
+        private DataSize bandSize = DataSize.ofMegabytes(16);
+
+        /**
+         * Total decode memory all jobs may reserve at once; jobs that do not fit wait.
+         */
+        private DataSize maxReserved = DataSize.ofGigabytes(1);
+
+    }
+
+    @Getter
+    public static class Executors {
+
+        /**
+         * Pool for CPU-bound stages: decode, resize and encode.
+         */
+        private final Cpu cpu = new Cpu();
+
+        /**
+         * Virtual-thread executor for blocking I/O stages: S3, DynamoDB and SNS.
+         */
+        private final Io io = new Io();
+
+        /**
+         * Fork/join pool that splits the resize of a large image into row bands.
+         */
+        private final Resize resize = new Resize();
+
+        @Setter
+        @Getter
+        public static class Cpu {
+
+            /**
+             * Number of threads; 0 uses the number of available processors.
+             */
+            private int threads;
+
+            /**
+             * Maximum number of queued tasks; past it the stage submitting a task fails.
+             */
+            private int queueCapacity = 64;
+
+        }
+
+        @Setter
+        @Getter
+        public static class Io {
+
+            /**
+             * Maximum number of I/O tasks running at once.
+             */
+            private int maxConcurrency = 256;
+
+            /**
+             * Maximum number of queued tasks before new tasks are rejected.
+             */
+            private int queueCapacity = 1024;
+
+        }
+
+        @Setter
+        @Getter
+        public static class Resize {
+
+            /**
+             * Number of worker threads; 0 uses the number of available processors.
+             */
+            private int parallelism;
+
+            /**
+             * Source pixel count from which a resize with a convolution filter is split into
+             * bands; smaller ones, and bicubic resizes, run on the calling thread.
+             */
+            private long minPixels = 8_000_000;
+
+        }
+    }
+
+    @Setter
+    @Getter
+    public static class Admission {
+
+        /**
+         * Maximum number of jobs processed at once.
+         */
+        private int maxInFlightJobs = 32;
+
+        /**
+         * Maximum total upload size of the jobs processed at once.
+         */
+        private DataSize maxInFlightBytes = DataSize.ofMegabytes(512);
+
+        /**
+         * What to do with an upload that arrives while the pipeline is saturated.
+         */
+        private Overflow overflow = Overflow.REJECT;
+
+        /**
+         * Maximum number of uploads waiting in the spool.
+         */
+        private int maxSpooledJobs = 1000;
+
+        /**
+         * HTTP status returned when an upload is rejected (429 or 503).
+         */
+        private int rejectionStatus = 503;
+
+        /**
+         * Value of the Retry-After header on rejected uploads.
+         */
+        private Duration retryAfter = Duration.ofSeconds(5);
+
+        /**
+         * How long an entry of a batch upload waits for capacity before it is rejected.
+         * The batch stops reading its request body while an entry waits.
+         */
+        private Duration batchWait = Duration.ofMinutes(10);
+
+        /**
+         * Largest file accepted in a batch upload; a larger part or archive entry is
+         * rejected without stopping the batch.
+         */
+        private DataSize batchMaxFileSize = DataSize.ofMegabytes(100);
+
+        /**
+         * Largest batch upload request body; reading stops with 413 past this size.
+         */
+        private DataSize batchMaxRequestSize = DataSize.ofGigabytes(10);
+
+        /**
+         * How long the progress of a batch stays available after its body has been read.
+         */
+        private Duration batchRetention = Duration.ofDays(1);
+
+        public enum Overflow {
+
+            /**
+             * Reject the upload with {@code Retry-After}.
+             */
+            REJECT,
+
+            /**
+             * Keep the upload in the spool and process it when capacity frees up.
+             */
+            SPOOL
+
+        }
+    }
+
+    @Setter
+    @Getter
+    public static class Spool {
+
+        /**
+         * Directory owned by the pipeline; unfinished jobs found here at startup are restarted.
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/image-pipeline/spool";
+
+        /**
+         * Force spooled data to the storage device before the job starts.
+         */
+        private boolean fsync;
+
+    }
+
+    @Setter
+    @Getter
+    public static class Dedup {
+
+        /**
+         * Skip processing of uploads whose bytes match an image already processed.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Use the SHA-256 of the upload as its image id, so S3 keys and the metadata item
+         * are derived from the content and a repeated upload maps to the same objects.
+         */
+        private boolean contentAddressed;
+
+        /**
+         * Maximum number of content hashes remembered; the least recently seen are dropped first.
+         */
+        private int maxEntries = 100_000;
+
+    }
+
+    @Setter
+    @Getter
+    public static class Similarity {
+
+        /**
+         * Default maximum Hamming distance, out of 64 bits, for two images to count as similar.
+         */
+        private int maxDistance = 10;
+
+        /**
+         * Default maximum number of similar images returned.
+         */
+        private int maxResults = 20;
+
+    }
+
+    @Getter
+    public static class RenditionCache {
+
+        /**
+         * Maximum total size of the renditions held on the heap.
+         */
+        @Setter
+        private DataSize maxHeapSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Value of the Cache-Control max-age sent with served renditions.
+         */
+        @Setter
+        private Duration maxAge = Duration.ofDays(1);
+
+        /**
+         * Optional second tier on local disk, holding renditions evicted from the heap.
+         */
+        private final Disk disk = new Disk();
+
+        @Setter
+        @Getter
+        public static class Disk {
+
+            /**
+             * Keep renditions evicted from the heap in memory-mapped files.
+             */
+            private boolean enabled;
+
+            /**
+             * Directory of the disk tier; its contents are discarded at startup.
+             */
+            private String directory = System.getProperty("java.io.tmpdir") + "/image-pipeline/rendition-cache";
+
+            /**
+             * Maximum total size of the renditions held on disk.
+             */
+            private DataSize maxSize = DataSize.ofGigabytes(1);
+
+        }
+    }
+
+    @Setter
+    @Getter
+    public static class Resize {
+
+        /**
+         * Widths and heights a client may request; anything else is rejected, so clients
+         * cannot fill the cache with arbitrary sizes.
+         */
+        private List<Integer> allowedSizes = new ArrayList<>(List.of(64, 128, 256, 320, 512, 640, 1024, 1280, 2048));
+
+        /**
+         * Maximum total size of the resized variants held on the heap.
+         */
+        private DataSize maxCacheSize = DataSize.ofMegabytes(64);
+
+    }
+
+    @Setter
+    @Getter
+    public static class S3Import {
+
+        /**
+         * Maximum number of objects of one import being downloaded or processed at once.
+         */
+        private int concurrency = 8;
+
+        /**
+         * Maximum number of keys per ListObjectsV2 page (S3 returns at most 1000).
+         */
+        private int pageSize = 1000;
+
+        /**
+         * Leading bytes fetched with a ranged GET to recognize an object as an image
+         * before the whole object is downloaded.
+         */
+        private DataSize headerSize = DataSize.ofKilobytes(64);
+
+        /**
+         * How long a downloaded object waits for pipeline capacity, shared with uploads,
+         * before it counts as failed and is left for a retry on resume.
+         */
+        private Duration admissionWait = Duration.ofMinutes(10);
+
+        /**
+         * Directory of the import checkpoints and of the objects being processed.
+         */
+        private String directory = System.getProperty("java.io.tmpdir") + "/image-pipeline/imports";
+
+        /**
+         * Minimum time between two checkpoint writes of an import; its end is always written.
+         */
+        private Duration checkpointInterval = Duration.ofSeconds(5);
+
+        /**
+         * Resume the imports a previous run left unfinished at startup.
+         */
+        private boolean resumeOnStartup = true;
+
+    }
+}
@@ -0,0 +1,40 @@
+package com.imagepipeline.config;
+
+import com.imagepipeline.image.RasterPool;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for the pool of pixel arrays shared by the resize stages.
+ */
+@Configuration
+public class RasterPoolConfig {
+
+    /**
+     * Creates the raster pool and publishes its hits, misses and retained bytes.
+     *
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param meterRegistry      the registry for pool metrics.
+     * @return the raster pool.
+     */
+    @Bean
+    public RasterPool rasterPool(PipelineProperties pipelineProperties, MeterRegistry meterRegistry) {
+        RasterPool pool = new RasterPool(pipelineProperties.getRasterPool().getMaxRetained().toBytes());
+        FunctionCounter.builder("pipeline.raster.pool.acquired", pool, RasterPool::getHits)
+                .tag("result", "hit")
+                .description("Resize rasters backed by a reused pixel array")
+                .register(meterRegistry);
+        FunctionCounter.builder("pipeline.raster.pool.acquired", pool, RasterPool::getMisses)
+                .tag("result", "miss")
+                .description("Resize rasters that needed a new pixel array")
+                .register(meterRegistry);
+        Gauge.builder("pipeline.raster.pool.retained", pool, RasterPool::getRetainedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        return pool;
+    }
+
+}
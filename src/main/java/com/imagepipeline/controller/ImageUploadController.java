@@ -1,15 +1,39 @@
 package com.imagepipeline.controller;
 
-import com.imagepipeline.service.ImageProcessingService;
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.model.BatchProgress;
+import com.imagepipeline.model.S3ImportStatus;
+import com.imagepipeline.model.SimilarImage;
+import com.imagepipeline.service.AdmissionControlService;
+import com.imagepipeline.service.BatchUploadService;
 import com.imagepipeline.service.ProgressTrackerService;
+import com.imagepipeline.service.RenditionCache;
+import com.imagepipeline.service.ResizeService;
+import com.imagepipeline.service.S3ImportService;
+import com.imagepipeline.service.SimilarityIndex;
+import com.imagepipeline.service.ThumbnailService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST Controller that handles image upload requests.
@@ -18,19 +42,50 @@ import java.util.UUID;
 @RequestMapping("/api/images")
 public class ImageUploadController {
 
-    private final ImageProcessingService imageProcessingService;
+    private final AdmissionControlService admissionControlService;
 
     private final ProgressTrackerService progressTrackerService;
 
+    private final SimilarityIndex similarityIndex;
+
+    private final RenditionCache renditionCache;
+
+    private final ResizeService resizeService;
+
+    private final PipelineProperties pipelineProperties;
+
+    private final BatchUploadService batchUploadService;
+
+    private final S3ImportService s3ImportService;
+
     /**
      * Constructor for dependency injection.
      *
-     * @param imageProcessingService service that handles the image processing pipeline.
+     * @param admissionControlService service that admits uploads into the image processing pipeline.
+     * @param progressTrackerService  service for tracking job progress.
+     * @param similarityIndex         index of perceptual hashes for near-duplicate search.
+     * @param renditionCache          cache of the renditions served to clients.
+     * @param resizeService           service that resizes images on demand.
+     * @param pipelineProperties      configuration properties for the pipeline.
+     * @param batchUploadService      service that imports batch uploads.
+     * @param s3ImportService         service that imports images already stored in S3.
      */
-    public ImageUploadController(ImageProcessingService imageProcessingService,
-                                 ProgressTrackerService progressTrackerService) {
-        this.imageProcessingService = imageProcessingService;
+    public ImageUploadController(AdmissionControlService admissionControlService,
+                                 ProgressTrackerService progressTrackerService,
+                                 SimilarityIndex similarityIndex,
+                                 RenditionCache renditionCache,
+                                 ResizeService resizeService,
+                                 PipelineProperties pipelineProperties,
+                                 BatchUploadService batchUploadService,
+                                 S3ImportService s3ImportService) {
+        this.admissionControlService = admissionControlService;
         this.progressTrackerService = progressTrackerService;
+        this.similarityIndex = similarityIndex;
+        this.renditionCache = renditionCache;
+        this.resizeService = resizeService;
+        this.pipelineProperties = pipelineProperties;
+        this.batchUploadService = batchUploadService;
+        this.s3ImportService = s3ImportService;
     }
 
     /**
@@ -39,34 +94,159 @@ public class ImageUploadController {
      * <ol>
      *   <li>Storing the image in S3.</li>
      *   <li>Extracting and storing image metadata in DynamoDB.</li>
-     *   <li>Generating a thumbnail and storing it in S3.</li>
+     *   <li>Generating the configured renditions and storing them in S3.</li>
      *   <li>Notifying other system components via SNS.</li>
      * </ol>
+     * When the pipeline is saturated the upload is either queued in the local spool
+     * (202 Accepted) or rejected with the configured status and a {@code Retry-After} header.
      *
      * @param file the image file uploaded as MultipartFile.
      * @return a response message indicating the result of the operation.
+     * @throws IOException if the upload cannot be spooled.
      */
     @PostMapping("/upload")
-    public ResponseEntity<Map<String, String>> uploadImage(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, String>> uploadImage(@RequestParam("file") MultipartFile file) throws IOException {
         // Generate a unique job ID for this upload.
         String jobId = UUID.randomUUID().toString();
 
-        // Start processing the image asynchronously.
-        imageProcessingService.processImage(jobId, file);
+        // Start processing the image asynchronously, if the pipeline has capacity.
+        return switch (admissionControlService.submit(jobId, file)) {
+            case ADMITTED -> ResponseEntity.ok(Map.of("jobId", jobId));
+            case QUEUED -> ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("jobId", jobId, "status", "queued"));
+            case REJECTED -> {
+                PipelineProperties.Admission admission = pipelineProperties.getAdmission();
+                yield ResponseEntity.status(admission.getRejectionStatus())
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(admission.getRetryAfter().toSeconds()))
+                        .body(Map.of("error", "Image pipeline is saturated, retry later"));
+            }
+        };
+    }
+
+    /**
+     * Endpoint to upload many images in one request, as a multipart body with any
+     * number of file parts, or as a zip, tar or gzipped tar archive. The body is parsed
+     * as a stream: each file is spooled and starts its job as soon as its bytes have
+     * arrived. While the pipeline is saturated, reading pauses until capacity frees up.
+     * A file larger than the configured limit is rejected on its own; a body larger
+     * than the request limit stops the batch with 413, keeping the jobs already started.
+     *
+     * @param request the request, whose body has not been read.
+     * @return the batch id and its progress once the whole body has been read, 413 with
+     * the progress so far if the body is too large, or 415 for an unsupported content type.
+     * @throws IOException if the body is malformed or a file cannot be spooled.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<BatchProgress> uploadBatch(HttpServletRequest request) throws IOException {
+        BatchUploadService.ArchiveFormat format = null;
+        boolean multipart = JakartaServletFileUpload.isMultipartContent(request);
+        if (!multipart) {
+            format = archiveFormat(request.getContentType());
+            if (format == null) {
+                return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+            }
+        }
+
+        PipelineProperties.Admission admission = pipelineProperties.getAdmission();
+        BatchUploadService.Batch batch = batchUploadService.start();
+        boolean tooLarge = false;
+        try {
+            if (multipart) {
+                JakartaServletFileUpload<?, ?> upload = new JakartaServletFileUpload<>();
+                upload.setFileSizeMax(admission.getBatchMaxFileSize().toBytes());
+                upload.setSizeMax(admission.getBatchMaxRequestSize().toBytes());
+                FileItemInputIterator items = upload.getItemIterator(request);
+                while (items.hasNext()) {
+                    FileItemInput item = items.next();
+                    if (!item.isFormField()) {
+                        try (InputStream in = item.getInputStream()) {
+                            batchUploadService.submit(batch, in, item.getName(), item.getContentType());
+                        }
+                    }
+                }
+            } else {
+                batchUploadService.importArchive(batch, request.getInputStream(), format);
+            }
+        } catch (FileUploadSizeException e) {
+            tooLarge = true;
+        } finally {
+            batchUploadService.finish(batch);
+        }
+        return ResponseEntity.status(tooLarge ? HttpStatus.PAYLOAD_TOO_LARGE : HttpStatus.OK)
+                .body(batchUploadService.getProgress(batch.getId()).orElseThrow());
+    }
+
+    /**
+     * Returns the aggregate progress of a batch upload.
+     *
+     * @param batchId the batch identifier.
+     * @return the batch progress, or 404 if the batch is unknown.
+     */
+    @GetMapping("/batch/{batchId}")
+    public ResponseEntity<BatchProgress> getBatchProgress(@PathVariable String batchId) {
+        return batchUploadService.getProgress(batchId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Starts importing the images already stored under an S3 prefix. The objects are
+     * read from S3 by the service and keep their key as the original; renditions and
+     * metadata are created as for uploads.
+     *
+     * @param bucket the source bucket.
+     * @param prefix the key prefix; the whole bucket if omitted.
+     * @return 202 Accepted with the import status.
+     * @throws IOException if the import checkpoint cannot be written.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<S3ImportStatus> startImport(@RequestParam String bucket,
+                                                      @RequestParam(defaultValue = "") String prefix)
+            throws IOException {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(s3ImportService.start(bucket, prefix));
+    }
 
-        return ResponseEntity.ok(Map.of("jobId", jobId));
+    /**
+     * Resumes an interrupted import after its last checkpoint.
+     *
+     * @param importId the import identifier.
+     * @return 202 Accepted with the import status, or 404 if the import is unknown.
+     * @throws IOException if the import checkpoint cannot be read.
+     */
+    @PostMapping("/import/{importId}/resume")
+    public ResponseEntity<S3ImportStatus> resumeImport(@PathVariable String importId) throws IOException {
+        return s3ImportService.resume(importId)
+                .map(status -> ResponseEntity.status(HttpStatus.ACCEPTED).body(status))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Returns the state of an import from S3.
+     *
+     * @param importId the import identifier.
+     * @return the import status, or 404 if the import is unknown.
+     */
+    @GetMapping("/import/{importId}")
+    public ResponseEntity<S3ImportStatus> getImportStatus(@PathVariable String importId) {
+        return s3ImportService.getStatus(importId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /**
      * Returns the progress percentage for a given job.
      *
      * @param jobId the job identifier.
-     * @return a JSON object with the jobId and its progress percentage.
+     * @return a JSON object with the jobId, its progress percentage and, once known,
+     * the imageId; a duplicate upload reports the image it duplicates.
      */
     @GetMapping("/progress/{jobId}")
     public ResponseEntity<Map<String, Object>> getProgressByJob(@PathVariable String jobId) {
         int progress = progressTrackerService.getProgress(jobId);
-        return ResponseEntity.ok(Map.of("jobId", jobId, "progress", progress));
+        String imageId = progressTrackerService.getImageId(jobId);
+        if (imageId == null) {
+            return ResponseEntity.ok(Map.of("jobId", jobId, "progress", progress));
+        }
+        return ResponseEntity.ok(Map.of("jobId", jobId, "progress", progress, "imageId", imageId));
     }
 
     /**
@@ -79,4 +259,160 @@ public class ImageUploadController {
         return ResponseEntity.ok(progressTrackerService.getAllProgress());
     }
 
+    /**
+     * Returns the near-duplicates of an image: re-encoded, resized or lightly edited
+     * copies, found by the Hamming distance between perceptual hashes.
+     *
+     * @param imageId     the image identifier.
+     * @param maxDistance the maximum distance out of 64 bits; defaults to the configured value.
+     * @param limit       the maximum number of results; defaults to the configured value.
+     * @return the similar images, closest first, or 404 if the image is not indexed.
+     */
+    @GetMapping("/{imageId}/similar")
+    public ResponseEntity<List<SimilarImage>> getSimilarImages(@PathVariable String imageId,
+                                                               @RequestParam(required = false) Integer maxDistance,
+                                                               @RequestParam(required = false) Integer limit) {
+        PipelineProperties.Similarity similarity = pipelineProperties.getSimilarity();
+        return similarityIndex.findSimilar(imageId,
+                        maxDistance != null ? maxDistance : similarity.getMaxDistance(),
+                        limit != null ? limit : similarity.getMaxResults())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Serves a rendition of an image through the rendition cache.
+     * Responses carry the rendition's ETag; a request whose {@code If-None-Match}
+     * matches it gets 304 Not Modified without a body.
+     *
+     * @param imageId     the image identifier.
+     * @param name        the rendition name, one of the configured renditions.
+     * @param ifNoneMatch the entity tags the client already holds, if any.
+     * @return the rendition, 304 if the client's copy is current, or 404 if it does not exist.
+     */
+    @GetMapping("/{imageId}/renditions/{name}")
+    public CompletableFuture<ResponseEntity<byte[]>> getRendition(
+            @PathVariable String imageId, @PathVariable String name,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        boolean configured = pipelineProperties.getRenditions().stream()
+                .anyMatch(rendition -> rendition.getName().equals(name));
+        if (!configured) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        String key = ThumbnailService.renditionKey(imageId, name, pipelineProperties.getEncoding().getFormat());
+        return respond(renditionCache.get(key), ifNoneMatch);
+    }
+
+    /**
+     * Serves an image resized on demand. Sizes are limited to the configured set; the
+     * result is cached, and concurrent requests for the same variant share one render.
+     *
+     * @param imageId     the image identifier.
+     * @param w           the maximum width, one of the allowed sizes.
+     * @param h           the maximum height, one of the allowed sizes.
+     * @param fit         "fit" to scale the whole image into the box, or "crop" to fill it.
+     * @param format      "jpeg", "png" or, when a WebP writer is installed, "webp".
+     * @param ifNoneMatch the entity tags the client already holds, if any.
+     * @return the resized image, 304 if the client's copy is current, 400 for parameters
+     * that are not allowed, 404 if the image does not exist, or 503 if the pipeline has no
+     * room for the render.
+     */
+    @GetMapping("/{imageId}")
+    public CompletableFuture<ResponseEntity<byte[]>> getResizedImage(
+            @PathVariable String imageId,
+            @RequestParam(required = false) Integer w,
+            @RequestParam(required = false) Integer h,
+            @RequestParam(required = false) String fit,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ResizeService.Variant variant;
+        try {
+            variant = resizeService.variant(imageId, w, h, fit, format);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        return respond(resizeService.resize(variant), ifNoneMatch);
+    }
+
+    /**
+     * Builds the response for a served image, with its ETag and caching headers.
+     */
+    private CompletableFuture<ResponseEntity<byte[]>> respond(CompletableFuture<RenditionCache.Rendition> image,
+                                                              String ifNoneMatch) {
+        CacheControl cacheControl = CacheControl.maxAge(pipelineProperties.getRenditionCache().getMaxAge()).cachePublic();
+        return image
+                .thenApply(rendition -> {
+                    if (matches(ifNoneMatch, rendition.eTag())) {
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(rendition.eTag())
+                                .cacheControl(cacheControl)
+                                .<byte[]>build();
+                    }
+                    return ResponseEntity.ok()
+                            .eTag(rendition.eTag())
+                            .cacheControl(cacheControl)
+                            .contentType(MediaType.parseMediaType(rendition.contentType()))
+                            .body(rendition.bytes());
+                })
+                .exceptionally(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause()
+                            : error;
+                    if (cause instanceof NoSuchKeyException) {
+                        return ResponseEntity.notFound().build();
+                    }
+                    if (cause instanceof RejectedExecutionException) {
+                        // The render found no room on a pipeline executor; the client may retry.
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                .header(HttpHeaders.RETRY_AFTER,
+                                        String.valueOf(pipelineProperties.getAdmission().getRetryAfter().toSeconds()))
+                                .build();
+                    }
+                    throw error instanceof CompletionException completionException
+                            ? completionException
+                            : new CompletionException(error);
+                });
+    }
+
+    /**
+     * Maps the content type of an archive body to its format.
+     *
+     * @return the format, or null if the content type is not an archive.
+     */
+    private static BatchUploadService.ArchiveFormat archiveFormat(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return switch (mediaType.getType() + "/" + mediaType.getSubtype()) {
+            case "application/zip", "application/x-zip-compressed" -> BatchUploadService.ArchiveFormat.ZIP;
+            case "application/x-tar" -> BatchUploadService.ArchiveFormat.TAR;
+            case "application/gzip", "application/x-gzip", "application/x-gtar" ->
+                    BatchUploadService.ArchiveFormat.TAR_GZIP;
+            default -> null;
+        };
+    }
+
+    /**
+     * Evaluates an {@code If-None-Match} header with the weak comparison of RFC 9110.
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
@@ -0,0 +1,81 @@
+package com.imagepipeline.image;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a loop over rows in bands, either inline or split across a {@link ForkJoinPool}.
+ * Every band covers whole rows and writes only its own rows, so the result does not
+ * depend on how the rows are split.
+ */
+final class Bands {
+
+    /**
+     * Bands are not split below this many rows, which keeps the per-task overhead small
+     * next to the work in a band.
+     */
+    static final int MIN_BAND_ROWS = 16;
+
+    private Bands() {
+    }
+
+    /**
+     * Body of a banded loop.
+     */
+    @FunctionalInterface
+    interface Band {
+
+        /**
+         * Processes rows {@code from} (inclusive) to {@code to} (exclusive).
+         *
+         * @param from the first row.
+         * @param to   the row after the last.
+         */
+        void run(int from, int to);
+
+    }
+
+    /**
+     * Runs a band body over rows {@code 0} to {@code rows}.
+     *
+     * @param pool the pool to split the rows across, or null to run them on the calling thread.
+     * @param rows the number of rows.
+     * @param band the band body.
+     */
+    static void forEach(ForkJoinPool pool, int rows, Band band) {
+        if (pool == null || rows < 2 * MIN_BAND_ROWS) {
+            band.run(0, rows);
+            return;
+        }
+        // A few bands per worker, so a slow band does not leave the others idle.
+        int bandRows = Math.max(MIN_BAND_ROWS, Math.ceilDiv(rows, pool.getParallelism() * 4));
+        pool.invoke(new BandTask(band, 0, rows, bandRows));
+    }
+
+    private static final class BandTask extends RecursiveAction {
+
+        private final Band band;
+        private final int from;
+        private final int to;
+        private final int bandRows;
+
+        BandTask(Band band, int from, int to, int bandRows) {
+            this.band = band;
+            this.from = from;
+            this.to = to;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= bandRows) {
+                band.run(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BandTask(band, from, middle, bandRows), new BandTask(band, middle, to, bandRows));
+        }
+
+    }
+
+}
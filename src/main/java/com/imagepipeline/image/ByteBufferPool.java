@@ -0,0 +1,100 @@
+package com.imagepipeline.image;
+
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of equally sized direct buffers.
+ * Buffers are handed out most recently released first, and at most a fixed number are
+ * kept; a release beyond that leaves the buffer to the garbage collector. Direct
+ * buffers are costly to allocate and free, which is what pooling them amortizes.
+ */
+public class ByteBufferPool {
+
+    private final int bufferSize;
+    private final int maxRetained;
+    private final Deque<ByteBuffer> buffers = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger retained = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a ByteBufferPool.
+     *
+     * @param bufferSize  the capacity of every buffer.
+     * @param maxRetained the maximum number of idle buffers kept.
+     */
+    public ByteBufferPool(int bufferSize, int maxRetained) {
+        this.bufferSize = bufferSize;
+        this.maxRetained = maxRetained;
+    }
+
+    /**
+     * Takes an idle buffer, or allocates one if there is none.
+     *
+     * @return a cleared buffer of {@link #getBufferSize()} bytes.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.pollFirst();
+        if (buffer == null) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        retained.decrementAndGet();
+        hits.incrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use it afterwards.
+     *
+     * @param buffer a buffer taken from this pool.
+     */
+    public void release(ByteBuffer buffer) {
+        if (retained.incrementAndGet() <= maxRetained) {
+            buffers.offerFirst(buffer);
+        } else {
+            retained.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the capacity of every buffer.
+     *
+     * @return the buffer size in bytes.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Returns the total size of the idle buffers kept.
+     *
+     * @return the retained bytes.
+     */
+    public long getRetainedBytes() {
+        return (long) retained.get() * bufferSize;
+    }
+
+    /**
+     * Returns the number of acquisitions served from the pool.
+     *
+     * @return the hit count.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of acquisitions that allocated a new buffer.
+     *
+     * @return the miss count.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+}
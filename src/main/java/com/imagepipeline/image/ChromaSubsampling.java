@@ -0,0 +1,51 @@
+package com.imagepipeline.image;
+
+/**
+ * Resolution of the chroma channels of a JPEG relative to luma.
+ * Subsampled chroma makes files noticeably smaller at little visible cost for photos,
+ * but blurs sharp colour edges such as text and line art.
+ */
+public enum ChromaSubsampling {
+
+    /**
+     * Full-resolution chroma.
+     */
+    YUV444(1, 1),
+
+    /**
+     * Chroma halved horizontally.
+     */
+    YUV422(2, 1),
+
+    /**
+     * Chroma halved in both directions.
+     */
+    YUV420(2, 2);
+
+    private final int horizontalFactor;
+    private final int verticalFactor;
+
+    ChromaSubsampling(int horizontalFactor, int verticalFactor) {
+        this.horizontalFactor = horizontalFactor;
+        this.verticalFactor = verticalFactor;
+    }
+
+    /**
+     * Returns the horizontal sampling factor of the luma component; chroma components use 1.
+     *
+     * @return the factor, 1 or 2.
+     */
+    public int getHorizontalFactor() {
+        return horizontalFactor;
+    }
+
+    /**
+     * Returns the vertical sampling factor of the luma component; chroma components use 1.
+     *
+     * @return the factor, 1 or 2.
+     */
+    public int getVerticalFactor() {
+        return verticalFactor;
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.imagepipeline.image;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seekable image output stream backed by buffers from a {@link ByteBufferPool}.
+ * Image writers encode straight into the pooled buffers, and the written bytes are
+ * handed on as buffer views, so the output is never copied into a heap array. The
+ * stream grows a buffer at a time instead of reallocating. The owner must call
+ * {@link #release()} once the views are no longer read; closing the stream does not
+ * return the buffers.
+ */
+public class ChunkedImageOutputStream extends ImageOutputStreamImpl {
+
+    private final ByteBufferPool pool;
+    private final int chunkSize;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long length;
+
+    /**
+     * Constructs a ChunkedImageOutputStream.
+     *
+     * @param pool the pool to take buffers from and return them to.
+     */
+    public ChunkedImageOutputStream(ByteBufferPool pool) {
+        this.pool = pool;
+        this.chunkSize = pool.getBufferSize();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        flushBits();
+        chunkAt(streamPos).put((int) (streamPos % chunkSize), (byte) b);
+        advance(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        flushBits();
+        while (len > 0) {
+            int offset = (int) (streamPos % chunkSize);
+            int count = Math.min(len, chunkSize - offset);
+            chunkAt(streamPos).put(offset, b, off, count);
+            off += count;
+            len -= count;
+            advance(count);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= length) {
+            return -1;
+        }
+        int value = chunks.get((int) (streamPos / chunkSize)).get((int) (streamPos % chunkSize)) & 0xff;
+        streamPos++;
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (streamPos >= length) {
+            return -1;
+        }
+        int count = (int) Math.min(len, Math.min(length - streamPos, chunkSize - streamPos % chunkSize));
+        chunks.get((int) (streamPos / chunkSize)).get((int) (streamPos % chunkSize), b, off, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Discards the written bytes and rewinds to the start, keeping the buffers for the next write.
+     */
+    public void clear() {
+        length = 0;
+        streamPos = 0;
+        flushedPos = 0;
+        bitOffset = 0;
+    }
+
+    /**
+     * Returns read-only views of the written bytes, in order; each view's remaining
+     * bytes are its part of the output. The views are valid until {@link #release()}.
+     *
+     * @return the views.
+     */
+    public ByteBuffer[] buffers() {
+        int count = (int) ((length + chunkSize - 1) / chunkSize);
+        ByteBuffer[] views = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            int limit = (int) Math.min(chunkSize, length - (long) i * chunkSize);
+            views[i] = chunks.get(i).asReadOnlyBuffer().position(0).limit(limit);
+        }
+        return views;
+    }
+
+    /**
+     * Copies the written bytes into a new array, for callers that keep the output.
+     *
+     * @return the written bytes.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[Math.toIntExact(length)];
+        int offset = 0;
+        for (ByteBuffer view : buffers()) {
+            int count = view.remaining();
+            view.get(bytes, offset, count);
+            offset += count;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the buffers to the pool and empties the stream.
+     */
+    public void release() {
+        chunks.forEach(pool::release);
+        chunks.clear();
+        clear();
+    }
+
+    private ByteBuffer chunkAt(long position) {
+        int index = (int) (position / chunkSize);
+        while (chunks.size() <= index) {
+            chunks.add(pool.acquire());
+        }
+        return chunks.get(index);
+    }
+
+    private void advance(int count) {
+        streamPos += count;
+        length = Math.max(length, streamPos);
+    }
+
+}
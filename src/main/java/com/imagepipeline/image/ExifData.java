@@ -0,0 +1,135 @@
+package com.imagepipeline.image;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The subset of EXIF fields the pipeline records, parsed from a raw APP1 payload.
+ *
+ * @param orientation EXIF orientation (1-8), 1 if not present.
+ * @param captureTime capture time in ISO-8601 local time, or null.
+ * @param cameraModel camera model, or null.
+ */
+record ExifData(int orientation, String captureTime, String cameraModel) {
+
+    static final ExifData EMPTY = new ExifData(1, null, null);
+
+    private static final byte[] EXIF_PREFIX = {'E', 'x', 'i', 'f', 0, 0};
+
+    private static final DateTimeFormatter EXIF_DATE_TIME = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_SHORT = 3;
+
+    /**
+     * Parses an APP1 payload ("Exif\0\0" followed by a TIFF structure).
+     *
+     * @param app1 the APP1 segment payload.
+     * @return the parsed fields, or {@link #EMPTY} if the payload is not EXIF.
+     */
+    static ExifData parse(byte[] app1) {
+        if (app1.length < EXIF_PREFIX.length + 8) {
+            return EMPTY;
+        }
+        for (int i = 0; i < EXIF_PREFIX.length; i++) {
+            if (app1[i] != EXIF_PREFIX[i]) {
+                return EMPTY;
+            }
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(app1, EXIF_PREFIX.length, app1.length - EXIF_PREFIX.length).slice();
+        if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff.get(0) == 'M' && tiff.get(1) == 'M') {
+            tiff.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            return EMPTY;
+        }
+        if (Short.toUnsignedInt(tiff.getShort(2)) != 42) {
+            return EMPTY;
+        }
+
+        int orientation = 1;
+        String model = null;
+        String dateTime = null;
+        String dateTimeOriginal = null;
+        try {
+            int ifd0 = tiff.getInt(4);
+            int exifIfd = -1;
+            int count = Short.toUnsignedInt(tiff.getShort(ifd0));
+            for (int i = 0; i < count; i++) {
+                int entry = ifd0 + 2 + i * 12;
+                int tag = Short.toUnsignedInt(tiff.getShort(entry));
+                switch (tag) {
+                    case TAG_ORIENTATION -> {
+                        if (Short.toUnsignedInt(tiff.getShort(entry + 2)) == TYPE_SHORT) {
+                            orientation = Short.toUnsignedInt(tiff.getShort(entry + 8));
+                        }
+                    }
+                    case TAG_MODEL -> model = readAscii(tiff, entry);
+                    case TAG_DATE_TIME -> dateTime = readAscii(tiff, entry);
+                    case TAG_EXIF_IFD -> exifIfd = tiff.getInt(entry + 8);
+                    default -> {
+                    }
+                }
+            }
+            if (exifIfd > 0) {
+                int exifCount = Short.toUnsignedInt(tiff.getShort(exifIfd));
+                for (int i = 0; i < exifCount; i++) {
+                    int entry = exifIfd + 2 + i * 12;
+                    if (Short.toUnsignedInt(tiff.getShort(entry)) == TAG_DATE_TIME_ORIGINAL) {
+                        dateTimeOriginal = readAscii(tiff, entry);
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            // Truncated or corrupt EXIF: keep whatever was parsed so far.
+        }
+        if (orientation < 1 || orientation > 8) {
+            orientation = 1;
+        }
+        String captureTime = toIsoDateTime(dateTimeOriginal != null ? dateTimeOriginal : dateTime);
+        return new ExifData(orientation, captureTime, model);
+    }
+
+    private static String readAscii(ByteBuffer tiff, int entry) {
+        if (Short.toUnsignedInt(tiff.getShort(entry + 2)) != TYPE_ASCII) {
+            return null;
+        }
+        int length = tiff.getInt(entry + 4);
+        int offset = length <= 4 ? entry + 8 : tiff.getInt(entry + 8);
+        if (length <= 0 || offset < 0 || offset + length > tiff.limit()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        tiff.get(offset, bytes);
+        int end = 0;
+        while (end < bytes.length && bytes[end] != 0) {
+            end++;
+        }
+        String value = new String(bytes, 0, end, StandardCharsets.US_ASCII).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String toIsoDateTime(String exifDateTime) {
+        if (exifDateTime == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(exifDateTime, EXIF_DATE_TIME).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+}
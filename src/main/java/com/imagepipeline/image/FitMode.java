@@ -0,0 +1,19 @@
+package com.imagepipeline.image;
+
+/**
+ * How an image is fitted into a rendition's long-edge bound.
+ */
+public enum FitMode {
+
+    /**
+     * Scale the whole image so its long edge matches, preserving the aspect ratio.
+     */
+    FIT,
+
+    /**
+     * Center-crop to the target's aspect ratio and scale it to the target size;
+     * renditions use a square.
+     */
+    CROP
+
+}
@@ -0,0 +1,333 @@
+package com.imagepipeline.image;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Per-job holder for an uploaded image.
+ * The image is decoded lazily, at most once, and the same raster is handed to
+ * every pipeline stage until the job closes the context. A {@link SpooledFile}
+ * is memory-mapped once and read in place by every header read and decode.
+ * A decode whose raster would exceed the memory budget is streamed in bands into a
+ * {@link StreamingDownscaler} instead, so its peak memory depends on the requested
+ * size and the band size rather than on the resolution of the upload.
+ */
+public class ImageContext implements AutoCloseable {
+
+    private final String imageId;
+
+    private final MultipartFile file;
+
+    private ImageHeader header;
+
+    private BufferedImage image;
+
+    private BufferedImage subsampledImage;
+
+    private int subsamplingFactor;
+
+    private BufferedImage streamedImage;
+
+    private final long memoryBudget;
+
+    private final long bandBytes;
+
+    private MappedByteBuffer mappedFile;
+
+    private boolean imagesReleased;
+
+    private boolean closed;
+
+    /**
+     * Constructs an ImageContext for an uploaded file with a new image identifier.
+     *
+     * @param file the uploaded image file.
+     */
+    public ImageContext(MultipartFile file) {
+        this(UUID.randomUUID().toString(), file);
+    }
+
+    /**
+     * Constructs an ImageContext for an uploaded file.
+     *
+     * @param imageId the identifier assigned to the image.
+     * @param file    the uploaded image file.
+     */
+    public ImageContext(String imageId, MultipartFile file) {
+        this(imageId, file, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructs an ImageContext for an uploaded file with a decode memory budget.
+     *
+     * @param imageId      the identifier assigned to the image.
+     * @param file         the uploaded image file.
+     * @param memoryBudget the raster size above which a decode is streamed in bands.
+     * @param bandBytes    the pixel memory of one band of a streamed decode.
+     */
+    public ImageContext(String imageId, MultipartFile file, long memoryBudget, long bandBytes) {
+        this.imageId = imageId;
+        this.file = file;
+        this.memoryBudget = memoryBudget;
+        this.bandBytes = bandBytes;
+    }
+
+    /**
+     * Returns the identifier assigned to the image.
+     *
+     * @return the image identifier.
+     */
+    public String getImageId() {
+        return imageId;
+    }
+
+    /**
+     * Returns the decoded image, decoding it on first access.
+     *
+     * @return the decoded BufferedImage shared by all stages of the job.
+     * @throws IOException if the image cannot be read or the context is closed.
+     */
+    public synchronized BufferedImage getImage() throws IOException {
+        ensureDecodable();
+        if (image == null) {
+            image = decode(1);
+            releaseSubsampledImage();
+        }
+        return image;
+    }
+
+    /**
+     * Returns an image decoded close to the target size.
+     * The reader subsamples rows and columns while decoding, so a large image
+     * never needs a full-resolution raster when only a small output is wanted.
+     * A full-resolution image already decoded for this job is reused as is, and so
+     * is a streamed one large enough for the target. When even the subsampled
+     * raster would exceed the memory budget, the image is decoded in bands and
+     * downscaled on the fly to {@link ImageScaler#OVERSAMPLING} times the target size.
+     *
+     * @param targetWidth  the width the caller will scale to.
+     * @param targetHeight the height the caller will scale to.
+     * @return an image at least {@link ImageScaler#OVERSAMPLING} times the target size where possible.
+     * @throws IOException if the image cannot be read or the context is closed.
+     */
+    public synchronized BufferedImage getImage(int targetWidth, int targetHeight) throws IOException {
+        ensureDecodable();
+        if (image != null) {
+            return image;
+        }
+        ImageHeader imageHeader = getHeader();
+        int factor = ImageScaler.subsamplingFactor(imageHeader.getWidth(), imageHeader.getHeight(),
+                targetWidth, targetHeight);
+        int decodedWidth = Math.ceilDiv(imageHeader.getWidth(), factor);
+        int decodedHeight = Math.ceilDiv(imageHeader.getHeight(), factor);
+        if ((long) decodedWidth * decodedHeight * Integer.BYTES > memoryBudget) {
+            double scale = Math.min(1.0, ImageScaler.OVERSAMPLING * Math.max(
+                    (double) targetWidth / decodedWidth, (double) targetHeight / decodedHeight));
+            int streamedWidth = Math.max(1, (int) Math.ceil(decodedWidth * scale));
+            int streamedHeight = Math.max(1, (int) Math.ceil(decodedHeight * scale));
+            // Streaming only saves memory when it scales below the subsampled size.
+            if (streamedWidth < decodedWidth) {
+                return getStreamedImage(factor, streamedWidth, streamedHeight);
+            }
+        }
+        // A streamed image left by a larger request already holds enough pixels.
+        if (streamedImage != null
+                && streamedImage.getWidth() >= Math.min(imageHeader.getWidth(), ImageScaler.OVERSAMPLING * targetWidth)
+                && streamedImage.getHeight() >= Math.min(imageHeader.getHeight(),
+                ImageScaler.OVERSAMPLING * targetHeight)) {
+            return streamedImage;
+        }
+        if (factor == 1) {
+            return getImage();
+        }
+        // A finer subsampled image already in memory serves coarser requests too.
+        if (subsampledImage == null || subsamplingFactor > factor) {
+            releaseSubsampledImage();
+            subsampledImage = decode(factor);
+            subsamplingFactor = factor;
+        }
+        return subsampledImage;
+    }
+
+    private BufferedImage getStreamedImage(int factor, int width, int height) throws IOException {
+        // A larger streamed image already in memory serves smaller requests too.
+        if (streamedImage == null || streamedImage.getWidth() < width || streamedImage.getHeight() < height) {
+            if (streamedImage != null) {
+                streamedImage.flush();
+                streamedImage = null;
+            }
+            try {
+                // Area averaging over every decoded pixel, the prefilter the final resample expects.
+                streamedImage = withImageStream(iis -> ImageDecoder.decodeStreaming(iis, factor, bandBytes,
+                        width, height, ResampleFilter.AREA));
+            } catch (IOException e) {
+                throw new IOException("Unable to decode " + file.getOriginalFilename() + ": " + e.getMessage(), e);
+            }
+        }
+        return streamedImage;
+    }
+
+    /**
+     * Returns the image header, reading it on first access.
+     * Only the header is parsed; no pixel buffer is allocated.
+     *
+     * @return the header shared by all stages of the job.
+     * @throws IOException if the header cannot be read or the context is closed.
+     */
+    public synchronized ImageHeader getHeader() throws IOException {
+        ensureOpen();
+        if (header == null) {
+            header = withImageStream(ImageHeaderReader::read);
+        }
+        return header;
+    }
+
+    /**
+     * Returns the image width in pixels.
+     *
+     * @return the width.
+     * @throws IOException if the header cannot be read.
+     */
+    public int getWidth() throws IOException {
+        return getHeader().getWidth();
+    }
+
+    /**
+     * Returns the image height in pixels.
+     *
+     * @return the height.
+     * @throws IOException if the header cannot be read.
+     */
+    public int getHeight() throws IOException {
+        return getHeader().getHeight();
+    }
+
+    /**
+     * Returns the image format name reported by the image reader.
+     *
+     * @return the format name in lowercase, e.g. "jpeg" or "png".
+     * @throws IOException if the header cannot be read.
+     */
+    public String getFormat() throws IOException {
+        return getHeader().getFormat();
+    }
+
+    /**
+     * Returns the uploaded file backing this context.
+     *
+     * @return the MultipartFile.
+     */
+    public MultipartFile getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the original filename of the upload.
+     *
+     * @return the original filename.
+     */
+    public String getOriginalFilename() {
+        return file.getOriginalFilename();
+    }
+
+    private BufferedImage decode(int subsampling) throws IOException {
+        try {
+            return withImageStream(iis -> ImageDecoder.decode(iis, subsampling));
+        } catch (IOException e) {
+            throw new IOException("Unable to decode " + file.getOriginalFilename() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs a read against a fresh image stream over the upload.
+     * Spooled files are memory-mapped (or read through a random-access file when too
+     * large to map); other uploads fall back to a cached stream.
+     */
+    private <T> T withImageStream(ImageStreamReader<T> reader) throws IOException {
+        if (file instanceof SpooledFile spooledFile) {
+            if (spooledFile.getSize() > Integer.MAX_VALUE) {
+                try (ImageInputStream iis = new FileImageInputStream(spooledFile.getPath().toFile())) {
+                    return reader.read(iis);
+                }
+            }
+            if (mappedFile == null) {
+                try (FileChannel channel = FileChannel.open(spooledFile.getPath(), StandardOpenOption.READ)) {
+                    mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            try (ImageInputStream iis = new ByteBufferImageInputStream(mappedFile)) {
+                return reader.read(iis);
+            }
+        }
+        try (InputStream in = file.getInputStream(); ImageInputStream iis = new MemoryCacheImageInputStream(in)) {
+            return reader.read(iis);
+        }
+    }
+
+    private void releaseSubsampledImage() {
+        if (subsampledImage != null) {
+            subsampledImage.flush();
+            subsampledImage = null;
+            subsamplingFactor = 0;
+        }
+    }
+
+    private void ensureDecodable() throws IOException {
+        ensureOpen();
+        if (imagesReleased) {
+            throw new IOException("Decoded images already released for " + file.getOriginalFilename());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Image context already closed for " + file.getOriginalFilename());
+        }
+    }
+
+    /**
+     * Releases the decoded rasters once the stages that read pixels are done.
+     * The header stays readable, but further calls to {@link #getImage()} fail
+     * rather than decode again.
+     */
+    public synchronized void releaseImages() {
+        if (image != null) {
+            image.flush();
+            image = null;
+        }
+        releaseSubsampledImage();
+        if (streamedImage != null) {
+            streamedImage.flush();
+            streamedImage = null;
+        }
+        imagesReleased = true;
+    }
+
+    /**
+     * Releases the decoded raster. Further calls to {@link #getImage()} fail.
+     */
+    @Override
+    public synchronized void close() {
+        releaseImages();
+        mappedFile = null;
+        closed = true;
+    }
+
+    @FunctionalInterface
+    private interface ImageStreamReader<T> {
+
+        T read(ImageInputStream iis) throws IOException;
+
+    }
+
+}
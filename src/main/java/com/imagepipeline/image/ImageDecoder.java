@@ -0,0 +1,116 @@
+package com.imagepipeline.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Decodes images through an {@link ImageReader}, optionally subsampling rows and
+ * columns while reading so that only the retained pixels are ever buffered. Images
+ * too large to hold at all can be decoded band by band straight into a
+ * {@link StreamingDownscaler}.
+ */
+public final class ImageDecoder {
+
+    private ImageDecoder() {
+    }
+
+    /**
+     * Decodes the first image of the stream.
+     *
+     * @param in          the image bytes; the stream is not closed.
+     * @param subsampling keep every n-th column and row; 1 decodes at full resolution.
+     * @return the decoded image.
+     * @throws IOException if the format is unsupported or the data is malformed.
+     */
+    public static BufferedImage decode(InputStream in, int subsampling) throws IOException {
+        try (ImageInputStream iis = new MemoryCacheImageInputStream(in)) {
+            return decode(iis, subsampling);
+        }
+    }
+
+    /**
+     * Decodes the first image of the image stream.
+     *
+     * @param iis         the image input stream; the stream is not closed.
+     * @param subsampling keep every n-th column and row; 1 decodes at full resolution.
+     * @return the decoded image.
+     * @throws IOException if the format is unsupported or the data is malformed.
+     */
+    public static BufferedImage decode(ImageInputStream iis, int subsampling) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(iis, true, true);
+            ImageReadParam param = reader.getDefaultReadParam();
+            if (subsampling > 1) {
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Decodes the first image of the image stream in bands of full-width rows and
+     * downscales it as the bands arrive, so neither the whole raster nor the whole
+     * subsampled raster is ever in memory. Sequential formats such as JPEG and PNG
+     * decode the rows above a band again to reach it, so fewer, taller bands are faster.
+     *
+     * @param iis          the image input stream; the stream is not closed.
+     * @param subsampling  keep every n-th column and row; 1 decodes at full resolution.
+     * @param bandBytes    the pixel memory of one decoded band.
+     * @param targetWidth  the output width.
+     * @param targetHeight the output height.
+     * @param filter       the downscaling filter.
+     * @return the downscaled RGB image.
+     * @throws IOException if the format is unsupported or the data is malformed.
+     */
+    public static BufferedImage decodeStreaming(ImageInputStream iis, int subsampling, long bandBytes,
+                                                int targetWidth, int targetHeight, ResampleFilter filter)
+            throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        try {
+            // Every band reads the image again from its start, so the reader may seek backwards.
+            reader.setInput(iis, false, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int subsampledWidth = Math.ceilDiv(width, subsampling);
+            int subsampledHeight = Math.ceilDiv(height, subsampling);
+            StreamingDownscaler downscaler = new StreamingDownscaler(subsampledWidth, subsampledHeight,
+                    targetWidth, targetHeight, filter);
+            // Whole subsampled rows per band, so every band starts on the subsampling grid.
+            long bandRows = Math.max(1, bandBytes / (Integer.BYTES * (long) subsampledWidth));
+            int step = (int) Math.min(height, bandRows * subsampling);
+            ImageReadParam param = reader.getDefaultReadParam();
+            for (int y = 0; y < height; y += step) {
+                param.setSourceRegion(new Rectangle(0, y, width, Math.min(step, height - y)));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                BufferedImage band = reader.read(0, param);
+                downscaler.accept(band);
+                band.flush();
+            }
+            return downscaler.finish();
+        } finally {
+            reader.dispose();
+        }
+    }
+
+}
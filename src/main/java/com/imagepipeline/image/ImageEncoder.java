@@ -0,0 +1,98 @@
+package com.imagepipeline.image;
+
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes images into one output format with fixed settings other than quality.
+ * Implementations are immutable and safe to share between threads.
+ */
+public interface ImageEncoder {
+
+    /**
+     * Number of encodes a size-targeted search tries between the quality bounds,
+     * which narrows the quality down to within about 1% of the range.
+     */
+    int QUALITY_SEARCH_STEPS = 7;
+
+    /**
+     * Returns the format this encoder writes.
+     *
+     * @return the output format.
+     */
+    OutputFormat getFormat();
+
+    /**
+     * Encodes an image at the given quality into a stream, which is left open.
+     *
+     * @param image   the image; it must not have an alpha channel.
+     * @param quality the quality, from 0 (smallest) to 1 (best).
+     * @param output  the stream to write to, from its current position.
+     * @throws IOException if encoding fails.
+     */
+    void encode(BufferedImage image, float quality, ImageOutputStream output) throws IOException;
+
+    /**
+     * Encodes an image at the given quality into a new array.
+     *
+     * @param image   the image; it must not have an alpha channel.
+     * @param quality the quality, from 0 (smallest) to 1 (best).
+     * @return the encoded bytes.
+     * @throws IOException if encoding fails.
+     */
+    default byte[] encode(BufferedImage image, float quality) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(baos)) {
+            encode(image, quality, output);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Encodes an image at the highest quality whose output fits a size budget.
+     * The quality is binary-searched, relying on output size growing with quality; every
+     * attempt reuses the stream's buffers. If the image does not fit even at the minimum
+     * quality, the minimum-quality encoding is written anyway, so a rendition is never
+     * dropped for being too large.
+     *
+     * @param image      the image; it must not have an alpha channel.
+     * @param maxBytes   the size budget.
+     * @param minQuality the lowest quality to accept.
+     * @param maxQuality the highest quality to try.
+     * @param output     the stream to write to; it is cleared first and holds the result.
+     * @throws IOException if encoding fails.
+     */
+    default void encodeWithin(BufferedImage image, long maxBytes, float minQuality, float maxQuality,
+                              ChunkedImageOutputStream output) throws IOException {
+        output.clear();
+        encode(image, maxQuality, output);
+        if (output.length() <= maxBytes) {
+            return;
+        }
+        float best = minQuality;
+        boolean holdsBest = false;
+        float low = minQuality;
+        float high = maxQuality;
+        for (int step = 0; step < QUALITY_SEARCH_STEPS; step++) {
+            float quality = (low + high) / 2;
+            output.clear();
+            encode(image, quality, output);
+            holdsBest = output.length() <= maxBytes;
+            if (holdsBest) {
+                best = quality;
+                low = quality;
+            } else {
+                high = quality;
+            }
+        }
+        if (!holdsBest) {
+            // The last attempt was too large; write the best one found again.
+            output.clear();
+            encode(image, best, output);
+        }
+    }
+
+}
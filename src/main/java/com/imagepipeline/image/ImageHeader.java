@@ -0,0 +1,43 @@
+package com.imagepipeline.image;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Header information of an image, read without decoding any pixel data.
+ */
+@Getter
+@ToString
+public class ImageHeader {
+
+    private final int width;
+    private final int height;
+    private final String format;
+    private final int bands;
+    private final int orientation;
+    private final String captureTime;
+    private final String cameraModel;
+
+    /**
+     * Constructs an ImageHeader object.
+     *
+     * @param width       Image width in pixels.
+     * @param height      Image height in pixels.
+     * @param format      Format name reported by the image reader.
+     * @param bands       Number of samples per decoded pixel.
+     * @param orientation EXIF orientation (1-8), 1 if not present.
+     * @param captureTime EXIF capture time in ISO-8601 local time, or null.
+     * @param cameraModel EXIF camera model, or null.
+     */
+    public ImageHeader(int width, int height, String format, int bands, int orientation, String captureTime,
+                       String cameraModel) {
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.bands = bands;
+        this.orientation = orientation;
+        this.captureTime = captureTime;
+        this.cameraModel = cameraModel;
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.imagepipeline.image;
+
+import lombok.extern.slf4j.Slf4j;
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Reads image dimensions, format, sample count and EXIF fields from the image header only.
+ * No pixel data is decoded, so the cost is independent of the image resolution.
+ */
+@Slf4j
+public final class ImageHeaderReader {
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    private static final int APP1_MARKER = 0xE1;
+
+    private ImageHeaderReader() {
+    }
+
+    /**
+     * Reads the header of the image in the given stream.
+     *
+     * @param in the image bytes; the stream is not closed.
+     * @return the image header.
+     * @throws IOException if the format is unsupported or the header is malformed.
+     */
+    public static ImageHeader read(InputStream in) throws IOException {
+        try (ImageInputStream iis = new MemoryCacheImageInputStream(in)) {
+            return read(iis);
+        }
+    }
+
+    /**
+     * Reads the header of the image in the given image stream.
+     *
+     * @param iis the image input stream; the stream is not closed.
+     * @return the image header.
+     * @throws IOException if the format is unsupported or the header is malformed.
+     */
+    public static ImageHeader read(ImageInputStream iis) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(iis, true, false);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+            int bands = readBands(reader);
+            ExifData exif = "jpeg".equals(format) ? readJpegExif(reader) : ExifData.EMPTY;
+            return new ImageHeader(width, height, format, bands, exif.orientation(), exif.captureTime(),
+                    exif.cameraModel());
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Returns the number of samples per pixel the reader decodes to, from the image
+     * type it prefers; 4 if it does not say.
+     */
+    private static int readBands(ImageReader reader) throws IOException {
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+            type = types.hasNext() ? types.next() : null;
+        }
+        return type != null ? type.getNumBands() : 4;
+    }
+
+    /**
+     * Extracts EXIF fields from the APP1 segment of a JPEG.
+     * The JPEG reader only parses the marker segments here; scan data is not touched.
+     *
+     * @param reader the JPEG reader positioned on the image.
+     * @return the parsed EXIF data, or {@link ExifData#EMPTY}.
+     */
+    private static ExifData readJpegExif(ImageReader reader) throws IOException {
+        IIOMetadata metadata;
+        try {
+            metadata = reader.getImageMetadata(0);
+        } catch (IIOException e) {
+            log.debug("Unable to read JPEG metadata: {}", e.getMessage());
+            return ExifData.EMPTY;
+        }
+        if (metadata == null) {
+            return ExifData.EMPTY;
+        }
+        Node root = metadata.getAsTree(JPEG_METADATA_FORMAT);
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (!"markerSequence".equals(child.getNodeName())) {
+                continue;
+            }
+            for (Node marker = child.getFirstChild(); marker != null; marker = marker.getNextSibling()) {
+                if (isApp1(marker) && ((IIOMetadataNode) marker).getUserObject() instanceof byte[] data) {
+                    ExifData exif = ExifData.parse(data);
+                    if (exif != ExifData.EMPTY) {
+                        return exif;
+                    }
+                }
+            }
+        }
+        return ExifData.EMPTY;
+    }
+
+    private static boolean isApp1(Node marker) {
+        if (!"unknown".equals(marker.getNodeName())) {
+            return false;
+        }
+        Node tag = marker.getAttributes().getNamedItem("MarkerTag");
+        return tag != null && Integer.parseInt(tag.getNodeValue()) == APP1_MARKER;
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.imagepipeline.image;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Scaling helpers for the subsampled decode path.
+ * The image is first read close to the target size (see {@link #subsamplingFactor}),
+ * then brought to its exact size with a single resample: Java2D bicubic by default,
+ * or one of the {@link Resampler} filters.
+ */
+public final class ImageScaler {
+
+    /**
+     * The decoded image is kept at least this many times larger than the target,
+     * so the final resample still has real pixels to filter.
+     */
+    static final int OVERSAMPLING = 2;
+
+    private ImageScaler() {
+    }
+
+    /**
+     * Computes the largest source subsampling factor that keeps the decoded image
+     * at least {@link #OVERSAMPLING} times the target size in both dimensions.
+     *
+     * @param sourceWidth  the source width in pixels.
+     * @param sourceHeight the source height in pixels.
+     * @param targetWidth  the target width in pixels.
+     * @param targetHeight the target height in pixels.
+     * @return the subsampling factor, at least 1.
+     */
+    public static int subsamplingFactor(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        int factor = Math.min(sourceWidth / (targetWidth * OVERSAMPLING), sourceHeight / (targetHeight * OVERSAMPLING));
+        return Math.max(1, factor);
+    }
+
+    /**
+     * Computes the output size of a rendition. Images are never upscaled.
+     *
+     * @param sourceWidth  the source width in pixels.
+     * @param sourceHeight the source height in pixels.
+     * @param longEdge     the rendition's long-edge bound.
+     * @param mode         the fit mode.
+     * @return the rendition size.
+     */
+    public static Dimension targetSize(int sourceWidth, int sourceHeight, int longEdge, FitMode mode) {
+        if (mode == FitMode.CROP) {
+            int side = Math.min(longEdge, Math.min(sourceWidth, sourceHeight));
+            return new Dimension(side, side);
+        }
+        double scale = Math.min(1.0, (double) longEdge / Math.max(sourceWidth, sourceHeight));
+        return new Dimension(Math.max(1, (int) Math.round(sourceWidth * scale)),
+                Math.max(1, (int) Math.round(sourceHeight * scale)));
+    }
+
+    /**
+     * Computes the output size for a bounding box. Images are never upscaled.
+     * In {@link FitMode#FIT} mode the whole image is scaled to fit inside the box;
+     * in {@link FitMode#CROP} mode the output has the box's aspect ratio, and is
+     * scaled down as a whole where the source is smaller than the box.
+     *
+     * @param sourceWidth  the source width in pixels.
+     * @param sourceHeight the source height in pixels.
+     * @param boxWidth     the box width, or 0 for no bound.
+     * @param boxHeight    the box height, or 0 for no bound.
+     * @param mode         the fit mode; CROP needs both bounds.
+     * @return the output size.
+     */
+    public static Dimension targetSize(int sourceWidth, int sourceHeight, int boxWidth, int boxHeight, FitMode mode) {
+        if (mode == FitMode.CROP) {
+            double scale = Math.min(1.0, Math.min((double) sourceWidth / boxWidth, (double) sourceHeight / boxHeight));
+            return new Dimension(Math.max(1, (int) Math.round(boxWidth * scale)),
+                    Math.max(1, (int) Math.round(boxHeight * scale)));
+        }
+        double scale = 1.0;
+        if (boxWidth > 0) {
+            scale = Math.min(scale, (double) boxWidth / sourceWidth);
+        }
+        if (boxHeight > 0) {
+            scale = Math.min(scale, (double) boxHeight / sourceHeight);
+        }
+        return new Dimension(Math.max(1, (int) Math.round(sourceWidth * scale)),
+                Math.max(1, (int) Math.round(sourceHeight * scale)));
+    }
+
+    /**
+     * Resamples an image to the target size in one high-quality bicubic step.
+     *
+     * @param source       the source image.
+     * @param targetWidth  the width.
+     * @param targetHeight the height.
+     * @return the resampled RGB image.
+     */
+    public static BufferedImage resample(BufferedImage source, int targetWidth, int targetHeight) {
+        return resample(source, targetWidth, targetHeight, FitMode.FIT);
+    }
+
+    /**
+     * Resamples an image to the target size in one high-quality bicubic step.
+     * In {@link FitMode#CROP} mode only the centered region of the source with the
+     * target's aspect ratio is used; for a square target, the centered square.
+     *
+     * @param source       the source image.
+     * @param targetWidth  the width.
+     * @param targetHeight the height.
+     * @param mode         the fit mode.
+     * @return the resampled RGB image.
+     */
+    public static BufferedImage resample(BufferedImage source, int targetWidth, int targetHeight, FitMode mode) {
+        return resampleInto(source, sourceRegion(source, targetWidth, targetHeight, mode),
+                new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB));
+    }
+
+    /**
+     * Resamples an image into an RGB image borrowed from a pool; the caller returns it
+     * to the pool once it is no longer needed.
+     *
+     * @param source       the source image.
+     * @param targetWidth  the width.
+     * @param targetHeight the height.
+     * @param mode         the fit mode.
+     * @param pool         the pool to borrow the result from.
+     * @return the resampled RGB image.
+     */
+    public static BufferedImage resample(BufferedImage source, int targetWidth, int targetHeight, FitMode mode,
+                                         RasterPool pool) {
+        return resample(source, targetWidth, targetHeight, mode, ResampleFilter.BICUBIC, pool);
+    }
+
+    /**
+     * Resamples an image with the given filter into an RGB image borrowed from a pool;
+     * the caller returns it to the pool once it is no longer needed.
+     *
+     * @param source       the source image.
+     * @param targetWidth  the width.
+     * @param targetHeight the height.
+     * @param mode         the fit mode.
+     * @param filter       the resampling filter.
+     * @param pool         the pool to borrow the result from, or null to allocate it.
+     * @return the resampled RGB image.
+     */
+    public static BufferedImage resample(BufferedImage source, int targetWidth, int targetHeight, FitMode mode,
+                                         ResampleFilter filter, RasterPool pool) {
+        return resample(source, targetWidth, targetHeight, mode, filter, pool, null);
+    }
+
+    /**
+     * Resamples an image with the given filter, splitting the output into row bands
+     * across a fork/join pool. The output is the same as without the split. Only the
+     * convolution filters are split; {@link ResampleFilter#BICUBIC} is drawn by Java2D,
+     * which does not promise that concurrent drawing into one image is safe, so it always
+     * runs on the calling thread.
+     *
+     * @param source       the source image.
+     * @param targetWidth  the width.
+     * @param targetHeight the height.
+     * @param mode         the fit mode.
+     * @param filter       the resampling filter.
+     * @param pool         the pool to borrow the result from, or null to allocate it.
+     * @param forkJoinPool the pool to run the bands on, or null to run on the calling thread.
+     * @return the resampled RGB image.
+     */
+    public static BufferedImage resample(BufferedImage source, int targetWidth, int targetHeight, FitMode mode,
+                                         ResampleFilter filter, RasterPool pool, ForkJoinPool forkJoinPool) {
+        Rectangle region = sourceRegion(source, targetWidth, targetHeight, mode);
+        if (filter != ResampleFilter.BICUBIC) {
+            return Resampler.resample(source, region, targetWidth, targetHeight, filter, pool, forkJoinPool);
+        }
+        BufferedImage resized = pool != null
+                ? pool.acquire(targetWidth, targetHeight)
+                : new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        return resampleInto(source, region, resized);
+    }
+
+    /**
+     * Returns the part of the source a resample uses: all of it, or in {@link FitMode#CROP}
+     * mode the widest centered region with the target's aspect ratio.
+     */
+    private static Rectangle sourceRegion(BufferedImage source, int targetWidth, int targetHeight, FitMode mode) {
+        int sw = source.getWidth();
+        int sh = source.getHeight();
+        if (mode != FitMode.CROP) {
+            return new Rectangle(0, 0, sw, sh);
+        }
+        int cw = (int) Math.min(sw, Math.round((double) sh * targetWidth / targetHeight));
+        int ch = (int) Math.min(sh, Math.round((double) sw * targetHeight / targetWidth));
+        return new Rectangle((sw - cw) / 2, (sh - ch) / 2, cw, ch);
+    }
+
+    private static BufferedImage resampleInto(BufferedImage source, Rectangle region, BufferedImage resized) {
+        int targetWidth = resized.getWidth();
+        int targetHeight = resized.getHeight();
+        Graphics2D g2d = resized.createGraphics();
+        if (source.getColorModel().hasAlpha()) {
+            // Transparent pixels blend over the destination, which may be a reused raster;
+            // clear it to the black of a new image.
+            g2d.setColor(Color.BLACK);
+            g2d.fillRect(0, 0, targetWidth, targetHeight);
+        }
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(source, 0, 0, targetWidth, targetHeight,
+                region.x, region.y, region.x + region.width, region.y + region.height, null);
+        g2d.dispose();
+        return resized;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.imagepipeline.image;
+
+/**
+ * Encoded formats the pipeline can write.
+ */
+public enum OutputFormat {
+
+    /**
+     * Baseline or progressive JPEG.
+     */
+    JPEG("jpg", "image/jpeg"),
+
+    /**
+     * Lossy or lossless WebP; needs a WebP ImageIO plugin at runtime.
+     */
+    WEBP("webp", "image/webp"),
+
+    /**
+     * Lossless PNG; the quality setting has no effect.
+     */
+    PNG("png", "image/png");
+
+    private final String extension;
+    private final String contentType;
+
+    OutputFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Returns the file extension used in S3 keys.
+     *
+     * @return the extension, without a dot.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Returns the content type of encoded images.
+     *
+     * @return the MIME type.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+}
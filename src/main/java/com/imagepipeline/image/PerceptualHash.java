@@ -0,0 +1,90 @@
+package com.imagepipeline.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Difference hash (dHash) of an image.
+ * The image is reduced to a 9x8 grid of mean luminance values, and each of the 64 bits
+ * records whether a cell is darker than its right-hand neighbour. The hash depends on
+ * the coarse gradient structure only, so resized or re-encoded copies of a picture
+ * differ from the original in few bits, while unrelated pictures differ in about half.
+ */
+public final class PerceptualHash {
+
+    /**
+     * Number of bits in a hash.
+     */
+    public static final int BITS = 64;
+
+    /**
+     * The image needs no more than this size to be hashed; a decode close to it is enough.
+     */
+    public static final int DECODE_SIZE = 64;
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Computes the difference hash of an image.
+     * Every pixel contributes to the mean of its grid cell, so the result does not
+     * depend on which pixels a subsampled decode happened to keep.
+     *
+     * @param image the image, at any size.
+     * @return the 64-bit hash.
+     */
+    public static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] sums = new double[GRID_WIDTH * GRID_HEIGHT];
+        int[] counts = new int[GRID_WIDTH * GRID_HEIGHT];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = (int) ((long) y * GRID_HEIGHT / height) * GRID_WIDTH;
+            for (int x = 0; x < width; x++) {
+                int cell = cellRow + (int) ((long) x * GRID_WIDTH / width);
+                sums[cell] += luminance(row[x]);
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH - 1; x++) {
+                int cell = y * GRID_WIDTH + x;
+                hash <<= 1;
+                if (mean(sums, counts, cell) < mean(sums, counts, cell + 1)) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of bits in which two hashes differ.
+     *
+     * @param a the first hash.
+     * @param b the second hash.
+     * @return the Hamming distance, from 0 to 64.
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static double mean(double[] sums, int[] counts, int cell) {
+        // An image smaller than the grid leaves some cells empty; they count as black.
+        return counts[cell] == 0 ? 0 : sums[cell] / counts[cell];
+    }
+
+    private static double luminance(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        return 0.299 * r + 0.587 * g + 0.114 * b;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.imagepipeline.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Lossless PNG encoder; the quality has no effect.
+ */
+public class PngEncoder implements ImageEncoder {
+
+    @Override
+    public OutputFormat getFormat() {
+        return OutputFormat.PNG;
+    }
+
+    @Override
+    public void encode(BufferedImage image, float quality, ImageOutputStream output) throws IOException {
+        if (!ImageIO.write(image, "png", output)) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+
+    @Override
+    public void encodeWithin(BufferedImage image, long maxBytes, float minQuality, float maxQuality,
+                             ChunkedImageOutputStream output) throws IOException {
+        output.clear();
+        encode(image, maxQuality, output);
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.imagepipeline.image;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of packed-int pixel arrays for RGB images.
+ * Arrays are pooled by size class, a quarter of an octave wide, so an image borrows an
+ * array at most 25% larger than it needs and every nearby size shares the class. A
+ * multi-megapixel array is large enough to be allocated straight into the old
+ * generation; reusing it avoids both the allocation and the old-generation collection
+ * that would eventually free it. The pool keeps idle arrays up to a byte budget and
+ * leaves the rest to the garbage collector.
+ */
+public class RasterPool {
+
+    /**
+     * Smallest size class in pixels; smaller images are cheap to allocate and are not pooled.
+     */
+    static final int MIN_POOLED_PIXELS = 64 * 64;
+
+    private static final DirectColorModel RGB = new DirectColorModel(24, 0xff0000, 0x00ff00, 0x0000ff);
+
+    private final long maxRetainedBytes;
+    private final Map<Integer, Deque<int[]>> classes = new ConcurrentHashMap<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a RasterPool.
+     *
+     * @param maxRetainedBytes the maximum total size of the idle arrays kept.
+     */
+    public RasterPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    /**
+     * Borrows an RGB image backed by a pooled array. Its pixels are undefined; the
+     * caller must overwrite all of them.
+     *
+     * @param width  the width in pixels.
+     * @param height the height in pixels.
+     * @return an image of type {@link BufferedImage#TYPE_INT_RGB}.
+     */
+    public BufferedImage acquire(int width, int height) {
+        int pixels = Math.multiplyExact(width, height);
+        if (pixels < MIN_POOLED_PIXELS) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        int classSize = classSize(pixels);
+        int[] array = null;
+        Deque<int[]> idle = classes.get(classSize);
+        if (idle != null) {
+            array = idle.pollFirst();
+        }
+        if (array == null) {
+            misses.incrementAndGet();
+            array = new int[classSize];
+        } else {
+            retainedBytes.addAndGet(-(long) classSize * Integer.BYTES);
+            hits.incrementAndGet();
+        }
+        DataBuffer buffer = new DataBufferInt(array, pixels);
+        WritableRaster raster = Raster.createPackedRaster(buffer, width, height, width,
+                RGB.getMasks(), new Point());
+        return new BufferedImage(RGB, raster, false, null);
+    }
+
+    /**
+     * Returns the array behind an image to the pool. The caller must not use the image
+     * afterwards. Images whose array is not of a pooled size are ignored.
+     *
+     * @param image an image from {@link #acquire}, or null.
+     */
+    public void release(BufferedImage image) {
+        if (image == null || !(image.getRaster().getDataBuffer() instanceof DataBufferInt buffer)) {
+            return;
+        }
+        int[] array = buffer.getData();
+        int length = array.length;
+        if (length < MIN_POOLED_PIXELS || classSize(length) != length) {
+            return;
+        }
+        long bytes = (long) length * Integer.BYTES;
+        if (retainedBytes.addAndGet(bytes) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-bytes);
+            return;
+        }
+        classes.computeIfAbsent(length, key -> new ConcurrentLinkedDeque<>()).offerFirst(array);
+    }
+
+    /**
+     * Returns the total size of the idle arrays kept.
+     *
+     * @return the retained bytes.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Returns the number of images served from a pooled array.
+     *
+     * @return the hit count.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of pooled-size images that needed a new array.
+     *
+     * @return the miss count.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Rounds a pixel count up to its size class: the next multiple of a quarter of the
+     * power of two below it.
+     */
+    static int classSize(int pixels) {
+        int step = Math.max(1, Integer.highestOneBit(pixels - 1) >> 2);
+        return Math.ceilDiv(pixels, step) * step;
+    }
+
+}
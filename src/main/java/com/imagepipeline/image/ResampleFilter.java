@@ -0,0 +1,98 @@
+package com.imagepipeline.image;
+
+/**
+ * Reconstruction filter used to resample an image.
+ */
+public enum ResampleFilter {
+
+    /**
+     * Keys cubic convolution (a = -0.5), the kernel of Java2D bicubic interpolation.
+     * {@link ImageScaler} resizes with it through {@code Graphics2D.drawImage}, which
+     * samples the source at a fixed 4x4 footprint whatever the scale, so it relies on
+     * the decode having already brought the image close to the target size. Streaming
+     * decodes convolve with the kernel itself, scaled to the output pixel.
+     */
+    BICUBIC(2) {
+        @Override
+        double weight(double x) {
+            double ax = Math.abs(x);
+            if (ax < 1) {
+                return 1.5 * ax * ax * ax - 2.5 * ax * ax + 1;
+            }
+            if (ax < 2) {
+                return -0.5 * ax * ax * ax + 2.5 * ax * ax - 4 * ax + 2;
+            }
+            return 0;
+        }
+    },
+
+    /**
+     * Windowed sinc with three lobes: the sharpest of the filters, with slight ringing
+     * at hard edges.
+     */
+    LANCZOS3(3) {
+        @Override
+        double weight(double x) {
+            if (x == 0) {
+                return 1;
+            }
+            if (x <= -3 || x >= 3) {
+                return 0;
+            }
+            double px = Math.PI * x;
+            return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+        }
+    },
+
+    /**
+     * Mitchell-Netravali cubic (B = C = 1/3): a balance of sharpness, ringing and aliasing.
+     */
+    MITCHELL(2) {
+        @Override
+        double weight(double x) {
+            double ax = Math.abs(x);
+            if (ax < 1) {
+                return (7 * ax * ax * ax - 12 * ax * ax + 16.0 / 3) / 6;
+            }
+            if (ax < 2) {
+                return (-7.0 / 3 * ax * ax * ax + 12 * ax * ax - 20 * ax + 32.0 / 3) / 6;
+            }
+            return 0;
+        }
+    },
+
+    /**
+     * Box filter scaled to the output pixel: each output pixel averages the source
+     * pixels it covers. Softest, with no ringing.
+     */
+    AREA(0.5) {
+        @Override
+        double weight(double x) {
+            return x > -0.5 && x <= 0.5 ? 1 : 0;
+        }
+    };
+
+    private final double support;
+
+    ResampleFilter(double support) {
+        this.support = support;
+    }
+
+    /**
+     * Returns the radius of the kernel, in source pixels at unit scale.
+     *
+     * @return the support.
+     */
+    double getSupport() {
+        return support;
+    }
+
+    /**
+     * Evaluates the kernel.
+     *
+     * @param x the distance from the sample center, in pixels at unit scale.
+     * @return the unnormalized weight.
+     */
+    abstract double weight(double x);
+
+}
@@ -0,0 +1,262 @@
+package com.imagepipeline.image;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Separable convolution resampler for RGB images.
+ * The source is unpacked into three float planes, resampled horizontally and then
+ * vertically with weights precomputed per output row and column. The kernel widens
+ * with the downscale factor, so every source pixel contributes and large reductions
+ * do not alias. Both passes run as weighted sums of whole rows, which the
+ * {@link RowKernel} computes with SIMD instructions when the Vector API is available:
+ * the source is unpacked transposed so the horizontal pass also works on rows, and
+ * the intermediate result is transposed back for the vertical pass. Output rows are
+ * produced in bands whose float planes stay within {@link #WORKING_SET_BYTES}, and every
+ * stage of a band can be split across a {@link ForkJoinPool}.
+ */
+@Slf4j
+public final class Resampler {
+
+    /**
+     * The kernel every resample and streaming downscale uses, chosen once per JVM.
+     */
+    static final RowKernel KERNEL = RowKernel.preferred();
+
+    static {
+        if (KERNEL instanceof VectorRowKernel) {
+            log.info("Resampling with the Vector API row kernel");
+        } else {
+            log.info("Resampling with the scalar row kernel; start the JVM with "
+                    + "--add-modules jdk.incubator.vector to use the Vector API");
+        }
+    }
+
+    static final int CHANNELS = 3;
+
+    /**
+     * Upper bound on the float planes one resample holds at a time. Output rows are
+     * produced in bands whose source and output rows fit in it, so the working set does
+     * not grow with the image.
+     */
+    public static final long WORKING_SET_BYTES = 8L << 20;
+
+    private Resampler() {
+    }
+
+    /**
+     * Estimates the float planes a resample of an image to at most its own size holds.
+     *
+     * @param width  the source width.
+     * @param height the source height.
+     * @return the working set in bytes, at most {@link #WORKING_SET_BYTES}.
+     */
+    public static long workingSetBytes(int width, int height) {
+        // Unpacked source, horizontal pass and output each take at most a float per channel and source pixel.
+        return Math.min(WORKING_SET_BYTES, 3L * CHANNELS * Float.BYTES * width * height);
+    }
+
+    /**
+     * Resamples a region of an image.
+     * Transparent pixels are composited over black, as Java2D does when drawing into an RGB image.
+     *
+     * @param source       the source image.
+     * @param region       the source region to resample.
+     * @param targetWidth  the output width.
+     * @param targetHeight the output height.
+     * @param filter       the filter.
+     * @param pool         the pool to borrow the output from, or null to allocate it.
+     * @param forkJoinPool the pool to split each pass across in row bands, or null to run on the calling thread.
+     * @return the resampled RGB image; the same whether or not it is split.
+     */
+    public static BufferedImage resample(BufferedImage source, Rectangle region, int targetWidth, int targetHeight,
+                                         ResampleFilter filter, RasterPool pool, ForkJoinPool forkJoinPool) {
+        return resample(source, region, targetWidth, targetHeight, filter, pool, forkJoinPool, KERNEL);
+    }
+
+    static BufferedImage resample(BufferedImage source, Rectangle region, int targetWidth, int targetHeight,
+                                  ResampleFilter filter, RasterPool pool, ForkJoinPool forkJoinPool,
+                                  RowKernel kernel) {
+        return resample(source, region, targetWidth, targetHeight, filter, pool, forkJoinPool, kernel,
+                WORKING_SET_BYTES);
+    }
+
+    static BufferedImage resample(BufferedImage source, Rectangle region, int targetWidth, int targetHeight,
+                                  ResampleFilter filter, RasterPool pool, ForkJoinPool forkJoinPool,
+                                  RowKernel kernel, long workingSetBytes) {
+        int width = region.width;
+        int height = region.height;
+        Weights horizontal = Weights.of(width, targetWidth, filter);
+        Weights vertical = Weights.of(height, targetHeight, filter);
+        BufferedImage resized = pool != null
+                ? pool.acquire(targetWidth, targetHeight)
+                : new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        WritableRaster raster = resized.getRaster();
+
+        // Half of the working set holds the source rows of a band, unpacked and resampled
+        // horizontally; the other half holds the band's output rows. A single output row
+        // whose filter reaches further than that still gets all of its source rows.
+        long sourceRowBytes = (long) CHANNELS * Float.BYTES * (width + targetWidth);
+        long outputRowBytes = (long) CHANNELS * Float.BYTES * targetWidth;
+        int maxSourceRows = (int) Math.min(height, Math.max(vertical.stride, workingSetBytes / 2 / sourceRowBytes));
+        int maxOutputRows = (int) Math.min(targetHeight, Math.max(1, workingSetBytes / 2 / outputRowBytes));
+        float[][] planes = new float[CHANNELS][maxSourceRows * width];
+        float[][] rows = new float[CHANNELS][maxSourceRows * targetWidth];
+        float[][] output = new float[CHANNELS][maxOutputRows * targetWidth];
+
+        // Bands of output rows are fixed by the working set alone, never by the fork/join
+        // split, so every output row is computed the same way in any split.
+        for (int from = 0; from < targetHeight; ) {
+            int first = vertical.start[from];
+            int last = first + vertical.count[from];
+            int to = from + 1;
+            while (to < targetHeight && to - from < maxOutputRows
+                    && vertical.start[to] + vertical.count[to] - first <= maxSourceRows) {
+                last = Math.max(last, vertical.start[to] + vertical.count[to]);
+                to++;
+            }
+            resampleBand(source, region, first, last - first, horizontal, vertical, from, to, planes, rows, output,
+                    raster, forkJoinPool, kernel);
+            from = to;
+        }
+        return resized;
+    }
+
+    /**
+     * Resamples output rows {@code from} to {@code to} from source rows {@code first}
+     * onwards, the only ones their vertical weights reach.
+     */
+    private static void resampleBand(BufferedImage source, Rectangle region, int first, int bandHeight,
+                                     Weights horizontal, Weights vertical, int from, int to, float[][] planes,
+                                     float[][] rows, float[][] output, WritableRaster raster,
+                                     ForkJoinPool forkJoinPool, RowKernel kernel) {
+        int targetWidth = horizontal.start.length;
+        Bands.forEach(forkJoinPool, bandHeight, (a, b) -> unpackTransposed(source, region, first, bandHeight,
+                planes, a, b));
+
+        // Source columns are rows here: each output column is computed as a row of bandHeight
+        // values and stored back transposed, as a column of bandHeight rows of targetWidth values.
+        Bands.forEach(forkJoinPool, targetWidth, (a, b) -> {
+            float[] column = new float[bandHeight];
+            for (int x = a; x < b; x++) {
+                for (int c = 0; c < CHANNELS; c++) {
+                    kernel.weightedSum(planes[c], horizontal.start[x], horizontal.count[x], bandHeight,
+                            horizontal.values, x * horizontal.stride, column, 0);
+                    float[] plane = rows[c];
+                    for (int y = 0; y < bandHeight; y++) {
+                        plane[y * targetWidth + x] = column[y];
+                    }
+                }
+            }
+        });
+
+        Bands.forEach(forkJoinPool, to - from, (a, b) -> {
+            for (int c = 0; c < CHANNELS; c++) {
+                resampleRows(rows[c], first, targetWidth, vertical, output[c], from, from + a, from + b, kernel);
+            }
+            pack(output, targetWidth, raster, from, from + a, from + b);
+        });
+    }
+
+    /**
+     * Resamples output rows {@code from} to {@code to} of a band starting at output row
+     * {@code bandFrom}, from a plane whose first row is source row {@code first}.
+     */
+    private static void resampleRows(float[] src, int first, int cols, Weights weights, float[] dst, int bandFrom,
+                                     int from, int to, RowKernel kernel) {
+        for (int row = from; row < to; row++) {
+            kernel.weightedSum(src, weights.start[row] - first, weights.count[row], cols,
+                    weights.values, row * weights.stride, dst, (row - bandFrom) * cols);
+        }
+    }
+
+    /**
+     * Unpacks rows {@code from} to {@code to} of a band of {@code bandHeight} region rows,
+     * starting at region row {@code first}, into one plane per channel, stored column by column.
+     */
+    private static void unpackTransposed(BufferedImage source, Rectangle region, int first, int bandHeight,
+                                         float[][] planes, int from, int to) {
+        int width = region.width;
+        boolean alpha = source.getColorModel().hasAlpha();
+        float[] red = planes[0];
+        float[] green = planes[1];
+        float[] blue = planes[2];
+        int[] row = new int[width];
+        for (int y = from; y < to; y++) {
+            source.getRGB(region.x, region.y + first + y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int argb = row[x];
+                float scale = alpha ? (argb >>> 24) / 255f : 1f;
+                int index = x * bandHeight + y;
+                red[index] = ((argb >> 16) & 0xff) * scale;
+                green[index] = ((argb >> 8) & 0xff) * scale;
+                blue[index] = (argb & 0xff) * scale;
+            }
+        }
+    }
+
+    private static void pack(float[][] planes, int width, WritableRaster raster, int bandFrom, int from, int to) {
+        int[] row = new int[width];
+        for (int y = from; y < to; y++) {
+            int offset = (y - bandFrom) * width;
+            for (int x = 0; x < width; x++) {
+                row[x] = clamp(planes[0][offset + x]) << 16 | clamp(planes[1][offset + x]) << 8
+                        | clamp(planes[2][offset + x]);
+            }
+            raster.setDataElements(0, y, width, 1, row);
+        }
+    }
+
+    static int clamp(float value) {
+        // Lobed filters overshoot at edges.
+        return Math.clamp(Math.round(value), 0, 255);
+    }
+
+    /**
+     * Normalized filter weights for resampling one dimension, {@code stride} per output sample.
+     */
+    record Weights(int[] start, int[] count, float[] values, int stride) {
+
+        static Weights of(int sourceSize, int targetSize, ResampleFilter filter) {
+            double scale = (double) sourceSize / targetSize;
+            // Widen the kernel when downscaling so it covers every source pixel.
+            double filterScale = Math.max(1, scale);
+            double support = filter.getSupport() * filterScale;
+            int stride = (int) Math.ceil(support) * 2 + 1;
+            int[] start = new int[targetSize];
+            int[] count = new int[targetSize];
+            float[] values = new float[targetSize * stride];
+            for (int i = 0; i < targetSize; i++) {
+                double center = (i + 0.5) * scale;
+                int min = Math.max(0, (int) Math.floor(center - support + 0.5));
+                int max = Math.min(sourceSize, (int) Math.floor(center + support + 0.5));
+                max = Math.min(max, min + stride);
+                double sum = 0;
+                double[] weights = new double[max - min];
+                for (int j = min; j < max; j++) {
+                    weights[j - min] = filter.weight((j + 0.5 - center) / filterScale);
+                    sum += weights[j - min];
+                }
+                if (sum == 0) {
+                    // A box narrower than a pixel can miss every sample; take the nearest one.
+                    min = Math.min(sourceSize - 1, (int) center);
+                    max = min + 1;
+                    weights = new double[]{1};
+                    sum = 1;
+                }
+                start[i] = min;
+                count[i] = max - min;
+                for (int k = 0; k < count[i]; k++) {
+                    values[i * stride + k] = (float) (weights[k] / sum);
+                }
+            }
+            return new Weights(start, count, values, stride);
+        }
+
+    }
+
+}
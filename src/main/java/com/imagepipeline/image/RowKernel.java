@@ -0,0 +1,42 @@
+package com.imagepipeline.image;
+
+/**
+ * Inner loop of the separable resampler: a weighted sum of consecutive rows of a
+ * row-major plane.
+ */
+interface RowKernel {
+
+    /**
+     * System property that forces the scalar kernel even when the Vector API is available.
+     */
+    String SCALAR_PROPERTY = "pipeline.resample.scalar";
+
+    /**
+     * Computes {@code dst[dstOffset + i] = sum over k of weights[weightOffset + k] * src[(start + k) * cols + i]}
+     * for every column {@code i}.
+     *
+     * @param src          the source plane.
+     * @param start        the first source row.
+     * @param count        the number of source rows.
+     * @param cols         the row length.
+     * @param weights      the weights array.
+     * @param weightOffset the index of the first row's weight.
+     * @param dst          the destination array.
+     * @param dstOffset    the index of the destination row.
+     */
+    void weightedSum(float[] src, int start, int count, int cols, float[] weights, int weightOffset,
+                     float[] dst, int dstOffset);
+
+    /**
+     * Returns the SIMD kernel when the {@code jdk.incubator.vector} module is available,
+     * otherwise the scalar one.
+     *
+     * @return the kernel to use.
+     */
+    static RowKernel preferred() {
+        boolean vectorAvailable = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        // The vector kernel class is only loaded once the module is known to be there.
+        return vectorAvailable && !Boolean.getBoolean(SCALAR_PROPERTY) ? new VectorRowKernel() : new ScalarRowKernel();
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.imagepipeline.image;
+
+import java.util.Arrays;
+
+/**
+ * Portable {@link RowKernel}. Rows are accumulated one at a time, which keeps the
+ * memory access sequential and leaves the inner loop simple enough for the JIT to
+ * auto-vectorize where it can.
+ */
+class ScalarRowKernel implements RowKernel {
+
+    @Override
+    public void weightedSum(float[] src, int start, int count, int cols, float[] weights, int weightOffset,
+                            float[] dst, int dstOffset) {
+        Arrays.fill(dst, dstOffset, dstOffset + cols, 0f);
+        for (int k = 0; k < count; k++) {
+            float weight = weights[weightOffset + k];
+            int srcOffset = (start + k) * cols;
+            for (int i = 0; i < cols; i++) {
+                dst[dstOffset + i] += weight * src[srcOffset + i];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.imagepipeline.image;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * An upload whose bytes live in a file on local disk rather than in the request.
+ */
+public class SpooledFile implements MultipartFile {
+
+    private final Path path;
+    private final String originalFilename;
+    private final String contentType;
+    private final long size;
+    private final String contentHash;
+
+    /**
+     * Constructs a SpooledFile whose content hash is unknown.
+     *
+     * @param path             the file holding the upload bytes.
+     * @param originalFilename the original filename of the upload.
+     * @param contentType      the content type of the upload.
+     * @param size             the size in bytes.
+     */
+    public SpooledFile(Path path, String originalFilename, String contentType, long size) {
+        this(path, originalFilename, contentType, size, null);
+    }
+
+    /**
+     * Constructs a SpooledFile.
+     *
+     * @param path             the file holding the upload bytes.
+     * @param originalFilename the original filename of the upload.
+     * @param contentType      the content type of the upload.
+     * @param size             the size in bytes.
+     * @param contentHash      the hex SHA-256 of the upload bytes, or null if unknown.
+     */
+    public SpooledFile(Path path, String originalFilename, String contentType, long size, String contentHash) {
+        this.path = path;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.size = size;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Returns the file holding the upload bytes.
+     *
+     * @return the spool path.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the SHA-256 of the upload bytes, computed while they were spooled.
+     *
+     * @return the lowercase hex digest, or null if unknown.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException {
+        Files.copy(path, dest, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.imagepipeline.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * Incremental separable downscaler that takes an image as a sequence of row bands.
+ * Each source row is resampled horizontally as it arrives and kept in a window of
+ * just the rows the pending output rows still need; an output row is computed from
+ * the window as soon as its last source row has arrived. Memory therefore depends on
+ * the output size and the filter support, not on the source height. Rows are weighted
+ * as {@link Resampler} weights them, so the result matches an in-memory resample.
+ */
+public final class StreamingDownscaler {
+
+    private static final int CHANNELS = Resampler.CHANNELS;
+
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final int targetWidth;
+    private final int targetHeight;
+    private final Resampler.Weights horizontal;
+    private final Resampler.Weights vertical;
+    private final RowKernel kernel;
+    private final BufferedImage resized;
+
+    // Horizontally resampled source rows from windowStart on, targetWidth values per row.
+    private final float[][] window;
+    private final int windowRows;
+    private int windowStart;
+    private int windowCount;
+
+    private int nextSourceRow;
+    private int nextTargetRow;
+
+    private final int[] sourceRow;
+    private final int[] targetRow;
+    private final float[] output;
+
+    /**
+     * Constructs a downscaler for one image.
+     *
+     * @param sourceWidth  the width of the incoming rows.
+     * @param sourceHeight the total number of incoming rows.
+     * @param targetWidth  the output width.
+     * @param targetHeight the output height.
+     * @param filter       the filter.
+     */
+    public StreamingDownscaler(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight,
+                               ResampleFilter filter) {
+        this(sourceWidth, sourceHeight, targetWidth, targetHeight, filter, Resampler.KERNEL);
+    }
+
+    StreamingDownscaler(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight,
+                        ResampleFilter filter, RowKernel kernel) {
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.horizontal = Resampler.Weights.of(sourceWidth, targetWidth, filter);
+        this.vertical = Resampler.Weights.of(sourceHeight, targetHeight, filter);
+        this.kernel = kernel;
+        this.resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+        this.windowRows = vertical.stride();
+        this.window = new float[CHANNELS][windowRows * targetWidth];
+        this.sourceRow = new int[sourceWidth];
+        this.targetRow = new int[targetWidth];
+        this.output = new float[CHANNELS * targetWidth];
+    }
+
+    /**
+     * Takes the next rows of the source.
+     * Transparent pixels are composited over black, as Java2D does when drawing into an RGB image.
+     *
+     * @param band the rows following those already taken, as wide as the source.
+     * @throws IllegalArgumentException if the band has the wrong width or runs past the last row.
+     */
+    public void accept(BufferedImage band) {
+        if (band.getWidth() != sourceWidth || nextSourceRow + band.getHeight() > sourceHeight) {
+            throw new IllegalArgumentException("Band of " + band.getWidth() + "x" + band.getHeight()
+                    + " does not fit at row " + nextSourceRow + " of " + sourceWidth + "x" + sourceHeight);
+        }
+        boolean alpha = band.getColorModel().hasAlpha();
+        for (int y = 0; y < band.getHeight(); y++) {
+            band.getRGB(0, y, sourceWidth, 1, sourceRow, 0, sourceWidth);
+            if (windowCount == windowRows) {
+                dropRowsBefore(vertical.start()[nextTargetRow]);
+            }
+            resampleRow(alpha, windowCount * targetWidth);
+            windowCount++;
+            nextSourceRow++;
+            emitCompleteRows();
+        }
+    }
+
+    /**
+     * Returns the output once every source row has been taken.
+     *
+     * @return the downscaled RGB image.
+     * @throws IllegalStateException if rows are still missing.
+     */
+    public BufferedImage finish() {
+        if (nextTargetRow < targetHeight) {
+            throw new IllegalStateException("Only " + nextSourceRow + " of " + sourceHeight + " rows taken");
+        }
+        return resized;
+    }
+
+    private void resampleRow(boolean alpha, int offset) {
+        int[] start = horizontal.start();
+        int[] count = horizontal.count();
+        float[] values = horizontal.values();
+        int stride = horizontal.stride();
+        for (int x = 0; x < targetWidth; x++) {
+            float red = 0;
+            float green = 0;
+            float blue = 0;
+            int weightOffset = x * stride;
+            for (int k = 0; k < count[x]; k++) {
+                int argb = sourceRow[start[x] + k];
+                float weight = values[weightOffset + k] * (alpha ? (argb >>> 24) / 255f : 1f);
+                red += weight * ((argb >> 16) & 0xff);
+                green += weight * ((argb >> 8) & 0xff);
+                blue += weight * (argb & 0xff);
+            }
+            window[0][offset + x] = red;
+            window[1][offset + x] = green;
+            window[2][offset + x] = blue;
+        }
+    }
+
+    private void emitCompleteRows() {
+        WritableRaster raster = resized.getRaster();
+        while (nextTargetRow < targetHeight
+                && vertical.start()[nextTargetRow] + vertical.count()[nextTargetRow] <= nextSourceRow) {
+            int row = nextTargetRow;
+            for (int c = 0; c < CHANNELS; c++) {
+                kernel.weightedSum(window[c], vertical.start()[row] - windowStart, vertical.count()[row], targetWidth,
+                        vertical.values(), row * vertical.stride(), output, c * targetWidth);
+            }
+            for (int x = 0; x < targetWidth; x++) {
+                targetRow[x] = Resampler.clamp(output[x]) << 16
+                        | Resampler.clamp(output[targetWidth + x]) << 8
+                        | Resampler.clamp(output[2 * targetWidth + x]);
+            }
+            raster.setDataElements(0, row, targetWidth, 1, targetRow);
+            nextTargetRow++;
+        }
+    }
+
+    /**
+     * Shifts the window so it starts at the given source row. Output rows start no earlier
+     * than the ones before them, so rows before the next output row's start are never read again.
+     */
+    private void dropRowsBefore(int row) {
+        // Past the last output row nothing is read any more; keep the window from overflowing.
+        int drop = nextTargetRow < targetHeight ? row - windowStart : windowCount;
+        for (int c = 0; c < CHANNELS; c++) {
+            System.arraycopy(window[c], drop * targetWidth, window[c], 0, (windowCount - drop) * targetWidth);
+        }
+        windowStart += drop;
+        windowCount -= drop;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.imagepipeline.image;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RowKernel} using the Vector API. Each strip of columns is accumulated in a
+ * register across all source rows with fused multiply-adds and stored once, so the
+ * destination is written a single time instead of once per source row.
+ */
+class VectorRowKernel implements RowKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void weightedSum(float[] src, int start, int count, int cols, float[] weights, int weightOffset,
+                            float[] dst, int dstOffset) {
+        int bound = SPECIES.loopBound(cols);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector sum = FloatVector.zero(SPECIES);
+            for (int k = 0; k < count; k++) {
+                FloatVector row = FloatVector.fromArray(SPECIES, src, (start + k) * cols + i);
+                sum = row.fma(FloatVector.broadcast(SPECIES, weights[weightOffset + k]), sum);
+            }
+            sum.intoArray(dst, dstOffset + i);
+        }
+        for (; i < cols; i++) {
+            float sum = 0;
+            for (int k = 0; k < count; k++) {
+                sum += weights[weightOffset + k] * src[(start + k) * cols + i];
+            }
+            dst[dstOffset + i] = sum;
+        }
+    }
+
+}
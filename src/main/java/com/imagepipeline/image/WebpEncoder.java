@@ -0,0 +1,80 @@
+package com.imagepipeline.image;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * WebP encoder, using whichever WebP ImageIO plugin is on the classpath.
+ * Lossy WebP is typically a quarter to a third smaller than JPEG at similar quality.
+ */
+public class WebpEncoder implements ImageEncoder {
+
+    private final boolean lossless;
+
+    /**
+     * Constructs a WebpEncoder.
+     *
+     * @param lossless whether to encode losslessly, ignoring the quality.
+     */
+    public WebpEncoder(boolean lossless) {
+        this.lossless = lossless;
+    }
+
+    /**
+     * Returns whether a WebP writer is installed.
+     *
+     * @return true if WebP images can be written.
+     */
+    public static boolean isAvailable() {
+        return ImageIO.getImageWritersByFormatName("webp").hasNext();
+    }
+
+    @Override
+    public OutputFormat getFormat() {
+        return OutputFormat.WEBP;
+    }
+
+    @Override
+    public void encode(BufferedImage image, float quality, ImageOutputStream output) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("webp");
+        if (!writers.hasNext()) {
+            throw new IOException("No WebP writer available");
+        }
+        ImageWriter writer = writers.next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            // Plugins list the lossy type first; pick by name so the order does not matter.
+            for (String type : param.getCompressionTypes()) {
+                if (type.toLowerCase(Locale.ROOT).startsWith(lossless ? "lossless" : "lossy")) {
+                    param.setCompressionType(type);
+                }
+            }
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @Override
+    public void encodeWithin(BufferedImage image, long maxBytes, float minQuality, float maxQuality,
+                             ChunkedImageOutputStream output) throws IOException {
+        // Lossless output does not depend on the quality.
+        if (lossless) {
+            output.clear();
+            encode(image, maxQuality, output);
+        } else {
+            ImageEncoder.super.encodeWithin(image, maxBytes, minQuality, maxQuality, output);
+        }
+    }
+
+}
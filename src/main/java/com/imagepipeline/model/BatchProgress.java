@@ -0,0 +1,46 @@
+package com.imagepipeline.model;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * POJO describing the aggregate progress of a batch upload.
+ */
+@Getter
+@ToString
+public class BatchProgress {
+
+    private final String batchId;
+    private final boolean receiving;
+    private final int files;
+    private final int admitted;
+    private final int rejected;
+    private final int failed;
+    private final int completed;
+    private final int progress;
+
+    /**
+     * Constructs a BatchProgress object.
+     *
+     * @param batchId   Identifier of the batch.
+     * @param receiving Whether the request body is still being read.
+     * @param files     Number of files read from the body so far.
+     * @param admitted  Number of files that started a pipeline job.
+     * @param rejected  Number of files that were too large or found no pipeline capacity in time.
+     * @param failed    Number of admitted jobs that ended with an error.
+     * @param completed Number of jobs that have finished every stage.
+     * @param progress  Mean progress percentage of the admitted jobs, failed ones counting as ended.
+     */
+    public BatchProgress(String batchId, boolean receiving, int files, int admitted, int rejected, int failed,
+                         int completed, int progress) {
+        this.batchId = batchId;
+        this.receiving = receiving;
+        this.files = files;
+        this.admitted = admitted;
+        this.rejected = rejected;
+        this.failed = failed;
+        this.completed = completed;
+        this.progress = progress;
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.imagepipeline.model;
 
+import lombok.Builder;
 import lombok.Getter;
 import lombok.ToString;
 
+import java.util.List;
+
 /**
  * POJO representing the metadata for an image.
  */
@@ -16,9 +19,15 @@ public class ImageMetadata {
     private final int height;
     private final String format;
     private final String tags;
+    private final int orientation;
+    private final String captureTime;
+    private final String cameraModel;
+    private final List<RenditionInfo> renditions;
+    private final String contentHash;
+    private final Long perceptualHash;
 
     /**
-     * Constructs an ImageMetadata object.
+     * Constructs an ImageMetadata object without EXIF information.
      *
      * @param imageId  Unique identifier for the image.
      * @param imageUrl URL where the image is stored.
@@ -28,12 +37,41 @@ public class ImageMetadata {
      * @param tags     Associated tags for the image.
      */
     public ImageMetadata(String imageId, String imageUrl, int width, int height, String format, String tags) {
+        this(imageId, imageUrl, width, height, format, tags, 1, null, null, List.of(), null, null);
+    }
+
+    /**
+     * Constructs an ImageMetadata object.
+     *
+     * @param imageId        Unique identifier for the image.
+     * @param imageUrl       URL where the image is stored.
+     * @param width          Image width in pixels.
+     * @param height         Image height in pixels.
+     * @param format         Format of the image file.
+     * @param tags           Associated tags for the image.
+     * @param orientation    EXIF orientation (1-8).
+     * @param captureTime    EXIF capture time in ISO-8601 local time, or null.
+     * @param cameraModel    EXIF camera model, or null.
+     * @param renditions     Stored renditions of the image.
+     * @param contentHash    SHA-256 of the original upload bytes, or null.
+     * @param perceptualHash 64-bit difference hash of the picture, or null.
+     */
+    @Builder(toBuilder = true)
+    public ImageMetadata(String imageId, String imageUrl, int width, int height, String format, String tags,
+                         int orientation, String captureTime, String cameraModel, List<RenditionInfo> renditions,
+                         String contentHash, Long perceptualHash) {
         this.imageId = imageId;
         this.imageUrl = imageUrl;
         this.width = width;
         this.height = height;
         this.format = format;
         this.tags = tags;
+        this.orientation = orientation;
+        this.captureTime = captureTime;
+        this.cameraModel = cameraModel;
+        this.renditions = renditions != null ? List.copyOf(renditions) : List.of();
+        this.contentHash = contentHash;
+        this.perceptualHash = perceptualHash;
     }
 
 }
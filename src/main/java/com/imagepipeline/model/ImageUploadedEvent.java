@@ -0,0 +1,51 @@
+package com.imagepipeline.model;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * JSON payload of the SNS notification published for an uploaded image.
+ */
+@Getter
+@ToString
+public class ImageUploadedEvent {
+
+    /**
+     * Value of the {@code type} field and message attribute.
+     */
+    public static final String TYPE = "image.uploaded";
+
+    private final String type = TYPE;
+    private final String imageId;
+    private final String imageUrl;
+    private final int width;
+    private final int height;
+    private final String format;
+    private final String captureTime;
+    private final Map<String, String> renditionUrls;
+
+    /**
+     * Constructs an ImageUploadedEvent object.
+     *
+     * @param imageId       Unique identifier for the image.
+     * @param imageUrl      URL of the original image.
+     * @param width         Image width in pixels.
+     * @param height        Image height in pixels.
+     * @param format        Format of the image file.
+     * @param captureTime   EXIF capture time in ISO-8601 local time, or null.
+     * @param renditionUrls URLs of the stored renditions, by rendition name.
+     */
+    public ImageUploadedEvent(String imageId, String imageUrl, int width, int height, String format,
+                              String captureTime, Map<String, String> renditionUrls) {
+        this.imageId = imageId;
+        this.imageUrl = imageUrl;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.captureTime = captureTime;
+        this.renditionUrls = renditionUrls;
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.imagepipeline.model;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * POJO describing one stored rendition of an image.
+ */
+@Getter
+@ToString
+public class RenditionInfo {
+
+    private final String name;
+    private final String key;
+    private final int width;
+    private final int height;
+    private final long bytes;
+
+    /**
+     * Constructs a RenditionInfo object.
+     *
+     * @param name   Rendition name.
+     * @param key    S3 key of the rendition.
+     * @param width  Rendition width in pixels.
+     * @param height Rendition height in pixels.
+     * @param bytes  Encoded size in bytes.
+     */
+    public RenditionInfo(String name, String key, int width, int height, long bytes) {
+        this.name = name;
+        this.key = key;
+        this.width = width;
+        this.height = height;
+        this.bytes = bytes;
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.imagepipeline.model;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * POJO describing the state of an import from an S3 prefix.
+ */
+@Getter
+@ToString
+public class S3ImportStatus {
+
+    private final String importId;
+    private final String bucket;
+    private final String prefix;
+    private final boolean running;
+    private final boolean completed;
+    private final long listed;
+    private final long imported;
+    private final long skipped;
+    private final long failed;
+    private final List<String> failedKeys;
+    private final String checkpoint;
+    private final String error;
+
+    /**
+     * Constructs an S3ImportStatus object.
+     *
+     * @param importId   Identifier of the import.
+     * @param bucket     The source bucket.
+     * @param prefix     The source key prefix.
+     * @param running    Whether the import is in progress in this instance.
+     * @param completed  Whether every object under the prefix has been handled.
+     * @param listed     Number of objects listed so far.
+     * @param imported   Number of objects processed into the pipeline.
+     * @param skipped    Number of objects that are not images.
+     * @param failed     Number of objects whose download or processing failed.
+     * @param failedKeys The keys of those objects, retried when the import is resumed.
+     * @param checkpoint The last key below which every object has been handled, or null.
+     * @param error      Why the listing stopped, or null.
+     */
+    public S3ImportStatus(String importId, String bucket, String prefix, boolean running, boolean completed,
+                          long listed, long imported, long skipped, long failed, List<String> failedKeys,
+                          String checkpoint, String error) {
+        this.importId = importId;
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.running = running;
+        this.completed = completed;
+        this.listed = listed;
+        this.imported = imported;
+        this.skipped = skipped;
+        this.failed = failed;
+        this.failedKeys = failedKeys;
+        this.checkpoint = checkpoint;
+        this.error = error;
+    }
+
+}
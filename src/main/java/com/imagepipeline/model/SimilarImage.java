@@ -0,0 +1,27 @@
+package com.imagepipeline.model;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * POJO describing an image that looks like another one.
+ */
+@Getter
+@ToString
+public class SimilarImage {
+
+    private final String imageId;
+    private final int distance;
+
+    /**
+     * Constructs a SimilarImage object.
+     *
+     * @param imageId  Identifier of the similar image.
+     * @param distance Hamming distance between the perceptual hashes; 0 means visually identical.
+     */
+    public SimilarImage(String imageId, int distance) {
+        this.imageId = imageId;
+        this.distance = distance;
+    }
+
+}
@@ -0,0 +1,309 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.SpooledFile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load-aware admission layer in front of the image processing pipeline.
+ * Caps the number of in-flight jobs and their total upload size. Every accepted
+ * upload is copied into the {@link SpoolService} before its job starts; uploads
+ * that arrive while the pipeline is saturated are rejected, or kept in the spool
+ * and started once capacity frees up. Entries of batch uploads and imports from S3
+ * wait for capacity instead. Jobs left in the spool by a crash are restarted at startup.
+ */
+@Service
+@Slf4j
+public class AdmissionControlService {
+
+    /**
+     * Outcome of an upload submission.
+     */
+    public enum Admission {
+
+        /**
+         * The job was started immediately.
+         */
+        ADMITTED,
+
+        /**
+         * The upload was spooled and will be started when capacity frees up.
+         */
+        QUEUED,
+
+        /**
+         * The pipeline is saturated; the client should retry later.
+         */
+        REJECTED
+
+    }
+
+    private final ImageProcessingService imageProcessingService;
+    private final ProgressTrackerService progressTrackerService;
+    private final SpoolService spoolService;
+    private final PipelineProperties.Admission properties;
+    private final Counter rejectedCounter;
+
+    private final Deque<SpoolService.SpooledJob> spooledJobs = new ArrayDeque<>();
+    private int inFlightJobs;
+    private long inFlightBytes;
+
+    /**
+     * Constructs the AdmissionControlService.
+     *
+     * @param imageProcessingService service that runs the pipeline.
+     * @param progressTrackerService service for tracking job progress.
+     * @param spoolService           the on-disk spool for uploads.
+     * @param pipelineProperties     configuration properties for the pipeline.
+     * @param meterRegistry          the registry for admission metrics.
+     */
+    public AdmissionControlService(ImageProcessingService imageProcessingService,
+                                   ProgressTrackerService progressTrackerService,
+                                   SpoolService spoolService,
+                                   PipelineProperties pipelineProperties,
+                                   MeterRegistry meterRegistry) {
+        this.imageProcessingService = imageProcessingService;
+        this.progressTrackerService = progressTrackerService;
+        this.spoolService = spoolService;
+        this.properties = pipelineProperties.getAdmission();
+        this.rejectedCounter = Counter.builder("pipeline.admission.rejected")
+                .description("Uploads rejected because the pipeline was saturated")
+                .register(meterRegistry);
+        Gauge.builder("pipeline.admission.inflight.jobs", this, AdmissionControlService::getInFlightJobs)
+                .register(meterRegistry);
+        Gauge.builder("pipeline.admission.inflight.bytes", this, AdmissionControlService::getInFlightBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("pipeline.admission.spooled.jobs", this, AdmissionControlService::getSpooledJobs)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Submits an upload to the pipeline if capacity allows.
+     *
+     * @param jobId the job identifier.
+     * @param file  the uploaded image file.
+     * @return whether the job was started, queued or rejected.
+     * @throws IOException if the upload cannot be written to the spool.
+     */
+    public Admission submit(String jobId, MultipartFile file) throws IOException {
+        long size = file.getSize();
+        if (tryReserve(size)) {
+            SpooledFile spooledFile;
+            try {
+                spooledFile = spoolService.spool(jobId, file);
+            } catch (IOException | RuntimeException e) {
+                release(size);
+                throw e;
+            }
+            start(jobId, spooledFile, null);
+            return Admission.ADMITTED;
+        }
+        if (properties.getOverflow() == PipelineProperties.Admission.Overflow.SPOOL && enqueue(jobId, file)) {
+            return Admission.QUEUED;
+        }
+        rejectedCounter.increment();
+        log.warn("Rejected upload {} ({} bytes): pipeline saturated", jobId, size);
+        return Admission.REJECTED;
+    }
+
+    /**
+     * Starts a job from an upload already in the spool, waiting for capacity instead
+     * of queueing or rejecting it. Batch uploads use this, so a saturated pipeline
+     * slows down the reading of their request body.
+     *
+     * @param jobId   the job identifier.
+     * @param file    the spooled upload.
+     * @param timeout how long to wait for capacity.
+     * @return true if the job was started; false if no capacity freed up in time, in
+     * which case the spool entry is left to the caller.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public boolean admit(String jobId, SpooledFile file, Duration timeout) throws InterruptedException {
+        return admit(jobId, file, timeout, null).isPresent();
+    }
+
+    /**
+     * Starts a job for a local copy of an image whose original may already be stored,
+     * as for an import from S3, waiting for capacity like {@link #admit(String, SpooledFile, Duration)}.
+     *
+     * @param jobId       the job identifier.
+     * @param file        the local copy of the image.
+     * @param timeout     how long to wait for capacity.
+     * @param originalUrl the URL of the stored original, or null to upload the file.
+     * @return a future completing once the job has ended, or empty if no capacity freed
+     * up in time.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public Optional<CompletableFuture<Void>> admit(String jobId, SpooledFile file, Duration timeout,
+                                                   String originalUrl) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (this) {
+            while (!tryReserve(file.getSize())) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejectedCounter.increment();
+                    return Optional.empty();
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return Optional.of(start(jobId, file, originalUrl));
+    }
+
+    /**
+     * Reserves capacity for a job. A job larger than the byte budget is still
+     * admitted when nothing else is in flight, so it cannot be starved forever.
+     *
+     * @param size the upload size in bytes.
+     * @return true if the capacity was reserved.
+     */
+    private synchronized boolean tryReserve(long size) {
+        boolean jobsAvailable = inFlightJobs < properties.getMaxInFlightJobs();
+        boolean bytesAvailable = inFlightJobs == 0 || inFlightBytes + size <= properties.getMaxInFlightBytes().toBytes();
+        if (jobsAvailable && bytesAvailable) {
+            inFlightJobs++;
+            inFlightBytes += size;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void release(long size) {
+        inFlightJobs--;
+        inFlightBytes -= size;
+        // Wakes batch uploads waiting for capacity.
+        notifyAll();
+    }
+
+    /**
+     * Starts the pipeline for an admitted job and releases its capacity when it ends.
+     *
+     * @return a future completing once the job has ended and its capacity is released.
+     */
+    private CompletableFuture<Void> start(String jobId, SpooledFile file, String originalUrl) {
+        long size = file.getSize();
+        try {
+            return imageProcessingService.processImage(jobId, file, originalUrl)
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            log.error("Job {} failed: {}", jobId, error.getMessage());
+                            progressTrackerService.setFailed(jobId);
+                        }
+                        release(size);
+                        spoolService.complete(jobId);
+                        drainSpool();
+                    });
+        } catch (RuntimeException e) {
+            release(size);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes an upload to the spool and queues it.
+     *
+     * @return false if the spool queue is full.
+     */
+    private boolean enqueue(String jobId, MultipartFile file) throws IOException {
+        synchronized (this) {
+            if (spooledJobs.size() >= properties.getMaxSpooledJobs()) {
+                return false;
+            }
+        }
+        SpooledFile spooledFile = spoolService.spool(jobId, file);
+        synchronized (this) {
+            spooledJobs.addLast(new SpoolService.SpooledJob(jobId, spooledFile));
+        }
+        progressTrackerService.setProgress(jobId, 0);
+        log.info("Pipeline saturated, queued upload {} in the spool", jobId);
+        // Capacity may have been released while the file was being written.
+        drainSpool();
+        return true;
+    }
+
+    /**
+     * Requeues the jobs a previous run left unfinished in the spool.
+     *
+     * @throws IOException if the spool cannot be read.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverSpool() throws IOException {
+        List<SpoolService.SpooledJob> recovered = spoolService.recover();
+        if (recovered.isEmpty()) {
+            return;
+        }
+        log.info("Restarting {} unfinished job(s) from the spool", recovered.size());
+        synchronized (this) {
+            spooledJobs.addAll(recovered);
+        }
+        recovered.forEach(job -> progressTrackerService.setProgress(job.jobId(), 0));
+        drainSpool();
+    }
+
+    /**
+     * Starts spooled jobs, oldest first, while capacity is available.
+     */
+    private void drainSpool() {
+        while (true) {
+            SpoolService.SpooledJob next;
+            synchronized (this) {
+                next = spooledJobs.peekFirst();
+                if (next == null || !tryReserve(next.file().getSize())) {
+                    return;
+                }
+                spooledJobs.removeFirst();
+            }
+            try {
+                start(next.jobId(), next.file(), null);
+            } catch (RuntimeException e) {
+                log.error("Failed to start spooled job {}: {}", next.jobId(), e.getMessage());
+                spoolService.complete(next.jobId());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of jobs currently being processed.
+     *
+     * @return the in-flight job count.
+     */
+    public synchronized int getInFlightJobs() {
+        return inFlightJobs;
+    }
+
+    /**
+     * Returns the total upload size of the jobs currently being processed.
+     *
+     * @return the in-flight bytes.
+     */
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    /**
+     * Returns the number of uploads waiting in the spool.
+     *
+     * @return the spooled job count.
+     */
+    public synchronized int getSpooledJobs() {
+        return spooledJobs.size();
+    }
+
+}
@@ -0,0 +1,316 @@
+package com.imagepipeline.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.SpooledFile;
+import com.imagepipeline.model.BatchProgress;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.fileupload2.core.FileUploadByteCountLimitException;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+/**
+ * Imports many images from one request body.
+ * Entries are read one after another from a multipart body or a zip or tar archive,
+ * and each is spooled and started as a pipeline job as soon as its bytes have been
+ * read, without buffering the body. When the pipeline is saturated the import waits
+ * for capacity, which stops the reading of the body until jobs finish. A file over
+ * the size limit is rejected as it is read, and its partial spool file removed.
+ * Progress is tracked per batch as the mean progress of its jobs, and kept for a
+ * retention period after the body has been read.
+ */
+@Service
+@Slf4j
+public class BatchUploadService {
+
+    /**
+     * Archive formats a batch can be sent as.
+     */
+    public enum ArchiveFormat {
+
+        /**
+         * A zip archive, read entry by entry from its local headers.
+         */
+        ZIP,
+
+        /**
+         * An uncompressed tar archive.
+         */
+        TAR,
+
+        /**
+         * A gzip-compressed tar archive.
+         */
+        TAR_GZIP
+
+    }
+
+    private final AdmissionControlService admissionControlService;
+    private final SpoolService spoolService;
+    private final ProgressTrackerService progressTrackerService;
+    private final PipelineProperties.Admission properties;
+    private final Cache<String, Batch> batches;
+
+    /**
+     * Constructs the BatchUploadService.
+     *
+     * @param admissionControlService service that admits jobs into the pipeline.
+     * @param spoolService            the on-disk spool for uploads.
+     * @param progressTrackerService  service for tracking job progress.
+     * @param pipelineProperties      configuration properties for the pipeline.
+     */
+    public BatchUploadService(AdmissionControlService admissionControlService, SpoolService spoolService,
+                              ProgressTrackerService progressTrackerService, PipelineProperties pipelineProperties) {
+        this.admissionControlService = admissionControlService;
+        this.spoolService = spoolService;
+        this.progressTrackerService = progressTrackerService;
+        this.properties = pipelineProperties.getAdmission();
+        this.batches = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getBatchRetention())
+                .build();
+    }
+
+    /**
+     * A batch upload and the jobs it started.
+     */
+    public static class Batch {
+
+        private final String id;
+        private final Queue<String> jobIds = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger files = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private volatile boolean receiving = true;
+
+        private Batch(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Returns the batch identifier.
+         *
+         * @return the batch id.
+         */
+        public String getId() {
+            return id;
+        }
+
+    }
+
+    /**
+     * Starts a new batch.
+     *
+     * @return the batch.
+     */
+    public Batch start() {
+        Batch batch = new Batch(UUID.randomUUID().toString());
+        batches.put(batch.id, batch);
+        return batch;
+    }
+
+    /**
+     * Marks the end of a batch's request body.
+     *
+     * @param batch the batch.
+     */
+    public void finish(Batch batch) {
+        batch.receiving = false;
+        // Written again, so the retention counts from the end of the body.
+        batches.put(batch.id, batch);
+        log.info("Batch {} received {} file(s), {} rejected", batch.id, batch.files.get(), batch.rejected.get());
+    }
+
+    /**
+     * Reads every file of an archive into the pipeline, in archive order.
+     * Directories, links and hidden files such as {@code __MACOSX} entries are skipped.
+     *
+     * @param batch  the batch.
+     * @param in     the archive bytes; the stream is not closed.
+     * @param format the archive format.
+     * @throws FileUploadSizeException if the archive is larger than the request size limit.
+     * @throws IOException             if the archive is malformed or an entry cannot be spooled.
+     */
+    public void importArchive(Batch batch, InputStream in, ArchiveFormat format) throws IOException {
+        long maxRequestSize = properties.getBatchMaxRequestSize().toBytes();
+        InputStream body = new LimitedInputStream(in, maxRequestSize, count -> new FileUploadSizeException(
+                "Batch upload exceeds its maximum size of " + maxRequestSize + " bytes", count, maxRequestSize));
+        ArchiveInputStream<? extends ArchiveEntry> archive = switch (format) {
+            // Stored entries followed by a data descriptor are read up to the descriptor's signature.
+            case ZIP -> new ZipArchiveInputStream(body, StandardCharsets.UTF_8.name(), true, true);
+            case TAR -> new TarArchiveInputStream(body);
+            case TAR_GZIP -> new TarArchiveInputStream(new GzipCompressorInputStream(body));
+        };
+        ArchiveEntry entry;
+        while ((entry = archive.getNextEntry()) != null) {
+            if (!isImportable(entry) || !archive.canReadEntryData(entry)) {
+                continue;
+            }
+            String name = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+            String contentType = MediaTypeFactory.getMediaType(name).map(MediaType::toString).orElse(null);
+            // The archive stream ends at the end of the entry.
+            submit(batch, archive, name, contentType);
+        }
+    }
+
+    /**
+     * Spools one file of a batch and starts its job once the pipeline has capacity.
+     * A file larger than the batch file size limit is counted as rejected.
+     *
+     * @param batch            the batch.
+     * @param in               the file bytes, read to the end; the stream is not closed.
+     * @param originalFilename the file name, or null.
+     * @param contentType      the content type, or null.
+     * @throws IOException if the file cannot be spooled, or the thread is interrupted while waiting.
+     */
+    public void submit(Batch batch, InputStream in, String originalFilename, String contentType) throws IOException {
+        String jobId = UUID.randomUUID().toString();
+        long maxFileSize = properties.getBatchMaxFileSize().toBytes();
+        SpooledFile file;
+        try {
+            file = spoolService.spool(jobId, new LimitedInputStream(in, maxFileSize,
+                    count -> new FileUploadByteCountLimitException("File " + originalFilename
+                            + " exceeds its maximum size of " + maxFileSize + " bytes", count, maxFileSize,
+                            originalFilename, null)), originalFilename, contentType);
+        } catch (FileUploadByteCountLimitException e) {
+            // Thrown by the multipart parser as well; either way the spool has removed the partial file.
+            batch.files.incrementAndGet();
+            batch.rejected.incrementAndGet();
+            log.warn("Batch {} rejected {}: larger than {}", batch.id, originalFilename,
+                    properties.getBatchMaxFileSize());
+            return;
+        }
+        batch.files.incrementAndGet();
+        boolean admitted;
+        try {
+            admitted = admissionControlService.admit(jobId, file, properties.getBatchWait());
+        } catch (InterruptedException e) {
+            spoolService.complete(jobId);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for pipeline capacity");
+        }
+        if (admitted) {
+            batch.jobIds.add(jobId);
+        } else {
+            spoolService.complete(jobId);
+            batch.rejected.incrementAndGet();
+            log.warn("Batch {} rejected {}: no pipeline capacity within {}", batch.id, originalFilename,
+                    properties.getBatchWait());
+        }
+    }
+
+    /**
+     * Returns the aggregate progress of a batch.
+     *
+     * @param batchId the batch identifier.
+     * @return the progress, or empty if the batch is unknown or its retention has passed.
+     */
+    public Optional<BatchProgress> getProgress(String batchId) {
+        Batch batch = batches.getIfPresent(batchId);
+        if (batch == null) {
+            return Optional.empty();
+        }
+        List<String> jobIds = List.copyOf(batch.jobIds);
+        int failed = (int) jobIds.stream().filter(progressTrackerService::isFailed).count();
+        // A failed job advances no further, so it counts as ended.
+        List<Integer> progress = jobIds.stream()
+                .map(jobId -> progressTrackerService.isFailed(jobId) ? 100 : progressTrackerService.getProgress(jobId))
+                .toList();
+        int completed = (int) jobIds.stream().filter(jobId -> progressTrackerService.getProgress(jobId) >= 100).count();
+        int mean = progress.isEmpty() ? 0 : (int) progress.stream().mapToInt(Integer::intValue).average().orElse(0);
+        return Optional.of(new BatchProgress(batch.id, batch.receiving, batch.files.get(), jobIds.size(),
+                batch.rejected.get(), failed, completed, mean));
+    }
+
+    /**
+     * Passes a stream through until more than a limit has been read, then fails.
+     * Closing it leaves the underlying stream open.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private final LongFunction<? extends IOException> error;
+        private long count;
+
+        private LimitedInputStream(InputStream in, long limit, LongFunction<? extends IOException> error) {
+            super(in);
+            this.limit = limit;
+            this.error = error;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void count(long bytes) throws IOException {
+            count += bytes;
+            if (count > limit) {
+                throw error.apply(count);
+            }
+        }
+
+    }
+
+    private static boolean isImportable(ArchiveEntry entry) {
+        if (entry.isDirectory()) {
+            return false;
+        }
+        if (entry instanceof TarArchiveEntry tarEntry && !tarEntry.isFile()) {
+            return false;
+        }
+        String name = entry.getName();
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        return !fileName.isEmpty() && !fileName.startsWith(".") && !name.startsWith("__MACOSX/");
+    }
+
+}
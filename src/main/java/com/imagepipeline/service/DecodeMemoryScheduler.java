@@ -0,0 +1,188 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.ImageContext;
+import com.imagepipeline.image.ImageHeader;
+import com.imagepipeline.image.ResampleFilter;
+import com.imagepipeline.image.Resampler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Global byte budget for the memory that decodes hold.
+ * A job reserves its estimated decode footprint before it decodes and releases it
+ * when its raster is gone. Reservations that do not fit wait without holding a
+ * thread; whenever memory is released, every waiting job that now fits starts, so
+ * small images go ahead while large ones wait for room. A job larger than the whole
+ * budget starts once nothing else is reserved; while it waits, jobs behind it wait
+ * too, so the reservations drain and it cannot wait forever.
+ */
+@Service
+@Slf4j
+public class DecodeMemoryScheduler {
+
+    private final long capacity;
+    private final long maxFootprint;
+    private final boolean convolved;
+    private final Timer waitTimer;
+
+    // Waiting reservations, oldest first.
+    private final List<Waiter> waiters = new LinkedList<>();
+    private long reservedBytes;
+
+    /**
+     * Constructs the DecodeMemoryScheduler.
+     *
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param meterRegistry      the registry for scheduler metrics.
+     */
+    public DecodeMemoryScheduler(PipelineProperties pipelineProperties, MeterRegistry meterRegistry) {
+        PipelineProperties.Decode decode = pipelineProperties.getDecode();
+        this.capacity = decode.getMaxReserved().toBytes();
+        // A larger decode is streamed in bands, holding at most the budget and one band.
+        this.maxFootprint = decode.getMemoryBudget().toBytes() + decode.getBandSize().toBytes();
+        // Java2D bicubic resizes straight into the output raster; the convolution filters need float planes.
+        this.convolved = pipelineProperties.getRenditions().stream()
+                .anyMatch(rendition -> rendition.getFilter() != ResampleFilter.BICUBIC);
+        this.waitTimer = Timer.builder("pipeline.decode.memory.wait")
+                .description("Time jobs waited for decode memory")
+                .register(meterRegistry);
+        Gauge.builder("pipeline.decode.memory.reserved", this, DecodeMemoryScheduler::getReservedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("pipeline.decode.memory.waiting", this, DecodeMemoryScheduler::getWaitingJobs)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Memory reserved for one decode; closing it releases the memory, at most once.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the reserved size.
+         *
+         * @return the reserved bytes.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(bytes);
+            }
+        }
+
+    }
+
+    private record Waiter(long bytes, long queuedAt, CompletableFuture<Reservation> future) {
+    }
+
+    /**
+     * Estimates the memory a job's decode holds: width × height × bands from the header,
+     * capped at what a streamed decode holds, plus the float planes of the resamples
+     * when a rendition uses a convolution filter.
+     *
+     * @param context the per-job image context.
+     * @return the estimated bytes; 0 if the header cannot be read, in which case the decode fails on its own.
+     */
+    public long footprint(ImageContext context) {
+        ImageHeader header;
+        try {
+            header = context.getHeader();
+        } catch (IOException e) {
+            return 0;
+        }
+        long bytes = Math.min((long) header.getWidth() * header.getHeight() * header.getBands(), maxFootprint);
+        // Renditions are resampled one after the other, so one working set at a time.
+        return convolved ? bytes + Resampler.workingSetBytes(header.getWidth(), header.getHeight()) : bytes;
+    }
+
+    /**
+     * Reserves decode memory.
+     *
+     * @param bytes the bytes to reserve.
+     * @return a future completing with the reservation once the memory is available.
+     */
+    public CompletableFuture<Reservation> reserve(long bytes) {
+        synchronized (this) {
+            if (fits(bytes) && waiters.stream().noneMatch(waiter -> waiter.bytes() > capacity)) {
+                reservedBytes += bytes;
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(new Reservation(bytes));
+            }
+            CompletableFuture<Reservation> future = new CompletableFuture<>();
+            waiters.add(new Waiter(bytes, System.nanoTime(), future));
+            log.debug("Decode of {} bytes waits for memory ({} of {} bytes reserved)", bytes, reservedBytes,
+                    capacity);
+            return future;
+        }
+    }
+
+    private void release(long bytes) {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            reservedBytes -= bytes;
+            // Any waiter that now fits goes, not only the oldest, so one large job does not hold up small ones.
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                Waiter waiter = it.next();
+                if (fits(waiter.bytes())) {
+                    reservedBytes += waiter.bytes();
+                    granted.add(waiter);
+                    it.remove();
+                } else if (waiter.bytes() > capacity) {
+                    break;
+                }
+            }
+        }
+        // Completed outside the lock: dependent stages may run on this thread.
+        for (Waiter waiter : granted) {
+            waitTimer.record(System.nanoTime() - waiter.queuedAt(), TimeUnit.NANOSECONDS);
+            waiter.future().complete(new Reservation(waiter.bytes()));
+        }
+    }
+
+    private boolean fits(long bytes) {
+        return reservedBytes + bytes <= capacity || reservedBytes == 0;
+    }
+
+    /**
+     * Returns the memory currently reserved by decodes.
+     *
+     * @return the reserved bytes.
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Returns the number of jobs waiting for decode memory.
+     *
+     * @return the waiting job count.
+     */
+    public synchronized int getWaitingJobs() {
+        return waiters.size();
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.model.ImageMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Index of processed images by the SHA-256 of their upload bytes.
+ * The first job to claim a hash processes the image; later jobs with the same bytes
+ * share its result instead of uploading, decoding and resizing the image again. A job
+ * that arrives while the first is still running waits for it rather than racing it.
+ * A failed job releases its hash, so the next upload of those bytes is processed anew.
+ * The index lives in memory and keeps the most recently seen hashes up to a bound.
+ */
+@Service
+public class DeduplicationIndex {
+
+    private final int maxEntries;
+    private final Counter hitCounter;
+
+    // Guarded by this; in access order, so the least recently seen hash is evicted first.
+    private final Map<String, CompletableFuture<ImageMetadata>> entries;
+
+    /**
+     * Constructs the DeduplicationIndex.
+     *
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param meterRegistry      the registry for deduplication metrics.
+     */
+    public DeduplicationIndex(PipelineProperties pipelineProperties, MeterRegistry meterRegistry) {
+        this.maxEntries = Math.max(1, pipelineProperties.getDedup().getMaxEntries());
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ImageMetadata>> eldest) {
+                // A claim still in progress is kept, or a concurrent duplicate would process the image again.
+                return size() > maxEntries && eldest.getValue().isDone();
+            }
+        };
+        this.hitCounter = Counter.builder("pipeline.dedup.hits")
+                .description("Uploads whose bytes matched an image already processed")
+                .register(meterRegistry);
+        Gauge.builder("pipeline.dedup.entries", this, DeduplicationIndex::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A claim on a content hash.
+     *
+     * @param original completes with the metadata of the image holding these bytes.
+     * @param owner    true if the caller must process the image and complete {@code original}.
+     */
+    public record Claim(CompletableFuture<ImageMetadata> original, boolean owner) {
+    }
+
+    /**
+     * Claims a content hash. If no job has processed these bytes, or the last one failed,
+     * the caller becomes the owner; otherwise it gets the result of the job that did.
+     *
+     * @param contentHash the hex SHA-256 of the upload bytes.
+     * @return the claim.
+     */
+    public Claim claim(String contentHash) {
+        CompletableFuture<ImageMetadata> claimed = new CompletableFuture<>();
+        synchronized (this) {
+            CompletableFuture<ImageMetadata> existing = entries.get(contentHash);
+            if (existing != null && !existing.isCompletedExceptionally()) {
+                hitCounter.increment();
+                return new Claim(existing, false);
+            }
+            entries.put(contentHash, claimed);
+        }
+        claimed.whenComplete((metadata, error) -> {
+            if (error != null) {
+                synchronized (this) {
+                    entries.remove(contentHash, claimed);
+                }
+            }
+        });
+        return new Claim(claimed, true);
+    }
+
+    /**
+     * Returns the number of content hashes in the index.
+     *
+     * @return the entry count.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.ByteBufferPool;
+import com.imagepipeline.image.ChunkedImageOutputStream;
+import com.imagepipeline.image.ImageEncoder;
+import com.imagepipeline.image.JpegEncoder;
+import com.imagepipeline.image.OutputFormat;
+import com.imagepipeline.image.PngEncoder;
+import com.imagepipeline.image.WebpEncoder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Encodes renditions and resized variants with the configured encoder settings.
+ * Every format available at runtime gets one shared encoder; WebP is only available
+ * when a WebP ImageIO plugin is installed. Images are encoded into pooled direct
+ * buffers, which the caller uploads from and then releases.
+ */
+@Service
+@Slf4j
+public class EncodingService {
+
+    private final PipelineProperties.Encoding properties;
+    private final Map<OutputFormat, ImageEncoder> encoders = new EnumMap<>(OutputFormat.class);
+    private final ByteBufferPool bufferPool;
+
+    /**
+     * Constructs the EncodingService.
+     *
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param meterRegistry      the registry for buffer pool metrics.
+     * @throws IllegalStateException if the configured rendition format is not available.
+     */
+    public EncodingService(PipelineProperties pipelineProperties, MeterRegistry meterRegistry) {
+        this.properties = pipelineProperties.getEncoding();
+        PipelineProperties.Encoding.Buffers buffers = properties.getBuffers();
+        int chunkSize = Math.toIntExact(buffers.getChunkSize().toBytes());
+        this.bufferPool = new ByteBufferPool(chunkSize, (int) (buffers.getMaxRetained().toBytes() / chunkSize));
+        FunctionCounter.builder("pipeline.encoding.buffers.acquired", bufferPool, ByteBufferPool::getHits)
+                .tag("result", "hit")
+                .description("Encode buffers taken from the pool")
+                .register(meterRegistry);
+        FunctionCounter.builder("pipeline.encoding.buffers.acquired", bufferPool, ByteBufferPool::getMisses)
+                .tag("result", "miss")
+                .description("Encode buffers allocated because the pool was empty")
+                .register(meterRegistry);
+        Gauge.builder("pipeline.encoding.buffers.retained", bufferPool, ByteBufferPool::getRetainedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        PipelineProperties.Encoding.Jpeg jpeg = properties.getJpeg();
+        encoders.put(OutputFormat.JPEG,
+                new JpegEncoder(jpeg.isProgressive(), jpeg.isOptimizeHuffman(), jpeg.getChromaSubsampling()));
+        encoders.put(OutputFormat.PNG, new PngEncoder());
+        if (WebpEncoder.isAvailable()) {
+            encoders.put(OutputFormat.WEBP, new WebpEncoder(properties.getWebp().isLossless()));
+        } else {
+            log.info("No WebP writer installed; WebP output is disabled");
+        }
+        if (!supports(properties.getFormat())) {
+            throw new IllegalStateException("Rendition format " + properties.getFormat() + " is not available");
+        }
+    }
+
+    /**
+     * Returns the format of the stored renditions.
+     *
+     * @return the rendition format.
+     */
+    public OutputFormat getRenditionFormat() {
+        return properties.getFormat();
+    }
+
+    /**
+     * Returns whether images can be encoded in a format.
+     *
+     * @param format the output format.
+     * @return true if an encoder is available.
+     */
+    public boolean supports(OutputFormat format) {
+        return encoders.containsKey(format);
+    }
+
+    /**
+     * Encodes an image into pooled buffers, at the configured quality or at the highest
+     * quality that fits a size budget.
+     *
+     * @param image      the image.
+     * @param format     the output format.
+     * @param targetSize the size budget, or null to use the configured quality.
+     * @return the encoded image; the caller must {@link ChunkedImageOutputStream#release() release} it.
+     * @throws IOException if the format is not available or encoding fails.
+     */
+    public ChunkedImageOutputStream encode(BufferedImage image, OutputFormat format, DataSize targetSize)
+            throws IOException {
+        ImageEncoder encoder = encoders.get(format);
+        if (encoder == null) {
+            throw new IOException("No encoder for format " + format);
+        }
+        ChunkedImageOutputStream output = new ChunkedImageOutputStream(bufferPool);
+        try {
+            if (targetSize == null) {
+                encoder.encode(image, properties.getQuality(), output);
+            } else {
+                encoder.encodeWithin(image, targetSize.toBytes(), properties.getMinQuality(),
+                        properties.getQuality(), output);
+            }
+            return output;
+        } catch (IOException | RuntimeException e) {
+            output.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Encodes an image at the configured quality into a new array, for output that is kept.
+     *
+     * @param image  the image.
+     * @param format the output format.
+     * @return the encoded bytes.
+     * @throws IOException if the format is not available or encoding fails.
+     */
+    public byte[] encodeToArray(BufferedImage image, OutputFormat format) throws IOException {
+        ChunkedImageOutputStream output = encode(image, format, null);
+        try {
+            return output.toByteArray();
+        } finally {
+            output.release();
+        }
+    }
+
+}
@@ -1,27 +1,51 @@
 package com.imagepipeline.service;
 
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.ImageContext;
+import com.imagepipeline.image.SpooledFile;
+import com.imagepipeline.model.ImageMetadata;
+import com.imagepipeline.model.RenditionInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 /**
  * Service to orchestrate the image processing pipeline.
  * Delegates tasks to specific services:
  * S3StorageService, MetadataService, ThumbnailService, and NotificationService.
+ * Uploads are deduplicated by content hash through the {@link DeduplicationIndex}.
  */
 @Service
+@Slf4j
 public class ImageProcessingService {
 
+    // Progress shares of the stages; they add up to 100.
+    private static final int UPLOAD_WEIGHT = 30;
+    private static final int RENDITIONS_WEIGHT = 40;
+    private static final int METADATA_WEIGHT = 20;
+    private static final int NOTIFICATION_WEIGHT = 10;
+
     private final S3StorageService s3StorageService;
     private final MetadataService metadataService;
     private final ThumbnailService thumbnailService;
     private final ProgressTrackerService progressTrackerService;
     private final NotificationService notificationService;
-    private final Executor executor;
+    private final DeduplicationIndex deduplicationIndex;
+    private final DecodeMemoryScheduler decodeMemoryScheduler;
+    private final PipelineProperties.Dedup dedup;
+    private final PipelineProperties.Decode decode;
+    private final Executor cpuExecutor;
+    private final Executor ioExecutor;
 
     /**
      * Constructs an ImageProcessingService with its sub-services.
@@ -31,64 +55,229 @@ public class ImageProcessingService {
      * @param thumbnailService       service for thumbnail generation and storage.
      * @param progressTrackerService service for tracking job progress.
      * @param notificationService    service for notifying system components via SNS.
-     * @param executor               the executor for asynchronous processing.
+     * @param deduplicationIndex     index of processed images by content hash.
+     * @param decodeMemoryScheduler  the global budget for decode memory.
+     * @param pipelineProperties     configuration properties for the pipeline.
+     * @param cpuExecutor            the executor for CPU-bound stages.
+     * @param ioExecutor             the executor for blocking I/O stages.
      */
     public ImageProcessingService(S3StorageService s3StorageService,
                                   MetadataService metadataService,
                                   ThumbnailService thumbnailService,
                                   ProgressTrackerService progressTrackerService,
                                   NotificationService notificationService,
-                                  Executor executor) {
+                                  DeduplicationIndex deduplicationIndex,
+                                  DecodeMemoryScheduler decodeMemoryScheduler,
+                                  PipelineProperties pipelineProperties,
+                                  @Qualifier("cpuExecutor") Executor cpuExecutor,
+                                  @Qualifier("ioExecutor") Executor ioExecutor) {
         this.s3StorageService = s3StorageService;
         this.metadataService = metadataService;
         this.thumbnailService = thumbnailService;
         this.progressTrackerService = progressTrackerService;
         this.notificationService = notificationService;
-        this.executor = executor;
+        this.deduplicationIndex = deduplicationIndex;
+        this.decodeMemoryScheduler = decodeMemoryScheduler;
+        this.dedup = pipelineProperties.getDedup();
+        this.decode = pipelineProperties.getDecode();
+        this.cpuExecutor = cpuExecutor;
+        this.ioExecutor = ioExecutor;
     }
 
     /**
      * Processes an image asynchronously through the entire pipeline.
+     * A spooled upload whose bytes match an image already processed is not processed
+     * again: the job refers to the existing image and completes at once, without an
+     * upload, a decode or renditions. Concurrent uploads of the same bytes wait for
+     * the first of them; if that job fails, they are processed in its place.
      *
      * @param jobId the unique identifier for this upload job.
      * @param file  the uploaded image file.
      * @return a CompletableFuture representing the asynchronous task.
      */
     public CompletableFuture<Void> processImage(String jobId, MultipartFile file) {
+        return processImage(jobId, file, null);
+    }
+
+    /**
+     * Processes an image whose original may already be stored, as for an import from S3.
+     * A stored original is not uploaded again; its URL goes into the metadata as is.
+     * Deduplication works as for uploads.
+     *
+     * @param jobId       the unique identifier for this job.
+     * @param file        a local copy of the image.
+     * @param originalUrl the URL of the stored original, or null to upload the file.
+     * @return a CompletableFuture representing the asynchronous task.
+     */
+    public CompletableFuture<Void> processImage(String jobId, MultipartFile file, String originalUrl) {
         // Initialize progress for the job.
         progressTrackerService.setProgress(jobId, 0);
+        String contentHash = dedup.isEnabled() && file instanceof SpooledFile spooledFile
+                ? spooledFile.getContentHash()
+                : null;
+        if (contentHash == null) {
+            return process(jobId, file, UUID.randomUUID().toString(), null, originalUrl).thenApply(metadata -> null);
+        }
 
-        return CompletableFuture.supplyAsync(() -> {
-                    try {
-                        String imageUrl = s3StorageService.uploadToS3(file);
-                        progressTrackerService.setProgress(jobId, 25);
-                        return imageUrl;
-                    } catch (IOException e) {
-                        throw new CompletionException(e);
-                    }
-                }, executor)
-                .thenCompose(imageUrl -> CompletableFuture.supplyAsync(() -> {
-                    try {
-                        metadataService.extractAndStoreMetadata(file, imageUrl);
-                        progressTrackerService.setProgress(jobId, 50);
-                        return imageUrl;
-                    } catch (IOException e) {
-                        throw new CompletionException(e);
+        DeduplicationIndex.Claim claim = deduplicationIndex.claim(contentHash);
+        if (!claim.owner()) {
+            return claim.original()
+                    .handle((original, error) -> {
+                        if (error != null) {
+                            log.info("Job {} duplicated a failed job, processing it again", jobId);
+                            return processImage(jobId, file, originalUrl);
+                        }
+                        log.info("Job {} duplicates image {}, skipping processing", jobId, original.getImageId());
+                        progressTrackerService.setImageId(jobId, original.getImageId());
+                        progressTrackerService.setProgress(jobId, 100);
+                        return CompletableFuture.<Void>completedFuture(null);
+                    })
+                    .thenCompose(Function.identity());
+        }
+
+        String imageId = dedup.isContentAddressed() ? contentHash : UUID.randomUUID().toString();
+        return process(jobId, file, imageId, contentHash, originalUrl)
+                .whenComplete((metadata, error) -> {
+                    if (error != null) {
+                        claim.original().completeExceptionally(error);
+                    } else {
+                        claim.original().complete(metadata);
                     }
-                }, executor))
-                .thenCompose(imageUrl -> CompletableFuture.supplyAsync(() -> {
+                })
+                .thenApply(metadata -> null);
+    }
+
+    /**
+     * Runs the pipeline stages for a new image.
+     * Stages form a dependency graph rather than a chain: the original upload,
+     * the renditions and the header read start together, the perceptual hash
+     * follows the renditions on their raster, the metadata write waits for all
+     * of them, and the notification waits for the write. A job
+     * therefore takes about as long as its slowest branch plus the two final
+     * writes. Each stage adds its own share of progress when it finishes, so
+     * progress only reaches 100 once every stage is done, whatever the order.
+     * The image is decoded at most once per job; every stage shares the same
+     * {@link ImageContext}, which is released when all stages have ended. The
+     * decode first reserves its memory from the {@link DecodeMemoryScheduler}; the
+     * rasters and the reservation are released as soon as the renditions and the
+     * perceptual hash are done, so the metadata write and the notification do not
+     * hold decode memory.
+     * Stages are chained onto futures that are already complete, so an executor that
+     * rejects a task fails that stage instead of throwing here; anything thrown while
+     * the graph is built fails the job and releases the context.
+     *
+     * @param jobId       the unique identifier for this upload job.
+     * @param file        the uploaded image file.
+     * @param imageId     the identifier assigned to the image.
+     * @param contentHash the SHA-256 of the upload bytes, or null.
+     * @param originalUrl the URL of the stored original, or null to upload the file.
+     * @return a future completing with the stored metadata once every stage has finished.
+     */
+    private CompletableFuture<ImageMetadata> process(String jobId, MultipartFile file, String imageId,
+                                                     String contentHash, String originalUrl) {
+        progressTrackerService.setImageId(jobId, imageId);
+        ImageContext context = new ImageContext(imageId, file, decode.getMemoryBudget().toBytes(),
+                decode.getBandSize().toBytes());
+        try {
+            return runStages(jobId, file, imageId, contentHash, originalUrl, context);
+        } catch (RuntimeException e) {
+            context.close();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Builds the stage graph of {@link #process} on the job's context.
+     */
+    private CompletableFuture<ImageMetadata> runStages(String jobId, MultipartFile file, String imageId,
+                                                       String contentHash, String originalUrl, ImageContext context) {
+        // The S3 client is non-blocking, so the upload needs no executor thread while it is in flight.
+        CompletableFuture<String> upload = CompletableFuture.completedFuture(originalUrl)
+                .thenCompose(url -> url != null
+                        ? CompletableFuture.completedFuture(url)
+                        : s3StorageService.uploadToS3(imageId, file))
+                .thenApply(advance(jobId, UPLOAD_WEIGHT));
+
+        // The decode waits, without a thread, until its footprint fits the global memory budget.
+        // The memory is released with the rasters, once the stages that read pixels are done.
+        CompletableFuture<DecodeMemoryScheduler.Reservation> reservation = CompletableFuture
+                .completedFuture(context)
+                .thenApplyAsync(decodeMemoryScheduler::footprint, ioExecutor)
+                .thenCompose(decodeMemoryScheduler::reserve);
+
+        CompletableFuture<List<RenditionInfo>> renditions = reservation.thenApplyAsync(ignored -> {
                     try {
-                        thumbnailService.generateThumbnail(file);
-                        progressTrackerService.setProgress(jobId, 75);
-                        return imageUrl;
+                        return thumbnailService.generateRenditions(context);
                     } catch (IOException e) {
                         throw new CompletionException(e);
                     }
-                }, executor))
-                .thenCompose(imageUrl -> CompletableFuture.runAsync(() -> {
-                    notificationService.notifyImageUpload(imageUrl);
-                    progressTrackerService.setProgress(jobId, 100);
-                }, executor));
+                }, cpuExecutor)
+                .thenCompose(Function.identity())
+                .thenApply(advance(jobId, RENDITIONS_WEIGHT));
+
+        // Hashed once the renditions are done, so it reuses their raster instead of decoding again.
+        CompletableFuture<Long> perceptualHash = renditions.thenApplyAsync(ignored -> {
+            try {
+                return metadataService.computePerceptualHash(context);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, cpuExecutor);
+
+        // Nothing reads pixels after the renditions and the hash, so the rasters and their reservation go
+        // first; the header and the mapped file stay open for the final stages.
+        CompletableFuture.allOf(renditions, perceptualHash)
+                .whenComplete((ignored, error) -> {
+                    context.releaseImages();
+                    reservation.thenAccept(DecodeMemoryScheduler.Reservation::close);
+                });
+
+        // Header-only read; cheap, and independent of both the upload and the decode.
+        CompletableFuture<ImageMetadata> header = CompletableFuture.completedFuture(context).thenApplyAsync(ignored -> {
+            try {
+                return metadataService.extractMetadata(context);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, ioExecutor);
+
+        CompletableFuture<ImageMetadata> described = header.thenCombine(perceptualHash, (metadata, hash) ->
+                metadata.toBuilder()
+                        .contentHash(contentHash)
+                        .perceptualHash(hash)
+                        .build());
+
+        CompletableFuture<ImageMetadata> stored = upload
+                .thenCombine(renditions, (imageUrl, renditionInfos) -> described.thenCompose(metadata -> {
+                    ImageMetadata complete = metadata.toBuilder()
+                            .imageUrl(imageUrl)
+                            .renditions(renditionInfos)
+                            .build();
+                    // Completes only once the batched write has reached DynamoDB.
+                    return metadataService.storeMetadata(complete).thenApply(ignored -> complete);
+                }))
+                .thenCompose(Function.identity())
+                .thenApply(advance(jobId, METADATA_WEIGHT));
+
+        // Publishing only queues the message for a batch, so it needs no executor thread of its own.
+        CompletableFuture<ImageMetadata> notified = stored
+                .thenCompose(metadata -> notificationService.notifyImageUpload(metadata)
+                        .thenApply(ignored -> metadata))
+                .thenApply(advance(jobId, NOTIFICATION_WEIGHT));
+
+        // Release the context only after every branch has ended, including after a failure
+        // in one branch while another is still decoding or uploading.
+        return CompletableFuture.allOf(upload, renditions, perceptualHash, header)
+                .handle((ignored, error) -> notified)
+                .thenCompose(Function.identity())
+                .whenComplete((ignored, error) -> context.close());
+    }
+
+    private <T> UnaryOperator<T> advance(String jobId, int weight) {
+        return value -> {
+            progressTrackerService.advanceProgress(jobId, weight);
+            return value;
+        };
     }
 
 }
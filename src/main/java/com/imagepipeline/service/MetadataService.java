@@ -1,20 +1,20 @@
 package com.imagepipeline.service;
 
-import com.imagepipeline.config.AwsProperties;
+import com.imagepipeline.image.ImageContext;
+import com.imagepipeline.image.ImageHeader;
+import com.imagepipeline.image.PerceptualHash;
 import com.imagepipeline.model.ImageMetadata;
+import com.imagepipeline.model.RenditionInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service to extract image metadata and store it in DynamoDB.
@@ -23,58 +23,69 @@ import java.util.UUID;
 @Slf4j
 public class MetadataService {
 
-    private final DynamoDbClient dynamoDbClient;
-    private final AwsProperties awsProperties;
+    private final MetadataWriteBatcher writeBatcher;
+
+    private final SimilarityIndex similarityIndex;
 
     /**
      * Constructs the MetadataService.
      *
-     * @param dynamoDbClient the AWS DynamoDB client.
-     * @param awsProperties  configuration properties for AWS.
+     * @param writeBatcher    the batcher for DynamoDB writes.
+     * @param similarityIndex the index of perceptual hashes.
      */
-    public MetadataService(DynamoDbClient dynamoDbClient, AwsProperties awsProperties) {
-        this.dynamoDbClient = dynamoDbClient;
-        this.awsProperties = awsProperties;
+    public MetadataService(MetadataWriteBatcher writeBatcher, SimilarityIndex similarityIndex) {
+        this.writeBatcher = writeBatcher;
+        this.similarityIndex = similarityIndex;
     }
 
     /**
-     * Extracts metadata from an image file and stores it in DynamoDB.
+     * Extracts metadata from the image header only; no pixel data is decoded.
+     * The image URL and renditions are filled in once those stages have finished.
      *
-     * @param file     the image file.
-     * @param imageUrl the S3 URL.
+     * @param context the per-job image context.
+     * @return an ImageMetadata object without URL or renditions.
      * @throws IOException if an error occurs.
      */
-    public void extractAndStoreMetadata(MultipartFile file, String imageUrl) throws IOException {
-        ImageMetadata metadata = extractMetadata(file, imageUrl);
-        storeMetadata(metadata);
+    public ImageMetadata extractMetadata(ImageContext context) throws IOException {
+        ImageHeader header = context.getHeader();
+        ImageMetadata metadata = ImageMetadata.builder()
+                .imageId(context.getImageId())
+                .width(header.getWidth())
+                .height(header.getHeight())
+                .format(header.getFormat())
+                .tags("default,photo")
+                .orientation(header.getOrientation())
+                .captureTime(header.getCaptureTime())
+                .cameraModel(header.getCameraModel())
+                .build();
+        log.info("Extracted metadata: {}", metadata);
+        return metadata;
     }
 
     /**
-     * Extracts metadata.
+     * Computes the perceptual hash of the image from a low-resolution decode.
+     * A raster already decoded for the renditions is reused; otherwise the image is
+     * decoded with heavy subsampling, which never allocates a full-resolution buffer.
      *
-     * @param file     the image file.
-     * @param imageUrl the S3 URL.
-     * @return an ImageMetadata object.
-     * @throws IOException if an error occurs.
+     * @param context the per-job image context.
+     * @return the 64-bit difference hash.
+     * @throws IOException if the image cannot be decoded.
      */
-    private ImageMetadata extractMetadata(MultipartFile file, String imageUrl) throws IOException {
-        BufferedImage bufferedImage = ImageIO.read(file.getInputStream());
-        int width = bufferedImage.getWidth();
-        int height = bufferedImage.getHeight();
-        String format = getFileExtension(file.getOriginalFilename());
-        String tags = "default,photo";
-        String imageId = UUID.randomUUID().toString();
-        ImageMetadata metadata = new ImageMetadata(imageId, imageUrl, width, height, format, tags);
-        log.info("Extracted metadata: {}", metadata);
-        return metadata;
+    public long computePerceptualHash(ImageContext context) throws IOException {
+        long hash = PerceptualHash.dHash(context.getImage(PerceptualHash.DECODE_SIZE, PerceptualHash.DECODE_SIZE));
+        log.debug("Perceptual hash of {}: {}", context.getImageId(), HexFormat.of().toHexDigits(hash));
+        return hash;
     }
 
     /**
-     * Stores the metadata in DynamoDB.
+     * Stores the metadata in DynamoDB. The write is batched with those of other jobs.
+     * Once it has been written, an image with a perceptual hash becomes searchable
+     * in the {@link SimilarityIndex}.
      *
      * @param metadata the image metadata.
+     * @return a future completed once the item has been written.
      */
-    private void storeMetadata(ImageMetadata metadata) {
+    public CompletableFuture<Void> storeMetadata(ImageMetadata metadata) {
         Map<String, AttributeValue> item = new HashMap<>();
         item.put("imageId", AttributeValue.builder().s(metadata.getImageId()).build());
         item.put("imageUrl", AttributeValue.builder().s(metadata.getImageUrl()).build());
@@ -82,30 +93,54 @@ public class MetadataService {
         item.put("height", AttributeValue.builder().n(String.valueOf(metadata.getHeight())).build());
         item.put("format", AttributeValue.builder().s(metadata.getFormat()).build());
         item.put("tags", AttributeValue.builder().s(metadata.getTags()).build());
-
-        PutItemRequest request = PutItemRequest.builder()
-                .tableName(awsProperties.getDynamodb().getTable())
-                .item(item)
-                .build();
-        try {
-            dynamoDbClient.putItem(request);
-            log.info("Successfully stored metadata for imageId: {}", metadata.getImageId());
-        } catch (Exception e) {
-            log.error("Failed to store metadata for imageId: {}. Error: {}", metadata.getImageId(), e.getMessage());
-            throw e;
+        item.put("orientation", AttributeValue.builder().n(String.valueOf(metadata.getOrientation())).build());
+        if (metadata.getCaptureTime() != null) {
+            item.put("captureTime", AttributeValue.builder().s(metadata.getCaptureTime()).build());
+        }
+        if (metadata.getCameraModel() != null) {
+            item.put("cameraModel", AttributeValue.builder().s(metadata.getCameraModel()).build());
+        }
+        if (metadata.getContentHash() != null) {
+            item.put("contentHash", AttributeValue.builder().s(metadata.getContentHash()).build());
+        }
+        if (metadata.getPerceptualHash() != null) {
+            item.put("perceptualHash", AttributeValue.builder()
+                    .s(HexFormat.of().toHexDigits(metadata.getPerceptualHash()))
+                    .build());
         }
+        if (!metadata.getRenditions().isEmpty()) {
+            List<AttributeValue> renditions = metadata.getRenditions().stream()
+                    .map(this::toAttributeValue)
+                    .toList();
+            item.put("renditions", AttributeValue.builder().l(renditions).build());
+        }
+
+        return writeBatcher.put(item).whenComplete((ignored, error) -> {
+            if (error == null) {
+                log.info("Successfully stored metadata for imageId: {}", metadata.getImageId());
+                if (metadata.getPerceptualHash() != null) {
+                    similarityIndex.add(metadata.getImageId(), metadata.getPerceptualHash());
+                }
+            } else {
+                log.error("Failed to store metadata for imageId: {}. Error: {}", metadata.getImageId(),
+                        error.getMessage());
+            }
+        });
     }
 
     /**
-     * Extracts the file extension from the provided filename.
+     * Converts a rendition into a DynamoDB map attribute.
      *
-     * @param fileName the filename.
-     * @return the file extension in lowercase, or "unknown" if not found.
+     * @param rendition the rendition.
+     * @return the map attribute.
      */
-    private String getFileExtension(String fileName) {
-        if (fileName != null && fileName.contains(".")) {
-            return fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
-        }
-        return "unknown";
+    private AttributeValue toAttributeValue(RenditionInfo rendition) {
+        Map<String, AttributeValue> map = new HashMap<>();
+        map.put("name", AttributeValue.builder().s(rendition.getName()).build());
+        map.put("key", AttributeValue.builder().s(rendition.getKey()).build());
+        map.put("width", AttributeValue.builder().n(String.valueOf(rendition.getWidth())).build());
+        map.put("height", AttributeValue.builder().n(String.valueOf(rendition.getHeight())).build());
+        map.put("bytes", AttributeValue.builder().n(String.valueOf(rendition.getBytes())).build());
+        return AttributeValue.builder().m(map).build();
     }
 }
@@ -0,0 +1,165 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.AwsProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Write-behind batcher for DynamoDB puts.
+ * Items are collected and sent with {@code BatchWriteItem}, up to 25 per request. A batch is
+ * sent as soon as it is full, or once the oldest pending item has waited for the configured
+ * linger time. Items that DynamoDB returns as unprocessed are retried with jittered exponential
+ * backoff. Each item has its own future, which completes only once that item has been written.
+ */
+@Service
+@Slf4j
+public class MetadataWriteBatcher extends WriteBehindBatcher<Map<String, AttributeValue>> {
+
+    /**
+     * Maximum number of items DynamoDB accepts in a single BatchWriteItem request.
+     */
+    static final int MAX_BATCH_SIZE = 25;
+
+    private static final long RETRY_BACKOFF_MILLIS = 50;
+
+    private final DynamoDbAsyncClient dynamoDbClient;
+    private final AwsProperties.DynamoDb properties;
+
+    /**
+     * Constructs the MetadataWriteBatcher.
+     *
+     * @param dynamoDbClient the AWS DynamoDB client.
+     * @param awsProperties  configuration properties for AWS.
+     */
+    public MetadataWriteBatcher(DynamoDbAsyncClient dynamoDbClient, AwsProperties awsProperties) {
+        super("dynamodb-batch");
+        this.dynamoDbClient = dynamoDbClient;
+        this.properties = awsProperties.getDynamodb();
+    }
+
+    /**
+     * Queues an item to be put into the metadata table.
+     *
+     * @param item the item; must contain the table's {@code imageId} key.
+     * @return a future completed once the item has been written.
+     */
+    public CompletableFuture<Void> put(Map<String, AttributeValue> item) {
+        return enqueue(item);
+    }
+
+    @Override
+    protected int batchSize() {
+        return Math.clamp(properties.getBatchSize(), 1, MAX_BATCH_SIZE);
+    }
+
+    @Override
+    protected Duration linger() {
+        return properties.getBatchLinger();
+    }
+
+    /**
+     * Writes one batch, retrying unprocessed items until they are written or the attempts run out.
+     *
+     * @param writes the items of the batch; at most 25.
+     * @return a future completed once every item of the batch has been settled.
+     */
+    @Override
+    protected CompletableFuture<Void> send(List<Pending<Map<String, AttributeValue>>> writes) {
+        // BatchWriteItem rejects two requests for the same key, so the last write of a key wins
+        // and every caller of that key is completed with it.
+        Map<String, List<Pending<Map<String, AttributeValue>>>> byKey = new LinkedHashMap<>();
+        Map<String, WriteRequest> requests = new LinkedHashMap<>();
+        for (Pending<Map<String, AttributeValue>> write : writes) {
+            String key = write.entry().get("imageId").s();
+            byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(write);
+            requests.put(key, WriteRequest.builder()
+                    .putRequest(PutRequest.builder().item(write.entry()).build())
+                    .build());
+        }
+
+        return write(requests, byKey, 1);
+    }
+
+    /**
+     * Sends one attempt of a batch and schedules the retry of its unprocessed items.
+     *
+     * @param remaining the requests still to write, by key.
+     * @param byKey     the callers waiting for each key.
+     * @param attempt   the attempt number, starting at 1.
+     * @return a future completed once every item of the batch has been settled.
+     */
+    private CompletableFuture<Void> write(Map<String, WriteRequest> remaining,
+                                          Map<String, List<Pending<Map<String, AttributeValue>>>> byKey, int attempt) {
+        String table = properties.getTable();
+        int maxAttempts = Math.max(1, properties.getBatchMaxAttempts());
+        return dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(Map.of(table, List.copyOf(remaining.values())))
+                        .build())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        if (attempt >= maxAttempts) {
+                            log.error("Metadata batch write failed after {} attempts: {}", attempt, cause.getMessage());
+                            fail(remaining.keySet(), byKey, cause);
+                            return CompletableFuture.<Void>completedFuture(null);
+                        }
+                        log.warn("Metadata batch write failed (attempt {}), retrying: {}", attempt, cause.getMessage());
+                        return backoff(RETRY_BACKOFF_MILLIS, attempt)
+                                .thenCompose(ignored -> write(remaining, byKey, attempt + 1));
+                    }
+                    Map<String, WriteRequest> unprocessed = new LinkedHashMap<>();
+                    for (WriteRequest request : response.unprocessedItems().getOrDefault(table, List.of())) {
+                        unprocessed.put(request.putRequest().item().get("imageId").s(), request);
+                    }
+                    remaining.keySet().stream()
+                            .filter(key -> !unprocessed.containsKey(key))
+                            .forEach(key -> byKey.get(key).forEach(write -> write.future().complete(null)));
+                    if (unprocessed.isEmpty()) {
+                        log.debug("Wrote batch of {} metadata items in {} attempts", byKey.size(), attempt);
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    if (attempt >= maxAttempts) {
+                        fail(unprocessed.keySet(), byKey, new IOException(unprocessed.size()
+                                + " metadata items still unprocessed after " + attempt + " attempts"));
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    log.warn("{} of {} metadata items unprocessed (attempt {}), retrying",
+                            unprocessed.size(), byKey.size(), attempt);
+                    return backoff(RETRY_BACKOFF_MILLIS, attempt)
+                            .thenCompose(ignored -> write(unprocessed, byKey, attempt + 1));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private static void fail(Iterable<String> keys, Map<String, List<Pending<Map<String, AttributeValue>>>> byKey,
+                             Throwable error) {
+        for (String key : keys) {
+            byKey.get(key).forEach(write -> write.future().completeExceptionally(error));
+        }
+    }
+
+    /**
+     * Sends the items still pending and stops the batcher threads.
+     */
+    @Override
+    @PreDestroy
+    public void shutdown() {
+        super.shutdown();
+    }
+
+}
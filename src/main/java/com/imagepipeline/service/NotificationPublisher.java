@@ -0,0 +1,218 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.AwsProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Write-behind batcher for SNS messages.
+ * Messages are collected and sent with {@code PublishBatch}, up to 10 per request and within
+ * the 256 KB request limit. A batch is sent as soon as it is full, or once the oldest pending
+ * message has waited for the configured linger time. Entries that fail on the service side are
+ * retried with jittered exponential backoff; entries rejected as the sender's fault fail at once.
+ */
+@Service
+@Slf4j
+public class NotificationPublisher extends WriteBehindBatcher<NotificationPublisher.Message> {
+
+    /**
+     * Maximum number of entries SNS accepts in a single PublishBatch request.
+     */
+    static final int MAX_BATCH_SIZE = 10;
+
+    /**
+     * Maximum total payload of a PublishBatch request, and so also of a single message.
+     */
+    static final int MAX_BATCH_BYTES = 256 * 1024;
+
+    /**
+     * Room left per entry for its subject, attributes and id.
+     */
+    static final int ENTRY_OVERHEAD_BYTES = 512;
+
+    private static final long RETRY_BACKOFF_MILLIS = 100;
+
+    private final SnsAsyncClient snsClient;
+    private final AwsProperties.Sns properties;
+
+    /**
+     * Constructs the NotificationPublisher.
+     *
+     * @param snsClient     the AWS SNS client.
+     * @param awsProperties configuration properties for AWS.
+     */
+    public NotificationPublisher(SnsAsyncClient snsClient, AwsProperties awsProperties) {
+        super("sns-batch");
+        this.snsClient = snsClient;
+        this.properties = awsProperties.getSns();
+    }
+
+    /**
+     * A message to publish.
+     *
+     * @param type    the message type, sent as the {@code type} message attribute.
+     * @param subject the subject for email subscribers.
+     * @param body    the JSON message body.
+     */
+    public record Message(String type, String subject, String body) {
+
+        int size() {
+            return body.getBytes(StandardCharsets.UTF_8).length + ENTRY_OVERHEAD_BYTES;
+        }
+
+    }
+
+    /**
+     * Queues a message for the configured topic.
+     *
+     * @param message the message.
+     * @return a future completed once SNS has accepted the message.
+     */
+    public CompletableFuture<Void> publish(Message message) {
+        if (message.size() > MAX_BATCH_BYTES) {
+            return CompletableFuture.failedFuture(new IOException("SNS message of " + message.size()
+                    + " bytes exceeds the " + MAX_BATCH_BYTES + " byte limit"));
+        }
+        return enqueue(message);
+    }
+
+    @Override
+    protected int batchSize() {
+        return Math.clamp(properties.getBatchSize(), 1, MAX_BATCH_SIZE);
+    }
+
+    @Override
+    protected Duration linger() {
+        return properties.getBatchLinger();
+    }
+
+    /**
+     * Publishes one batch, split further where its messages exceed the request size limit.
+     *
+     * @param messages the messages of the batch; at most 10.
+     * @return a future completed once every message of the batch has been settled.
+     */
+    @Override
+    protected CompletableFuture<Void> send(List<Pending<Message>> messages) {
+        List<CompletableFuture<Void>> requests = new ArrayList<>();
+        List<Pending<Message>> request = new ArrayList<>();
+        int bytes = 0;
+        for (Pending<Message> message : messages) {
+            int size = message.entry().size();
+            if (!request.isEmpty() && bytes + size > MAX_BATCH_BYTES) {
+                requests.add(publishBatch(request));
+                request = new ArrayList<>();
+                bytes = 0;
+            }
+            request.add(message);
+            bytes += size;
+        }
+        if (!request.isEmpty()) {
+            requests.add(publishBatch(request));
+        }
+        return CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new));
+    }
+
+    private CompletableFuture<Void> publishBatch(List<Pending<Message>> messages) {
+        // Entry ids only need to be unique within a request.
+        Map<String, Pending<Message>> entries = new LinkedHashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            entries.put(String.valueOf(i), messages.get(i));
+        }
+        return publishBatch(entries, 1);
+    }
+
+    /**
+     * Publishes one attempt of a request and schedules the retry of its failed entries.
+     *
+     * @param remaining the messages still to publish, by entry id.
+     * @param attempt   the attempt number, starting at 1.
+     * @return a future completed once every message of the request has been settled.
+     */
+    private CompletableFuture<Void> publishBatch(Map<String, Pending<Message>> remaining, int attempt) {
+        int maxAttempts = Math.max(1, properties.getBatchMaxAttempts());
+        return snsClient.publishBatch(PublishBatchRequest.builder()
+                        .topicArn(properties.getTopicArn())
+                        .publishBatchRequestEntries(remaining.entrySet().stream()
+                                .map(entry -> toEntry(entry.getKey(), entry.getValue().entry()))
+                                .toList())
+                        .build())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        if (attempt >= maxAttempts) {
+                            log.error("SNS batch publish failed after {} attempts: {}", attempt, cause.getMessage());
+                            remaining.values().forEach(message -> message.future().completeExceptionally(cause));
+                            return CompletableFuture.<Void>completedFuture(null);
+                        }
+                        log.warn("SNS batch publish failed (attempt {}), retrying: {}", attempt, cause.getMessage());
+                        return backoff(RETRY_BACKOFF_MILLIS, attempt)
+                                .thenCompose(ignored -> publishBatch(remaining, attempt + 1));
+                    }
+                    Map<String, Pending<Message>> accepted = new LinkedHashMap<>(remaining);
+                    Map<String, Pending<Message>> retry = new LinkedHashMap<>();
+                    for (BatchResultErrorEntry failed : response.failed()) {
+                        Pending<Message> message = accepted.remove(failed.id());
+                        if (message == null) {
+                            continue;
+                        }
+                        if (Boolean.TRUE.equals(failed.senderFault()) || attempt >= maxAttempts) {
+                            log.error("SNS message {} failed: {} {}", message.entry().type(), failed.code(),
+                                    failed.message());
+                            message.future().completeExceptionally(new IOException("SNS rejected message: "
+                                    + failed.code() + " " + failed.message()));
+                        } else {
+                            retry.put(failed.id(), message);
+                        }
+                    }
+                    accepted.values().forEach(message -> message.future().complete(null));
+                    if (retry.isEmpty()) {
+                        log.debug("Published batch of {} SNS messages in {} attempts", accepted.size(), attempt);
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    log.warn("{} of {} SNS messages failed (attempt {}), retrying",
+                            retry.size(), remaining.size(), attempt);
+                    return backoff(RETRY_BACKOFF_MILLIS, attempt)
+                            .thenCompose(ignored -> publishBatch(retry, attempt + 1));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private static PublishBatchRequestEntry toEntry(String id, Message message) {
+        return PublishBatchRequestEntry.builder()
+                .id(id)
+                .subject(message.subject())
+                .message(message.body())
+                .messageAttributes(Map.of("type", MessageAttributeValue.builder()
+                        .dataType("String")
+                        .stringValue(message.type())
+                        .build()))
+                .build();
+    }
+
+    /**
+     * Sends the messages still pending and stops the batcher threads.
+     */
+    @Override
+    @PreDestroy
+    public void shutdown() {
+        super.shutdown();
+    }
+
+}
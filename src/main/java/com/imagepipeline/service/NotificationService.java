@@ -1,40 +1,197 @@
 package com.imagepipeline.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.imagepipeline.config.AwsProperties;
+import com.imagepipeline.model.ImageMetadata;
+import com.imagepipeline.model.ImageUploadedEvent;
+import com.imagepipeline.model.RenditionInfo;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.services.sns.SnsClient;
-import software.amazon.awssdk.services.sns.model.PublishRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service responsible for sending notifications about new image uploads via SNS.
+ * Each upload is published as a JSON {@link ImageUploadedEvent}; messages are batched by the
+ * {@link NotificationPublisher}. When digests are enabled, uploads are also combined into digest
+ * messages of type {@value #DIGEST_TYPE}, published when full or when the digest interval ends.
+ * Every message carries its type as the {@code type} message attribute, so each subscriber
+ * chooses individual messages, digests or both with an SNS filter policy.
  */
 @Service
 @Slf4j
 public class NotificationService {
 
-    private final SnsClient snsClient;
+    /**
+     * Value of the {@code type} field and message attribute of digest messages.
+     */
+    public static final String DIGEST_TYPE = "image.uploaded.digest";
+
+    private static final String DIGEST_SUFFIX = "]}";
+
+    private final NotificationPublisher publisher;
 
     private final AwsProperties awsProperties;
 
-    public NotificationService(final SnsClient snsClient, final AwsProperties awsProperties) {
-        this.snsClient = snsClient;
+    private final ObjectMapper objectMapper;
+
+    private final ScheduledExecutorService digestScheduler;
+
+    // Serialized events of the current digest; guarded by this.
+    private List<String> digestEvents = new ArrayList<>();
+    private int digestBytes;
+
+    /**
+     * Constructs the NotificationService.
+     *
+     * @param publisher     the batching SNS publisher.
+     * @param awsProperties configuration properties for AWS.
+     * @param objectMapper  the JSON mapper for message bodies.
+     */
+    public NotificationService(final NotificationPublisher publisher, final AwsProperties awsProperties,
+                               final ObjectMapper objectMapper) {
+        this.publisher = publisher;
         this.awsProperties = awsProperties;
+        this.objectMapper = objectMapper;
+        AwsProperties.Sns.Digest digest = awsProperties.getSns().getDigest();
+        if (digest.isEnabled()) {
+            long interval = digest.getInterval().toMillis();
+            this.digestScheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("sns-digest").daemon().factory());
+            digestScheduler.scheduleAtFixedRate(this::flushDigest, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.digestScheduler = null;
+        }
     }
 
     /**
      * Publishes a notification about the new image upload.
+     * The returned future completes once SNS has accepted the individual message. Digests are
+     * published later and independently, so they never hold up the job.
      *
-     * @param imageUrl the S3 URL of the uploaded image.
+     * @param metadata the stored metadata of the image.
+     * @return a future completed once the notification has been published.
+     */
+    public CompletableFuture<Void> notifyImageUpload(ImageMetadata metadata) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(toEvent(metadata));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (awsProperties.getSns().getDigest().isEnabled()) {
+            addToDigest(body);
+        }
+        if (!awsProperties.getSns().isIndividual()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return publisher.publish(new NotificationPublisher.Message(ImageUploadedEvent.TYPE, "New Image Upload", body))
+                .whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        log.info("SNS notification sent for image: {}", metadata.getImageUrl());
+                    }
+                });
+    }
+
+    /**
+     * Builds the event payload for an image.
+     *
+     * @param metadata the stored metadata of the image.
+     * @return the event.
+     */
+    private ImageUploadedEvent toEvent(ImageMetadata metadata) {
+        Map<String, String> renditionUrls = new LinkedHashMap<>();
+        for (RenditionInfo rendition : metadata.getRenditions()) {
+            renditionUrls.put(rendition.getName(),
+                    "https://s3.amazonaws.com/" + awsProperties.getS3().getBucket() + "/" + rendition.getKey());
+        }
+        return new ImageUploadedEvent(metadata.getImageId(), metadata.getImageUrl(), metadata.getWidth(),
+                metadata.getHeight(), metadata.getFormat(), metadata.getCaptureTime(), renditionUrls);
+    }
+
+    /**
+     * Adds a serialized event to the current digest, publishing the digest first if the event
+     * would not fit, and afterwards if the digest is full.
+     *
+     * @param event the serialized event.
+     */
+    private void addToDigest(String event) {
+        int size = event.getBytes(StandardCharsets.UTF_8).length + 1;
+        int maxBytes = NotificationPublisher.MAX_BATCH_BYTES - NotificationPublisher.ENTRY_OVERHEAD_BYTES
+                - digestHead(Integer.MAX_VALUE).length() - DIGEST_SUFFIX.length();
+        List<String> full = null;
+        List<String> overflow = null;
+        synchronized (this) {
+            if (!digestEvents.isEmpty() && digestBytes + size > maxBytes) {
+                overflow = takeDigest();
+            }
+            digestEvents.add(event);
+            digestBytes += size;
+            if (digestEvents.size() >= Math.max(1, awsProperties.getSns().getDigest().getMaxImages())) {
+                full = takeDigest();
+            }
+        }
+        publishDigest(overflow);
+        publishDigest(full);
+    }
+
+    /**
+     * Publishes the current digest, if it has any uploads.
+     */
+    public void flushDigest() {
+        List<String> events;
+        synchronized (this) {
+            events = takeDigest();
+        }
+        publishDigest(events);
+    }
+
+    private List<String> takeDigest() {
+        List<String> events = digestEvents;
+        digestEvents = new ArrayList<>();
+        digestBytes = 0;
+        return events;
+    }
+
+    private void publishDigest(List<String> events) {
+        if (events == null || events.isEmpty()) {
+            return;
+        }
+        // The events are already JSON, so the digest is assembled around them rather than re-serialized.
+        String body = digestHead(events.size()) + String.join(",", events) + DIGEST_SUFFIX;
+        publisher.publish(new NotificationPublisher.Message(DIGEST_TYPE, "New Image Uploads", body))
+                .whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        log.info("SNS digest sent for {} images", events.size());
+                    } else {
+                        log.error("Failed to send SNS digest for {} images: {}", events.size(), error.getMessage());
+                    }
+                });
+    }
+
+    private static String digestHead(int count) {
+        return "{\"type\":\"" + DIGEST_TYPE + "\",\"count\":" + count + ",\"images\":[";
+    }
+
+    /**
+     * Publishes the pending digest and stops the digest timer.
      */
-    public void notifyImageUpload(String imageUrl) {
-        PublishRequest request = PublishRequest.builder()
-                .topicArn(awsProperties.getSns().getTopicArn())
-                .subject("New Image Upload")
-                .message("A new image has been uploaded: " + imageUrl)
-                .build();
-        snsClient.publish(request);
-        log.info("SNS notification sent for image: {}", imageUrl);
+    @PreDestroy
+    public void shutdown() {
+        if (digestScheduler != null) {
+            digestScheduler.shutdown();
+            flushDigest();
+        }
     }
 
 }
@@ -3,6 +3,7 @@ package com.imagepipeline.service;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -14,6 +15,12 @@ public class ProgressTrackerService {
     // A thread-safe map storing jobId to progress percentage (0-100)
     private final ConcurrentHashMap<String, Integer> progressMap = new ConcurrentHashMap<>();
 
+    // The image each job produced, or was found to duplicate.
+    private final ConcurrentHashMap<String, String> imageIds = new ConcurrentHashMap<>();
+
+    // Jobs that ended with an error; their progress stays where the failure left it.
+    private final Set<String> failedJobs = ConcurrentHashMap.newKeySet();
+
     /**
      * Sets the progress percentage for a given job.
      *
@@ -24,6 +31,18 @@ public class ProgressTrackerService {
         progressMap.put(jobId, percent);
     }
 
+    /**
+     * Adds to the progress percentage of a given job, capped at 100.
+     * Used by stages that finish in any order and each contribute a fixed share.
+     *
+     * @param jobId the job identifier.
+     * @param delta the percentage points to add.
+     * @return the updated progress percentage.
+     */
+    public int advanceProgress(String jobId, int delta) {
+        return progressMap.merge(jobId, delta, (current, added) -> Math.min(100, current + added));
+    }
+
     /**
      * Retrieves the progress percentage for a given job.
      *
@@ -34,6 +53,46 @@ public class ProgressTrackerService {
         return progressMap.getOrDefault(jobId, 0);
     }
 
+    /**
+     * Records the image a job refers to.
+     *
+     * @param jobId   the job identifier.
+     * @param imageId the image identifier.
+     */
+    public void setImageId(String jobId, String imageId) {
+        imageIds.put(jobId, imageId);
+    }
+
+    /**
+     * Returns the image a job refers to. A job whose upload duplicated an earlier
+     * one refers to the earlier job's image.
+     *
+     * @param jobId the job identifier.
+     * @return the image identifier, or null if not yet known.
+     */
+    public String getImageId(String jobId) {
+        return imageIds.get(jobId);
+    }
+
+    /**
+     * Records that a job ended with an error.
+     *
+     * @param jobId the job identifier.
+     */
+    public void setFailed(String jobId) {
+        failedJobs.add(jobId);
+    }
+
+    /**
+     * Returns whether a job ended with an error.
+     *
+     * @param jobId the job identifier.
+     * @return true if the job failed.
+     */
+    public boolean isFailed(String jobId) {
+        return failedJobs.contains(jobId);
+    }
+
     /**
      * Returns the progress statistics for all jobs.
      *
@@ -50,6 +109,8 @@ public class ProgressTrackerService {
      */
     public void removeJob(String jobId) {
         progressMap.remove(jobId);
+        imageIds.remove(jobId);
+        failedJobs.remove(jobId);
     }
 
 }
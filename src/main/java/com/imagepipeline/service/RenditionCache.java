@@ -0,0 +1,120 @@
+package com.imagepipeline.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.imagepipeline.config.AwsProperties;
+import com.imagepipeline.config.PipelineProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Read-through cache of the renditions stored in S3, for serving them to clients.
+ * The heap tier is bounded by total rendition size and evicts with W-TinyLFU, which keeps
+ * frequently viewed renditions even when many others are requested once. Renditions it
+ * evicts move to the optional disk tier. Concurrent misses for the same key share a single
+ * S3 fetch, and a failed fetch is not cached.
+ */
+@Service
+@Slf4j
+public class RenditionCache {
+
+    private final S3AsyncClient s3Client;
+    private final AwsProperties awsProperties;
+    private final RenditionDiskCache diskCache;
+    private final AsyncLoadingCache<String, Rendition> cache;
+
+    /**
+     * Constructs the RenditionCache.
+     *
+     * @param s3Client           the AWS S3 client.
+     * @param awsProperties      configuration properties for AWS.
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param ioExecutor         the executor for disk reads and cache maintenance.
+     * @param meterRegistry      the registry for cache metrics.
+     * @throws IOException if the disk tier cannot be prepared.
+     */
+    public RenditionCache(S3AsyncClient s3Client, AwsProperties awsProperties,
+                          PipelineProperties pipelineProperties,
+                          @Qualifier("ioExecutor") Executor ioExecutor,
+                          MeterRegistry meterRegistry) throws IOException {
+        this.s3Client = s3Client;
+        this.awsProperties = awsProperties;
+        PipelineProperties.RenditionCache properties = pipelineProperties.getRenditionCache();
+        PipelineProperties.RenditionCache.Disk disk = properties.getDisk();
+        this.diskCache = disk.isEnabled()
+                ? new RenditionDiskCache(Paths.get(disk.getDirectory()), disk.getMaxSize().toBytes(), ioExecutor)
+                : null;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxHeapSize().toBytes())
+                .<String, Rendition>weigher((key, rendition) -> rendition.bytes().length)
+                .executor(ioExecutor)
+                .removalListener((String key, Rendition rendition, RemovalCause cause) -> {
+                    if (diskCache != null && cause == RemovalCause.SIZE && rendition != null) {
+                        diskCache.put(key, rendition);
+                    }
+                })
+                .recordStats()
+                .buildAsync((key, executor) -> load(key, executor));
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "renditions");
+    }
+
+    /**
+     * A rendition as served to clients.
+     *
+     * @param bytes       the encoded image.
+     * @param contentType the content type.
+     * @param eTag        the entity tag, quoted.
+     */
+    public record Rendition(byte[] bytes, String contentType, String eTag) {
+    }
+
+    /**
+     * Returns a rendition, fetching it from S3 on a miss in both tiers.
+     *
+     * @param key the S3 key of the rendition.
+     * @return a future completing with the rendition; it fails with a
+     * {@link software.amazon.awssdk.services.s3.model.NoSuchKeyException} if the rendition does not exist.
+     */
+    public CompletableFuture<Rendition> get(String key) {
+        return cache.get(key);
+    }
+
+    private CompletableFuture<Rendition> load(String key, Executor executor) {
+        if (diskCache == null) {
+            return fetch(key);
+        }
+        return CompletableFuture.supplyAsync(() -> diskCache.get(key), executor)
+                .thenCompose(rendition -> rendition != null ? CompletableFuture.completedFuture(rendition) : fetch(key));
+    }
+
+    private CompletableFuture<Rendition> fetch(String key) {
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(awsProperties.getS3().getBucket())
+                .key(key)
+                .build();
+        return s3Client.getObject(request, AsyncResponseTransformer.toBytes()).thenApply(response -> {
+            byte[] bytes = response.asByteArrayUnsafe();
+            log.debug("Fetched rendition {} from S3 ({} bytes)", key, bytes.length);
+            String contentType = response.response().contentType();
+            String eTag = response.response().eTag();
+            return new Rendition(bytes,
+                    contentType != null ? contentType : "image/jpeg",
+                    // S3 always sends an ETag; the MD5 matches it for objects uploaded in one piece.
+                    eTag != null ? eTag : "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"");
+        });
+    }
+
+}
@@ -0,0 +1,150 @@
+package com.imagepipeline.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.Executor;
+
+/**
+ * Disk tier of the {@link RenditionCache}, holding renditions evicted from the heap.
+ * Each rendition is one file with a short header for its ETag and content type; files
+ * are memory-mapped to read them back. The tier is bounded by total file size, and the
+ * files it evicts are deleted. Its contents only live as long as the process: the
+ * directory is emptied when the tier is created.
+ */
+@Slf4j
+class RenditionDiskCache {
+
+    private final Path directory;
+
+    // Key to file size; evicting an entry deletes its file.
+    private final Cache<String, Integer> index;
+
+    /**
+     * Constructs the disk tier and empties its directory.
+     *
+     * @param directory the directory owned by the tier.
+     * @param maxBytes  the maximum total size of the files.
+     * @param executor  the executor for evictions.
+     * @throws IOException if the directory cannot be prepared.
+     */
+    RenditionDiskCache(Path directory, long maxBytes, Executor executor) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+        }
+        this.index = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<String, Integer>weigher((key, size) -> size)
+                .executor(executor)
+                .removalListener((String key, Integer size, RemovalCause cause) -> {
+                    // A replaced entry's file has already been overwritten with the new one.
+                    if (key != null && cause != RemovalCause.REPLACED) {
+                        delete(file(key));
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Stores a rendition, replacing any previous one under the same key.
+     *
+     * @param key       the S3 key of the rendition.
+     * @param rendition the rendition.
+     */
+    void put(String key, RenditionCache.Rendition rendition) {
+        byte[] eTag = rendition.eTag().getBytes(StandardCharsets.UTF_8);
+        byte[] contentType = rendition.contentType().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(2 * Short.BYTES + eTag.length + contentType.length)
+                .putShort((short) eTag.length).put(eTag)
+                .putShort((short) contentType.length).put(contentType)
+                .flip();
+        Path file = file(key);
+        Path partial = null;
+        try {
+            // A file of its own per write, so concurrent writes of a key never interleave.
+            partial = Files.createTempFile(directory, file.getFileName().toString(), ".part");
+            try (FileChannel out = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                ByteBuffer body = ByteBuffer.wrap(rendition.bytes());
+                while (header.hasRemaining() || body.hasRemaining()) {
+                    out.write(new ByteBuffer[]{header, body});
+                }
+            }
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Failed to write rendition {} to the disk cache: {}", key, e.getMessage());
+            if (partial != null) {
+                delete(partial);
+            }
+            return;
+        }
+        index.put(key, header.limit() + rendition.bytes().length);
+    }
+
+    /**
+     * Reads a rendition back from disk.
+     *
+     * @param key the S3 key of the rendition.
+     * @return the rendition, or null if it is not on disk.
+     */
+    RenditionCache.Rendition get(String key) {
+        if (index.getIfPresent(key) == null) {
+            return null;
+        }
+        try (FileChannel in = FileChannel.open(file(key), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            String eTag = readString(mapped);
+            String contentType = readString(mapped);
+            byte[] bytes = new byte[mapped.remaining()];
+            mapped.get(bytes);
+            return new RenditionCache.Rendition(bytes, contentType, eTag);
+        } catch (IOException | RuntimeException e) {
+            // The file was evicted after the index lookup, or is damaged.
+            log.debug("Disk cache miss for rendition {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private Path file(String key) {
+        // Keys contain slashes; a digest gives a flat, fixed-length file name.
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete disk cache file {}: {}", path, e.getMessage());
+        }
+    }
+
+}
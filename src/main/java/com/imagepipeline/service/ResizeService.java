@@ -0,0 +1,219 @@
+package com.imagepipeline.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.FitMode;
+import com.imagepipeline.image.ImageDecoder;
+import com.imagepipeline.image.ImageHeader;
+import com.imagepipeline.image.ImageHeaderReader;
+import com.imagepipeline.image.ImageScaler;
+import com.imagepipeline.image.OutputFormat;
+import com.imagepipeline.image.RasterPool;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Resizes stored images on demand to sizes the renditions do not cover.
+ * A variant is rendered from the smallest stored full-frame rendition that is large
+ * enough, read through the {@link RenditionCache}, so the original never has to be
+ * fetched or decoded. Rendered variants are cached under a normalized key; concurrent
+ * requests for the same uncached variant share one render. Only configured sizes are
+ * accepted, which bounds the number of distinct variants per image.
+ */
+@Service
+@Slf4j
+public class ResizeService {
+
+    private final RenditionCache renditionCache;
+    private final PipelineProperties pipelineProperties;
+    private final EncodingService encodingService;
+    private final RasterPool rasterPool;
+    private final Executor cpuExecutor;
+    private final AsyncCache<String, RenditionCache.Rendition> variants;
+
+    /**
+     * Constructs the ResizeService.
+     *
+     * @param renditionCache     the cache of stored renditions.
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param encodingService    the encoder for variants.
+     * @param rasterPool         the pool the resized images are borrowed from.
+     * @param cpuExecutor        the executor for decoding, resizing and encoding.
+     * @param ioExecutor         the executor for cache maintenance.
+     * @param meterRegistry      the registry for cache metrics.
+     */
+    public ResizeService(RenditionCache renditionCache, PipelineProperties pipelineProperties,
+                         EncodingService encodingService, RasterPool rasterPool,
+                         @Qualifier("cpuExecutor") Executor cpuExecutor,
+                         @Qualifier("ioExecutor") Executor ioExecutor,
+                         MeterRegistry meterRegistry) {
+        this.renditionCache = renditionCache;
+        this.pipelineProperties = pipelineProperties;
+        this.encodingService = encodingService;
+        this.rasterPool = rasterPool;
+        this.cpuExecutor = cpuExecutor;
+        this.variants = Caffeine.newBuilder()
+                .maximumWeight(pipelineProperties.getResize().getMaxCacheSize().toBytes())
+                .<String, RenditionCache.Rendition>weigher((key, variant) -> variant.bytes().length)
+                .executor(ioExecutor)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, variants, "resized-variants");
+    }
+
+    /**
+     * A normalized resize request.
+     *
+     * @param imageId the image identifier.
+     * @param width   the box width, or 0 for no bound.
+     * @param height  the box height, or 0 for no bound.
+     * @param fit     the fit mode.
+     * @param format  the output format.
+     */
+    public record Variant(String imageId, int width, int height, FitMode fit, OutputFormat format) {
+
+        /**
+         * Returns the cache key; equal requests always map to the same key.
+         *
+         * @return the key.
+         */
+        public String key() {
+            return imageId + "/" + width + "x" + height + "/" + fit.name().toLowerCase(Locale.ROOT)
+                    + "." + format.getExtension();
+        }
+
+    }
+
+    /**
+     * Validates and normalizes the parameters of a resize request.
+     * A crop with only one bound is a square; format aliases map to one name.
+     *
+     * @param imageId the image identifier.
+     * @param width   the requested width, or null.
+     * @param height  the requested height, or null.
+     * @param fit     "fit" or "crop", or null for fit.
+     * @param format  "jpeg", "jpg", "png" or "webp", or null for jpeg.
+     * @return the normalized request.
+     * @throws IllegalArgumentException if a parameter is not allowed.
+     */
+    public Variant variant(String imageId, Integer width, Integer height, String fit, String format) {
+        if (width == null && height == null) {
+            throw new IllegalArgumentException("At least one of w and h is required");
+        }
+        for (Integer size : new Integer[]{width, height}) {
+            if (size != null && !pipelineProperties.getResize().getAllowedSizes().contains(size)) {
+                throw new IllegalArgumentException("Size " + size + " is not one of "
+                        + pipelineProperties.getResize().getAllowedSizes());
+            }
+        }
+        FitMode mode = switch (fit == null ? "fit" : fit.toLowerCase(Locale.ROOT)) {
+            case "fit" -> FitMode.FIT;
+            case "crop" -> FitMode.CROP;
+            default -> throw new IllegalArgumentException("Unknown fit " + fit);
+        };
+        OutputFormat outputFormat = switch (format == null ? "jpeg" : format.toLowerCase(Locale.ROOT)) {
+            case "jpeg", "jpg" -> OutputFormat.JPEG;
+            case "png" -> OutputFormat.PNG;
+            case "webp" -> OutputFormat.WEBP;
+            default -> throw new IllegalArgumentException("Unsupported format " + format);
+        };
+        if (!encodingService.supports(outputFormat)) {
+            throw new IllegalArgumentException("Unsupported format " + format);
+        }
+        int w = width != null ? width : 0;
+        int h = height != null ? height : 0;
+        if (mode == FitMode.CROP && (w == 0 || h == 0)) {
+            w = Math.max(w, h);
+            h = w;
+        }
+        return new Variant(imageId, w, h, mode, outputFormat);
+    }
+
+    /**
+     * Returns a resized variant of an image, rendering it on a cache miss.
+     *
+     * @param variant the normalized request.
+     * @return a future completing with the encoded variant; it fails with a
+     * {@link software.amazon.awssdk.services.s3.model.NoSuchKeyException} if the image has no stored rendition.
+     */
+    public CompletableFuture<RenditionCache.Rendition> resize(Variant variant) {
+        return variants.get(variant.key(), (key, executor) -> render(variant));
+    }
+
+    private CompletableFuture<RenditionCache.Rendition> render(Variant variant) {
+        PipelineProperties.Rendition source;
+        try {
+            source = sourceRendition(variant);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        String sourceKey = ThumbnailService.renditionKey(variant.imageId(), source.getName(),
+                encodingService.getRenditionFormat());
+        return renditionCache.get(sourceKey).thenApplyAsync(rendition -> {
+            try {
+                return render(variant, rendition);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, cpuExecutor);
+    }
+
+    private RenditionCache.Rendition render(Variant variant, RenditionCache.Rendition source) throws IOException {
+        ImageHeader header = ImageHeaderReader.read(new ByteArrayInputStream(source.bytes()));
+        Dimension size = ImageScaler.targetSize(header.getWidth(), header.getHeight(),
+                variant.width(), variant.height(), variant.fit());
+        // Subsample while decoding when the source is much larger than the output.
+        int subsampling = ImageScaler.subsamplingFactor(header.getWidth(), header.getHeight(), size.width, size.height);
+        BufferedImage decoded = ImageDecoder.decode(new ByteArrayInputStream(source.bytes()), subsampling);
+        BufferedImage resized = ImageScaler.resample(decoded, size.width, size.height, variant.fit(), rasterPool);
+        byte[] bytes;
+        try {
+            bytes = encodingService.encodeToArray(resized, variant.format());
+        } finally {
+            rasterPool.release(resized);
+        }
+        // Derived from the source's ETag, so a replaced source changes the variant's too.
+        String eTag = "\"" + DigestUtils.md5DigestAsHex((source.eTag() + "/" + variant.key())
+                .getBytes(StandardCharsets.UTF_8)) + "\"";
+        log.debug("Rendered variant {} ({}x{}, {} bytes)", variant.key(), size.width, size.height, bytes.length);
+        return new RenditionCache.Rendition(bytes, variant.format().getContentType(), eTag);
+    }
+
+    /**
+     * Picks the smallest full-frame rendition with a long edge of at least twice the
+     * requested bound, which covers the requested side for aspect ratios up to 2:1 and
+     * leaves room for a crop; otherwise the largest one.
+     */
+    private PipelineProperties.Rendition sourceRendition(Variant variant) throws IOException {
+        int needed = 2 * Math.max(variant.width(), variant.height());
+        List<PipelineProperties.Rendition> fullFrame = pipelineProperties.getRenditions().stream()
+                .filter(rendition -> rendition.getMode() == FitMode.FIT)
+                .sorted(Comparator.comparingInt(PipelineProperties.Rendition::getLongEdge))
+                .toList();
+        if (fullFrame.isEmpty()) {
+            throw new IOException("No full-frame rendition to resize from");
+        }
+        return fullFrame.stream()
+                .filter(rendition -> rendition.getLongEdge() >= needed)
+                .findFirst()
+                .orElse(fullFrame.get(fullFrame.size() - 1));
+    }
+
+}
@@ -0,0 +1,605 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.SpooledFile;
+import com.imagepipeline.model.S3ImportStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Imports the images already stored under an S3 prefix, without sending their bytes
+ * through the upload API.
+ * The prefix is listed page by page with ListObjectsV2. Each object's leading bytes
+ * are fetched with a ranged GET first, and objects no image reader recognizes are
+ * skipped without being downloaded. Images are downloaded straight from S3 and
+ * admitted into the pipeline by the {@link AdmissionControlService}, so imports count
+ * against the same in-flight limits as uploads; the pipeline keeps the stored object
+ * as the original instead of uploading it again. A fixed number of objects per import
+ * are in flight at once; the listing waits for a free slot, so a large prefix never
+ * builds up a backlog in memory.
+ * <p>
+ * Progress is checkpointed to a local file as the last key below which every object
+ * has been handled. An import that was interrupted resumes after that key, at
+ * startup or on request, so at most the objects that were in flight are processed
+ * again. The keys of objects that failed are kept in the checkpoint too, and are
+ * retried first when the import is resumed, also once it is complete.
+ */
+@Service
+@Slf4j
+public class S3ImportService {
+
+    private static final String CHECKPOINT_SUFFIX = ".properties";
+    private static final String FAILED_KEY_PROPERTY = "failedKey.";
+    private static final String DATA_SUFFIX = ".bin";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final String DOWNLOAD_DIRECTORY = "downloads";
+
+    private final S3AsyncClient s3Client;
+    private final AdmissionControlService admissionControlService;
+    private final SpoolService spoolService;
+    private final PipelineProperties.S3Import properties;
+    private final Executor ioExecutor;
+    private final Map<String, Import> imports = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs the S3ImportService.
+     *
+     * @param s3Client                the AWS S3 client.
+     * @param admissionControlService service that admits jobs into the pipeline.
+     * @param spoolService            the spool, which also writes and hashes the downloads.
+     * @param pipelineProperties      configuration properties for the pipeline.
+     * @param ioExecutor              the executor for blocking I/O stages.
+     */
+    public S3ImportService(S3AsyncClient s3Client,
+                           AdmissionControlService admissionControlService,
+                           SpoolService spoolService,
+                           PipelineProperties pipelineProperties,
+                           @Qualifier("ioExecutor") Executor ioExecutor) {
+        this.s3Client = s3Client;
+        this.admissionControlService = admissionControlService;
+        this.spoolService = spoolService;
+        this.properties = pipelineProperties.getS3Import();
+        this.ioExecutor = ioExecutor;
+    }
+
+    /**
+     * What became of one listed object.
+     */
+    private enum Outcome {
+
+        /**
+         * The object went through the pipeline.
+         */
+        IMPORTED,
+
+        /**
+         * The object is not an image.
+         */
+        SKIPPED,
+
+        /**
+         * The download or the pipeline failed.
+         */
+        FAILED
+
+    }
+
+    /**
+     * A listed object that may still be in flight.
+     */
+    private static final class Entry {
+
+        private final String key;
+        private Outcome outcome;
+
+        private Entry(String key) {
+            this.key = key;
+        }
+
+    }
+
+    /**
+     * State of one import. Entries are kept in listing order, which is key order, until
+     * they and every entry before them are done; the key of the last one removed is the
+     * checkpoint, and the counters cover the removed entries only, so that a resumed
+     * import counts every object once. A failed key stays counted as failed until a
+     * retry of it succeeds.
+     */
+    private static final class Import {
+
+        private final String id;
+        private final String bucket;
+        private final String prefix;
+        private final Semaphore permits;
+        private final Object checkpointLock = new Object();
+        private final Deque<Entry> pending = new ArrayDeque<>();
+        private final SortedSet<String> failedKeys = new TreeSet<>();
+        private String checkpoint;
+        private long imported;
+        private long skipped;
+        private long failed;
+        private boolean running = true;
+        private boolean completed;
+        private String error;
+        private long lastCheckpointWrite = System.nanoTime();
+
+        private Import(String id, String bucket, String prefix, int concurrency) {
+            this.id = id;
+            this.bucket = bucket;
+            this.prefix = prefix;
+            this.permits = new Semaphore(concurrency);
+        }
+
+        private synchronized Entry listed(String key) {
+            Entry entry = new Entry(key);
+            pending.addLast(entry);
+            return entry;
+        }
+
+        private synchronized void done(Entry entry, Outcome outcome) {
+            entry.outcome = outcome;
+            while (!pending.isEmpty() && pending.peekFirst().outcome != null) {
+                Entry first = pending.removeFirst();
+                switch (first.outcome) {
+                    case IMPORTED -> imported++;
+                    case SKIPPED -> skipped++;
+                    case FAILED -> {
+                        failed++;
+                        failedKeys.add(first.key);
+                    }
+                }
+                checkpoint = first.key;
+            }
+        }
+
+        private synchronized void retried(String key, Outcome outcome) {
+            if (outcome == Outcome.FAILED || !failedKeys.remove(key)) {
+                return;
+            }
+            failed--;
+            if (outcome == Outcome.IMPORTED) {
+                imported++;
+            } else {
+                skipped++;
+            }
+        }
+
+        private synchronized S3ImportStatus status() {
+            long[] counts = {imported, skipped, failed};
+            List<String> keys = new ArrayList<>(failedKeys);
+            for (Entry entry : pending) {
+                if (entry.outcome != null) {
+                    counts[entry.outcome.ordinal()]++;
+                    if (entry.outcome == Outcome.FAILED) {
+                        keys.add(entry.key);
+                    }
+                }
+            }
+            return new S3ImportStatus(id, bucket, prefix, running, completed,
+                    imported + skipped + failed + pending.size(), counts[0], counts[1], counts[2], List.copyOf(keys),
+                    checkpoint, error);
+        }
+
+    }
+
+    /**
+     * Starts importing every image under a prefix.
+     *
+     * @param bucket the source bucket.
+     * @param prefix the key prefix; empty for the whole bucket.
+     * @return the status of the new import.
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public S3ImportStatus start(String bucket, String prefix) throws IOException {
+        Import anImport = new Import(UUID.randomUUID().toString(), bucket, prefix, properties.getConcurrency());
+        writeCheckpoint(anImport);
+        imports.put(anImport.id, anImport);
+        run(anImport);
+        log.info("Started import {} of s3://{}/{}", anImport.id, bucket, prefix);
+        return anImport.status();
+    }
+
+    /**
+     * Resumes an import: retries the objects that failed, then lists on after the checkpoint.
+     * An import that is running, or complete without failures, is left as is.
+     *
+     * @param importId the import identifier.
+     * @return the status of the import, or empty if the import is unknown.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    public Optional<S3ImportStatus> resume(String importId) throws IOException {
+        Import running = imports.get(importId);
+        if (running != null && running.status().isRunning()) {
+            return Optional.of(running.status());
+        }
+        Optional<Import> saved = readCheckpoint(importId);
+        if (saved.isEmpty() || saved.get().completed && saved.get().failedKeys.isEmpty()) {
+            return saved.map(Import::status);
+        }
+        Import anImport = saved.get();
+        anImport.running = true;
+        anImport.completed = false;
+        anImport.error = null;
+        // Two concurrent calls must not both start the listing.
+        Import current = imports.compute(importId, (id, existing) ->
+                existing != null && existing.status().isRunning() ? existing : anImport);
+        if (current != anImport) {
+            return Optional.of(current.status());
+        }
+        run(anImport);
+        log.info("Resumed import {} of s3://{}/{} after {}", importId, anImport.bucket, anImport.prefix,
+                anImport.checkpoint);
+        return Optional.of(anImport.status());
+    }
+
+    /**
+     * Returns the state of an import, also of one started by a previous run.
+     *
+     * @param importId the import identifier.
+     * @return the status, or empty if the import is unknown.
+     */
+    public Optional<S3ImportStatus> getStatus(String importId) {
+        Import anImport = imports.get(importId);
+        if (anImport != null) {
+            return Optional.of(anImport.status());
+        }
+        try {
+            return readCheckpoint(importId).map(Import::status);
+        } catch (IOException e) {
+            log.warn("Unable to read the checkpoint of import {}: {}", importId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Discards downloads a previous run left behind and resumes its unfinished imports.
+     *
+     * @throws IOException if the import directory cannot be read.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeImports() throws IOException {
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Path downloads = directory.resolve(DOWNLOAD_DIRECTORY);
+        if (Files.isDirectory(downloads)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(downloads)) {
+                entries.forEach(SpoolService::deleteQuietly);
+            }
+        }
+        if (!properties.isResumeOnStartup()) {
+            return;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + CHECKPOINT_SUFFIX)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                resume(name.substring(0, name.length() - CHECKPOINT_SUFFIX.length()));
+            }
+        }
+    }
+
+    /**
+     * Lists the import on a thread of its own, which blocks while the import has no free slot.
+     */
+    private void run(Import anImport) {
+        Thread.ofVirtual().name("s3-import-" + anImport.id).start(() -> {
+            try {
+                list(anImport);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop(anImport, "interrupted");
+            } catch (RuntimeException e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.error("Import {} stopped: {}", anImport.id, cause.getMessage());
+                stop(anImport, cause.getMessage());
+            }
+        });
+    }
+
+    private void list(Import anImport) throws InterruptedException {
+        List<String> retries;
+        synchronized (anImport) {
+            retries = List.copyOf(anImport.failedKeys);
+        }
+        for (String key : retries) {
+            anImport.permits.acquire();
+            importObject(anImport, key).whenComplete((outcome, error) -> {
+                if (error != null) {
+                    log.error("Import {} failed again on {}: {}", anImport.id, key, error.getMessage());
+                }
+                anImport.retried(key, error != null ? Outcome.FAILED : outcome);
+                anImport.permits.release();
+            });
+        }
+
+        String continuationToken = null;
+        do {
+            ListObjectsV2Request.Builder request = ListObjectsV2Request.builder()
+                    .bucket(anImport.bucket)
+                    .prefix(anImport.prefix)
+                    .maxKeys(properties.getPageSize());
+            if (continuationToken != null) {
+                request.continuationToken(continuationToken);
+            } else if (anImport.status().getCheckpoint() != null) {
+                request.startAfter(anImport.status().getCheckpoint());
+            }
+            ListObjectsV2Response page = s3Client.listObjectsV2(request.build()).join();
+            for (S3Object object : page.contents()) {
+                Entry entry = anImport.listed(object.key());
+                if (object.key().endsWith("/") || object.size() == null || object.size() == 0) {
+                    // Folder placeholders and empty objects.
+                    done(anImport, entry, Outcome.SKIPPED);
+                    continue;
+                }
+                anImport.permits.acquire();
+                importObject(anImport, object.key()).whenComplete((outcome, error) -> {
+                    if (error != null) {
+                        log.error("Import {} failed on {}: {}", anImport.id, object.key(), error.getMessage());
+                    }
+                    // Counted before the slot is freed, so the end of the import sees every object.
+                    done(anImport, entry, error != null ? Outcome.FAILED : outcome);
+                    anImport.permits.release();
+                });
+            }
+            continuationToken = Boolean.TRUE.equals(page.isTruncated()) ? page.nextContinuationToken() : null;
+        } while (continuationToken != null);
+
+        // Waits for the objects still in flight.
+        anImport.permits.acquire(properties.getConcurrency());
+        anImport.permits.release(properties.getConcurrency());
+        synchronized (anImport) {
+            anImport.completed = true;
+        }
+        // The final checkpoint is on disk before the import reports that it has ended,
+        // so a resume that follows reads it.
+        writeCheckpointQuietly(anImport);
+        synchronized (anImport) {
+            anImport.running = false;
+        }
+        S3ImportStatus status = anImport.status();
+        log.info("Import {} complete: {} imported, {} skipped, {} failed", anImport.id, status.getImported(),
+                status.getSkipped(), status.getFailed());
+    }
+
+    /**
+     * Checks that an object is an image from its leading bytes, then downloads and processes it.
+     *
+     * @return a future completing with the outcome once the object's job has ended.
+     */
+    private CompletableFuture<Outcome> importObject(Import anImport, String key) {
+        GetObjectRequest range = GetObjectRequest.builder()
+                .bucket(anImport.bucket)
+                .key(key)
+                .range("bytes=0-" + (properties.getHeaderSize().toBytes() - 1))
+                .build();
+        return s3Client.getObject(range, AsyncResponseTransformer.toBytes())
+                .thenCompose(header -> {
+                    String format = imageFormat(header.asByteArray());
+                    if (format == null) {
+                        log.debug("Import {} skipped {}: not an image", anImport.id, key);
+                        return CompletableFuture.completedFuture(Outcome.SKIPPED);
+                    }
+                    String jobId = UUID.randomUUID().toString();
+                    return CompletableFuture
+                            .supplyAsync(() -> download(anImport.bucket, key, jobId, contentType(format)), ioExecutor)
+                            .thenCompose(file -> admit(jobId, file, S3StorageService.getObjectUrl(anImport.bucket, key))
+                                    .whenComplete((ignored, error) -> SpoolService.deleteQuietly(file.getPath())))
+                            .thenApply(ignored -> Outcome.IMPORTED);
+                });
+    }
+
+    /**
+     * Waits for pipeline capacity on a virtual thread of its own, so that a saturated
+     * pipeline holds no I/O executor thread, then runs the job.
+     *
+     * @return a future completing once the job has ended; failed if no capacity freed up in time.
+     */
+    private CompletableFuture<Void> admit(String jobId, SpooledFile file, String originalUrl) {
+        return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return admissionControlService.admit(jobId, file, properties.getAdmissionWait(), originalUrl)
+                                .orElseThrow(() -> new IllegalStateException(
+                                        "No pipeline capacity within " + properties.getAdmissionWait()));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CompletionException(e);
+                    }
+                }, task -> Thread.ofVirtual().name("s3-import-admit-" + jobId).start(task))
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Downloads an object into the import directory and hashes it on the way, as the spool does.
+     * Runs on the I/O executor, which may block while the body streams in.
+     */
+    private SpooledFile download(String bucket, String key, String jobId, String contentType) {
+        GetObjectRequest request = GetObjectRequest.builder().bucket(bucket).key(key).build();
+        Path directory = directory().resolve(DOWNLOAD_DIRECTORY);
+        String fileName = key.substring(key.lastIndexOf('/') + 1);
+        try {
+            Files.createDirectories(directory);
+            try (ResponseInputStream<GetObjectResponse> body = s3Client.getObject(request,
+                    AsyncResponseTransformer.toBlockingInputStream()).join()) {
+                return spoolService.write(body, directory.resolve(jobId + DATA_SUFFIX), fileName, contentType);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void done(Import anImport, Entry entry, Outcome outcome) {
+        anImport.done(entry, outcome);
+        boolean due;
+        synchronized (anImport) {
+            due = System.nanoTime() - anImport.lastCheckpointWrite >= properties.getCheckpointInterval().toNanos();
+        }
+        if (due) {
+            writeCheckpointQuietly(anImport);
+        }
+    }
+
+    /**
+     * Ends the listing of an import after an error, once its objects in flight are done.
+     * Its checkpoint stays incomplete, so the import can be resumed.
+     */
+    private void stop(Import anImport, String error) {
+        anImport.permits.acquireUninterruptibly(properties.getConcurrency());
+        anImport.permits.release(properties.getConcurrency());
+        synchronized (anImport) {
+            anImport.error = error;
+        }
+        writeCheckpointQuietly(anImport);
+        synchronized (anImport) {
+            anImport.running = false;
+        }
+    }
+
+    /**
+     * Writes the checkpoint of an import; the previous one is replaced atomically.
+     */
+    private void writeCheckpoint(Import anImport) throws IOException {
+        synchronized (anImport.checkpointLock) {
+            Properties checkpoint = new Properties();
+            synchronized (anImport) {
+                checkpoint.setProperty("importId", anImport.id);
+                checkpoint.setProperty("bucket", anImport.bucket);
+                checkpoint.setProperty("prefix", anImport.prefix);
+                checkpoint.setProperty("completed", String.valueOf(anImport.completed));
+                checkpoint.setProperty("imported", String.valueOf(anImport.imported));
+                checkpoint.setProperty("skipped", String.valueOf(anImport.skipped));
+                checkpoint.setProperty("failed", String.valueOf(anImport.failed));
+                if (anImport.checkpoint != null) {
+                    checkpoint.setProperty("startAfter", anImport.checkpoint);
+                }
+                if (anImport.error != null) {
+                    checkpoint.setProperty("error", anImport.error);
+                }
+                int index = 0;
+                for (String key : anImport.failedKeys) {
+                    checkpoint.setProperty(FAILED_KEY_PROPERTY + index++, key);
+                }
+            }
+            Path directory = directory();
+            Files.createDirectories(directory);
+            Path path = directory.resolve(anImport.id + CHECKPOINT_SUFFIX);
+            Path partial = directory.resolve(anImport.id + CHECKPOINT_SUFFIX + PARTIAL_SUFFIX);
+            try (OutputStream out = Files.newOutputStream(partial)) {
+                checkpoint.store(out, "S3 import checkpoint");
+            }
+            Files.move(partial, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (anImport) {
+                anImport.lastCheckpointWrite = System.nanoTime();
+            }
+        }
+    }
+
+    private void writeCheckpointQuietly(Import anImport) {
+        try {
+            writeCheckpoint(anImport);
+        } catch (IOException e) {
+            log.warn("Unable to write the checkpoint of import {}: {}", anImport.id, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads an import back from its checkpoint, as not running.
+     */
+    private Optional<Import> readCheckpoint(String importId) throws IOException {
+        Path path = directory().resolve(importId + CHECKPOINT_SUFFIX);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        Properties checkpoint = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            checkpoint.load(in);
+        }
+        Import anImport = new Import(importId, checkpoint.getProperty("bucket"), checkpoint.getProperty("prefix"),
+                properties.getConcurrency());
+        anImport.running = false;
+        anImport.completed = Boolean.parseBoolean(checkpoint.getProperty("completed"));
+        anImport.imported = Long.parseLong(checkpoint.getProperty("imported"));
+        anImport.skipped = Long.parseLong(checkpoint.getProperty("skipped"));
+        anImport.failed = Long.parseLong(checkpoint.getProperty("failed"));
+        anImport.checkpoint = checkpoint.getProperty("startAfter");
+        anImport.error = checkpoint.getProperty("error");
+        for (int index = 0; checkpoint.containsKey(FAILED_KEY_PROPERTY + index); index++) {
+            anImport.failedKeys.add(checkpoint.getProperty(FAILED_KEY_PROPERTY + index));
+        }
+        return Optional.of(anImport);
+    }
+
+    /**
+     * Returns the format name of the image whose leading bytes are given, or null if
+     * no image reader recognizes them.
+     */
+    private static String imageFormat(byte[] header) {
+        try (ImageInputStream iis = new MemoryCacheImageInputStream(new ByteArrayInputStream(header))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            return readers.hasNext() ? readers.next().getFormatName().toLowerCase(Locale.ROOT) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Derives the content type from the detected format; stored objects often carry a
+     * generic one.
+     */
+    private static String contentType(String format) {
+        return MediaTypeFactory.getMediaType("image." + format)
+                .map(MediaType::toString)
+                .orElse("image/" + format);
+    }
+
+    private Path directory() {
+        return Paths.get(properties.getDirectory());
+    }
+
+}
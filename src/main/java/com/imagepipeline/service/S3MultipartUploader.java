@@ -0,0 +1,318 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.AwsProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Streams large objects to S3 with a multipart upload.
+ * Parts are uploaded in parallel, at most {@code multipartConcurrency} at a time,
+ * and a failed part is retried on its own without resending the rest of the object.
+ * Parts of a file are memory-mapped slices sent in place; parts of a plain stream
+ * are buffered, which bounds memory to the concurrency times the part size.
+ * Uploads are asynchronous: the next part starts when one completes, so no thread
+ * waits on the parts in flight.
+ */
+@Service
+@Slf4j
+public class S3MultipartUploader {
+
+    /**
+     * Minimum part size accepted by S3 for all but the last part.
+     */
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+
+    private final S3AsyncClient s3Client;
+    private final AwsProperties awsProperties;
+
+    /**
+     * Constructs the S3MultipartUploader.
+     *
+     * @param s3Client      the AWS S3 client.
+     * @param awsProperties configuration properties for AWS.
+     */
+    public S3MultipartUploader(S3AsyncClient s3Client, AwsProperties awsProperties) {
+        this.s3Client = s3Client;
+        this.awsProperties = awsProperties;
+    }
+
+    /**
+     * Uploads a file to S3 as a multipart upload.
+     *
+     * @param key         the object key.
+     * @param contentType the content type of the object.
+     * @param path        the file to upload.
+     * @param size        the object size in bytes.
+     * @return a future completed once the upload is complete; it fails with an IOException
+     * if reading the file fails or a part exhausts its retries.
+     */
+    public CompletableFuture<Void> upload(String key, String contentType, Path path, long size) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return upload(key, contentType, size, (offset, length) -> {
+            ByteBuffer slice = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            return () -> AsyncRequestBody.fromByteBufferUnsafe(slice.duplicate());
+        }).whenComplete((ignored, error) -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close {}: {}", path, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Uploads the stream to S3 as a multipart upload.
+     * The stream is read part by part as earlier parts complete, which may happen on an SDK
+     * completion thread; it should therefore be a local stream, such as a file or memory.
+     *
+     * @param key         the object key.
+     * @param contentType the content type of the object.
+     * @param in          the object bytes; the stream is not closed.
+     * @param size        the object size in bytes.
+     * @return a future completed once the upload is complete; it fails with an IOException
+     * if reading the source fails or a part exhausts its retries.
+     */
+    public CompletableFuture<Void> upload(String key, String contentType, InputStream in, long size) {
+        // Parts are requested in order, so the stream is simply read sequentially.
+        return upload(key, contentType, size, (offset, length) -> {
+            byte[] buffer = in.readNBytes(length);
+            if (buffer.length != length) {
+                throw new IOException("Unexpected end of stream after " + (offset + buffer.length)
+                        + " of " + size + " bytes");
+            }
+            return () -> AsyncRequestBody.fromBytesUnsafe(buffer);
+        });
+    }
+
+    private CompletableFuture<Void> upload(String key, String contentType, long size, PartSource source) {
+        AwsProperties.S3 s3 = awsProperties.getS3();
+        long partSize = Math.max(MIN_PART_SIZE, s3.getPartSize().toBytes());
+        int concurrency = Math.max(1, s3.getMultipartConcurrency());
+
+        return s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(s3.getBucket())
+                        .key(key)
+                        .contentType(contentType)
+                        .build())
+                .thenCompose(created -> {
+                    String uploadId = created.uploadId();
+                    MultipartUpload upload = new MultipartUpload(key, uploadId, size, partSize, source);
+                    upload.start(concurrency);
+                    return upload.done
+                            .thenCompose(parts -> s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                                            .bucket(s3.getBucket())
+                                            .key(key)
+                                            .uploadId(uploadId)
+                                            .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                                            .build())
+                                    .thenAccept(completed -> log.info("Multipart upload of {} completed in {} parts",
+                                            key, parts.size())))
+                            .exceptionallyCompose(error -> abort(key, uploadId)
+                                    .thenCompose(ignored -> CompletableFuture.failedFuture(failure(key, error))));
+                });
+    }
+
+    /**
+     * Uploads a single part, retrying with exponential backoff.
+     *
+     * @param key        the object key.
+     * @param uploadId   the multipart upload id.
+     * @param partNumber the 1-based part number.
+     * @param body       provides the part bytes, once per attempt.
+     * @param length     the part length in bytes.
+     * @param attempt    the attempt number, starting at 1.
+     * @return a future completing with the completed part.
+     */
+    private CompletableFuture<CompletedPart> uploadPart(String key, String uploadId, int partNumber,
+                                                        Supplier<AsyncRequestBody> body, int length, int attempt) {
+        int maxAttempts = Math.max(1, awsProperties.getS3().getPartMaxAttempts());
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(awsProperties.getS3().getBucket())
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) length)
+                .build();
+        // The body re-reads the same bytes on every attempt without copying them.
+        return s3Client.uploadPart(request, body.get())
+                .thenApply(response -> CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build())
+                .exceptionallyCompose(error -> {
+                    Throwable cause = unwrap(error);
+                    if (attempt >= maxAttempts) {
+                        log.error("Part {} of {} failed after {} attempts: {}", partNumber, key, attempt,
+                                cause.getMessage());
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    log.warn("Part {} of {} failed (attempt {}), retrying: {}", partNumber, key, attempt,
+                            cause.getMessage());
+                    return CompletableFuture.runAsync(() -> {
+                            }, CompletableFuture.delayedExecutor(RETRY_BACKOFF_MILLIS << (attempt - 1),
+                                    TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> uploadPart(key, uploadId, partNumber, body, length, attempt + 1));
+                });
+    }
+
+    private CompletableFuture<Void> abort(String key, String uploadId) {
+        return s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(awsProperties.getS3().getBucket())
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        log.warn("Failed to abort multipart upload {} of {}: {}", uploadId, key, error.getMessage());
+                    }
+                    return null;
+                });
+    }
+
+    private static IOException failure(String key, Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof IOException e) {
+            return e;
+        }
+        return new IOException("Multipart upload of " + key + " failed: " + cause.getMessage(), cause);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Supplies the bytes of one part; called in part order.
+     */
+    @FunctionalInterface
+    private interface PartSource {
+
+        Supplier<AsyncRequestBody> read(long offset, int length) throws IOException;
+
+    }
+
+    /**
+     * The parts of one multipart upload. A new part starts whenever one completes, so at
+     * most the given number of parts are in flight; no new part starts after a failure.
+     */
+    private final class MultipartUpload {
+
+        private final String key;
+        private final String uploadId;
+        private final long size;
+        private final long partSize;
+        private final PartSource source;
+        private final CompletableFuture<List<CompletedPart>> done = new CompletableFuture<>();
+
+        // Guarded by this.
+        private final List<CompletedPart> completed = new ArrayList<>();
+        private long nextOffset;
+        private int nextPartNumber = 1;
+        private int inFlight;
+        private Throwable failure;
+
+        private MultipartUpload(String key, String uploadId, long size, long partSize, PartSource source) {
+            this.key = key;
+            this.uploadId = uploadId;
+            this.size = size;
+            this.partSize = partSize;
+            this.source = source;
+        }
+
+        private void start(int concurrency) {
+            for (int i = 0; i < concurrency; i++) {
+                startNext();
+            }
+            synchronized (this) {
+                // Covers an empty object, for which no part was started.
+                settle();
+            }
+        }
+
+        private void startNext() {
+            int partNumber;
+            int length;
+            Supplier<AsyncRequestBody> body;
+            synchronized (this) {
+                if (failure != null || nextOffset >= size) {
+                    return;
+                }
+                length = (int) Math.min(partSize, size - nextOffset);
+                try {
+                    body = source.read(nextOffset, length);
+                } catch (IOException e) {
+                    failure = e;
+                    settle();
+                    return;
+                }
+                nextOffset += length;
+                partNumber = nextPartNumber++;
+                inFlight++;
+            }
+            uploadPart(key, uploadId, partNumber, body, length, 1).whenComplete((part, error) -> {
+                synchronized (this) {
+                    inFlight--;
+                    if (error != null) {
+                        if (failure == null) {
+                            failure = unwrap(error);
+                        }
+                    } else {
+                        completed.add(part);
+                    }
+                    if (settle()) {
+                        return;
+                    }
+                }
+                startNext();
+            });
+        }
+
+        /**
+         * Completes the upload once no part is in flight and none is left to start. Callers hold the lock.
+         *
+         * @return true if the upload is settled.
+         */
+        private boolean settle() {
+            if (inFlight > 0) {
+                return false;
+            }
+            if (failure != null) {
+                done.completeExceptionally(failure);
+                return true;
+            }
+            if (nextOffset >= size) {
+                done.complete(completed.stream().sorted(Comparator.comparing(CompletedPart::partNumber)).toList());
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -1,15 +1,18 @@
 package com.imagepipeline.service;
 
 import com.imagepipeline.config.AwsProperties;
+import com.imagepipeline.image.SpooledFile;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service responsible for uploading image files to Amazon S3.
@@ -18,47 +21,101 @@ import java.util.UUID;
 @Slf4j
 public class S3StorageService {
 
-    private final S3Client s3Client;
+    private final S3AsyncClient s3Client;
 
     private final AwsProperties awsProperties;
 
+    private final S3MultipartUploader multipartUploader;
+
     /**
      * Constructs a S3StorageService with an AWS S3 client and AWS properties.
      *
-     * @param s3Client       the AWS S3 client.
-     * @param awsProperties  the injected AWS properties.
+     * @param s3Client          the AWS S3 client.
+     * @param awsProperties     the injected AWS properties.
+     * @param multipartUploader uploader used for objects above the multipart threshold.
      */
-    public S3StorageService(S3Client s3Client, AwsProperties awsProperties) {
+    public S3StorageService(S3AsyncClient s3Client, AwsProperties awsProperties, S3MultipartUploader multipartUploader) {
         this.s3Client = s3Client;
         this.awsProperties = awsProperties;
+        this.multipartUploader = multipartUploader;
     }
 
     /**
      * Uploads the provided image file to Amazon S3.
+     * Files at or above the configured multipart threshold are streamed as a
+     * multipart upload; smaller files use a single PUT. Spooled files are read
+     * straight from disk through file channels.
      *
      * @param file the image file to upload.
-     * @return the public URL of the uploaded image.
-     * @throws IOException if an error occurs during file upload.
+     * @return a future completing with the public URL of the uploaded image.
      */
-    public String uploadToS3(MultipartFile file) throws IOException {
+    public CompletableFuture<String> uploadToS3(MultipartFile file) {
         // Generate a unique filename.
-        String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
+        return uploadToS3(UUID.randomUUID().toString(), file);
+    }
+
+    /**
+     * Uploads the provided image file to Amazon S3 under a key derived from its image id,
+     * so that a content-addressed image id yields a content-addressed key.
+     *
+     * @param imageId the image identifier, used as the key prefix.
+     * @param file    the image file to upload.
+     * @return a future completing with the public URL of the uploaded image.
+     */
+    public CompletableFuture<String> uploadToS3(String imageId, MultipartFile file) {
+        String fileName = imageId + "_" + file.getOriginalFilename();
 
-        // Build the PutObjectRequest with the desired parameters.
-        PutObjectRequest request = PutObjectRequest.builder()
-                .bucket(awsProperties.getS3().getBucket())
-                .key(fileName)
-                .contentType(file.getContentType())
-                .build();
+        CompletableFuture<?> upload;
+        boolean multipart = file.getSize() >= awsProperties.getS3().getMultipartThreshold().toBytes();
+        try {
+            if (multipart && file instanceof SpooledFile spooledFile) {
+                upload = multipartUploader.upload(fileName, file.getContentType(), spooledFile.getPath(), file.getSize());
+            } else if (multipart) {
+                InputStream in = file.getInputStream();
+                upload = multipartUploader.upload(fileName, file.getContentType(), in, file.getSize())
+                        .whenComplete((ignored, error) -> closeQuietly(in));
+            } else {
+                // Build the PutObjectRequest with the desired parameters.
+                PutObjectRequest request = PutObjectRequest.builder()
+                        .bucket(awsProperties.getS3().getBucket())
+                        .key(fileName)
+                        .contentType(file.getContentType())
+                        .build();
 
-        // Upload the file to S3.
-        s3Client.putObject(request, RequestBody.fromInputStream(file.getInputStream(), file.getSize()));
+                // Upload the file to S3; files below the threshold are small enough to hold in memory.
+                AsyncRequestBody body = file instanceof SpooledFile spooledFile
+                        ? AsyncRequestBody.fromFile(spooledFile.getPath())
+                        : AsyncRequestBody.fromBytes(file.getBytes());
+                upload = s3Client.putObject(request, body);
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        // Construct and return the public URL of the image (assumes bucket is public).
-        String imageUrl = "https://s3.amazonaws.com/" + awsProperties.getS3().getBucket() + "/" + fileName;
-        log.info("Image uploaded to S3: {}", imageUrl);
+        return upload.thenApply(ignored -> {
+            String imageUrl = getObjectUrl(awsProperties.getS3().getBucket(), fileName);
+            log.info("Image uploaded to S3: {}", imageUrl);
+            return imageUrl;
+        });
+    }
+
+    /**
+     * Returns the public URL of an S3 object (assumes bucket is public).
+     *
+     * @param bucket the bucket name.
+     * @param key    the object key.
+     * @return the object URL.
+     */
+    public static String getObjectUrl(String bucket, String key) {
+        return "https://s3.amazonaws.com/" + bucket + "/" + key;
+    }
 
-        return imageUrl;
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.warn("Failed to close upload stream: {}", e.getMessage());
+        }
     }
 
 }
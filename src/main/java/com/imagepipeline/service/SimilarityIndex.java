@@ -0,0 +1,166 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.image.PerceptualHash;
+import com.imagepipeline.model.SimilarImage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory multi-index hash table of perceptual hashes, for Hamming-distance search.
+ * Each 64-bit hash is split into four 16-bit chunks, and every chunk indexes the image
+ * in a table of its own. Two hashes within distance {@code d} differ by at most
+ * {@code d / 4} bits in at least one chunk, so a search only probes, per chunk, the
+ * values within that smaller distance and checks the full hash of the few images found.
+ * A search therefore touches a small fraction of the index, whatever its size.
+ * Lookups are lock-free; updates are serialized.
+ */
+@Service
+public class SimilarityIndex {
+
+    private static final int CHUNKS = 4;
+    private static final int CHUNK_BITS = PerceptualHash.BITS / CHUNKS;
+
+    /**
+     * Every chunk-sized bit mask, ordered by the number of bits set.
+     */
+    private static final int[] MASKS = IntStream.range(0, 1 << CHUNK_BITS).boxed()
+            .sorted(Comparator.comparingInt(Integer::bitCount))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+    /**
+     * {@code MASKS_WITHIN[k]} is the number of masks with at most {@code k} bits set.
+     */
+    private static final int[] MASKS_WITHIN = IntStream.rangeClosed(0, CHUNK_BITS)
+            .map(k -> (int) IntStream.of(MASKS).filter(mask -> Integer.bitCount(mask) <= k).count())
+            .toArray();
+
+    private final Map<String, Long> hashes = new ConcurrentHashMap<>();
+    private final List<Map<Integer, Set<String>>> tables = new ArrayList<>();
+
+    /**
+     * Constructs the SimilarityIndex.
+     *
+     * @param meterRegistry the registry for index metrics.
+     */
+    public SimilarityIndex(MeterRegistry meterRegistry) {
+        for (int i = 0; i < CHUNKS; i++) {
+            tables.add(new ConcurrentHashMap<>());
+        }
+        Gauge.builder("pipeline.similarity.images", hashes, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds an image to the index, replacing its previous hash if any.
+     *
+     * @param imageId        the image identifier.
+     * @param perceptualHash the perceptual hash of the image.
+     */
+    public synchronized void add(String imageId, long perceptualHash) {
+        Long previous = hashes.put(imageId, perceptualHash);
+        if (previous != null && previous == perceptualHash) {
+            return;
+        }
+        for (int i = 0; i < CHUNKS; i++) {
+            if (previous != null) {
+                Set<String> bucket = tables.get(i).get(chunk(previous, i));
+                if (bucket != null) {
+                    bucket.remove(imageId);
+                }
+            }
+            tables.get(i).computeIfAbsent(chunk(perceptualHash, i), key -> ConcurrentHashMap.newKeySet()).add(imageId);
+        }
+    }
+
+    /**
+     * Returns the perceptual hash of an indexed image.
+     *
+     * @param imageId the image identifier.
+     * @return the hash, or empty if the image is not indexed.
+     */
+    public Optional<Long> getHash(String imageId) {
+        return Optional.ofNullable(hashes.get(imageId));
+    }
+
+    /**
+     * Finds the images that look like an indexed image.
+     *
+     * @param imageId     the image identifier.
+     * @param maxDistance the maximum Hamming distance of a match.
+     * @param limit       the maximum number of matches.
+     * @return the matches, closest first and without the image itself; empty if the image is not indexed.
+     */
+    public Optional<List<SimilarImage>> findSimilar(String imageId, int maxDistance, int limit) {
+        return getHash(imageId).map(hash -> search(hash, maxDistance, limit, imageId));
+    }
+
+    /**
+     * Finds the indexed images whose hash is within a Hamming distance of the given hash.
+     *
+     * @param perceptualHash the hash to search for.
+     * @param maxDistance    the maximum Hamming distance of a match.
+     * @param limit          the maximum number of matches.
+     * @return the matches, closest first.
+     */
+    public List<SimilarImage> search(long perceptualHash, int maxDistance, int limit) {
+        return search(perceptualHash, maxDistance, limit, null);
+    }
+
+    private List<SimilarImage> search(long perceptualHash, int maxDistance, int limit, String excludedImageId) {
+        int distance = Math.clamp(maxDistance, 0, PerceptualHash.BITS);
+        int probes = MASKS_WITHIN[Math.min(distance / CHUNKS, CHUNK_BITS)];
+        Set<String> candidates = new HashSet<>();
+        for (int i = 0; i < CHUNKS; i++) {
+            Map<Integer, Set<String>> table = tables.get(i);
+            int value = chunk(perceptualHash, i);
+            for (int probe = 0; probe < probes; probe++) {
+                Set<String> bucket = table.get(value ^ MASKS[probe]);
+                if (bucket != null) {
+                    candidates.addAll(bucket);
+                }
+            }
+        }
+
+        List<SimilarImage> matches = new ArrayList<>();
+        candidates.remove(excludedImageId);
+        for (String candidate : candidates) {
+            Long hash = hashes.get(candidate);
+            if (hash != null) {
+                int candidateDistance = PerceptualHash.distance(perceptualHash, hash);
+                if (candidateDistance <= distance) {
+                    matches.add(new SimilarImage(candidate, candidateDistance));
+                }
+            }
+        }
+        return matches.stream()
+                .sorted(Comparator.comparingInt(SimilarImage::getDistance).thenComparing(SimilarImage::getImageId))
+                .limit(Math.max(0, limit))
+                .toList();
+    }
+
+    /**
+     * Returns the number of indexed images.
+     *
+     * @return the image count.
+     */
+    public int size() {
+        return hashes.size();
+    }
+
+    private static int chunk(long hash, int index) {
+        return (int) (hash >>> (index * CHUNK_BITS)) & ((1 << CHUNK_BITS) - 1);
+    }
+
+}
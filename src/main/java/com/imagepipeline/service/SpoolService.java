@@ -0,0 +1,269 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.SpooledFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Durable on-disk spool owned by the pipeline.
+ * Every upload is copied once into the spool directory before its job starts,
+ * together with a small manifest. Pipeline stages read the spooled copy, so
+ * they no longer depend on the request's temporary file. The spool entry is
+ * removed when the job ends; entries still present at startup belong to jobs
+ * that were interrupted by a crash and are handed back for processing.
+ */
+@Service
+@Slf4j
+public class SpoolService {
+
+    private static final String DATA_SUFFIX = ".bin";
+    private static final String MANIFEST_SUFFIX = ".properties";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+
+    private final PipelineProperties.Spool properties;
+
+    /**
+     * Constructs the SpoolService.
+     *
+     * @param pipelineProperties configuration properties for the pipeline.
+     */
+    public SpoolService(PipelineProperties pipelineProperties) {
+        this.properties = pipelineProperties.getSpool();
+    }
+
+    /**
+     * A job found in the spool at startup.
+     *
+     * @param jobId the job identifier.
+     * @param file  the spooled upload.
+     */
+    public record SpooledJob(String jobId, SpooledFile file) {
+    }
+
+    /**
+     * Copies an upload into the spool and hashes it on the way.
+     *
+     * @param jobId the job identifier.
+     * @param file  the uploaded image file.
+     * @return the spooled file.
+     * @throws IOException if the spool cannot be written.
+     */
+    public SpooledFile spool(String jobId, MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return spool(jobId, in, file.getOriginalFilename(), file.getContentType());
+        }
+    }
+
+    /**
+     * Copies a stream into the spool and hashes it on the way.
+     * The bytes pass once through a direct buffer, which feeds both the SHA-256 digest
+     * and the spool file, so hashing costs no second read and the bytes are never
+     * buffered on the heap. The manifest is written last, which makes the entry
+     * visible to crash recovery only once its data is complete.
+     *
+     * @param jobId            the job identifier.
+     * @param in               the upload bytes, read to the end; the stream is not closed.
+     * @param originalFilename the original filename of the upload, or null.
+     * @param contentType      the content type of the upload, or null.
+     * @return the spooled file.
+     * @throws IOException if the stream cannot be read or the spool cannot be written.
+     */
+    public SpooledFile spool(String jobId, InputStream in, String originalFilename, String contentType)
+            throws IOException {
+        Path directory = directory();
+        Files.createDirectories(directory);
+        SpooledFile file = write(in, directory.resolve(jobId + DATA_SUFFIX), originalFilename, contentType);
+        long size = file.getSize();
+        String contentHash = file.getContentHash();
+
+        Properties manifest = new Properties();
+        manifest.setProperty("jobId", jobId);
+        manifest.setProperty("size", String.valueOf(size));
+        manifest.setProperty("sha256", contentHash);
+        if (originalFilename != null) {
+            manifest.setProperty("originalFilename", originalFilename);
+        }
+        if (contentType != null) {
+            manifest.setProperty("contentType", contentType);
+        }
+        Path manifestPath = directory.resolve(jobId + MANIFEST_SUFFIX);
+        Path manifestPartial = directory.resolve(jobId + MANIFEST_SUFFIX + PARTIAL_SUFFIX);
+        try (OutputStream out = Files.newOutputStream(manifestPartial)) {
+            manifest.store(out, "Spooled upload");
+        }
+        Files.move(manifestPartial, manifestPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        log.debug("Spooled upload {} ({} bytes, sha256 {}) to {}", jobId, size, contentHash, file.getPath());
+        return file;
+    }
+
+    /**
+     * Writes a stream to a file and hashes it on the way, in the single pass that
+     * {@link #spool(String, InputStream, String, String)} uses. The bytes go to a partial
+     * file first, which is moved into place once complete and removed on failure.
+     * Other components that keep local copies of images write them with this too.
+     *
+     * @param in               the bytes, read to the end; the stream is not closed.
+     * @param data             the file to write; its directory must exist.
+     * @param originalFilename the original filename of the image, or null.
+     * @param contentType      the content type of the image, or null.
+     * @return the written file with its size and SHA-256.
+     * @throws IOException if the stream cannot be read or the file cannot be written.
+     */
+    public SpooledFile write(InputStream in, Path data, String originalFilename, String contentType)
+            throws IOException {
+        Path partial = data.resolveSibling(data.getFileName() + PARTIAL_SUFFIX);
+        MessageDigest digest = newDigest();
+        long size;
+        try (FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            size = copy(in instanceof FileInputStream fileIn ? fileIn.getChannel() : Channels.newChannel(in),
+                    out, digest);
+            if (properties.isFsync()) {
+                out.force(false);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, data, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new SpooledFile(data, originalFilename, contentType, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Removes a job's spool entry once the job has ended.
+     *
+     * @param jobId the job identifier.
+     */
+    public void complete(String jobId) {
+        Path directory = directory();
+        // Manifest first: without it the data file is never recovered.
+        deleteQuietly(directory.resolve(jobId + MANIFEST_SUFFIX));
+        deleteQuietly(directory.resolve(jobId + DATA_SUFFIX));
+    }
+
+    /**
+     * Lists the jobs left in the spool by a previous run, oldest first.
+     * Leftovers of interrupted writes are removed.
+     *
+     * @return the unfinished jobs.
+     * @throws IOException if the spool directory cannot be read.
+     */
+    public List<SpooledJob> recover() throws IOException {
+        Path directory = directory();
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Path> manifests = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.endsWith(PARTIAL_SUFFIX)) {
+                    deleteQuietly(entry);
+                } else if (name.endsWith(MANIFEST_SUFFIX)) {
+                    manifests.add(entry);
+                }
+            }
+        }
+        manifests.sort(Comparator.comparing(SpoolService::lastModified));
+
+        List<SpooledJob> jobs = new ArrayList<>();
+        for (Path manifestPath : manifests) {
+            Properties manifest = new Properties();
+            try (InputStream in = Files.newInputStream(manifestPath)) {
+                manifest.load(in);
+            }
+            String jobId = manifest.getProperty("jobId");
+            Path data = directory.resolve(jobId + DATA_SUFFIX);
+            if (!Files.exists(data)) {
+                log.warn("Spool manifest {} has no data file, discarding", manifestPath);
+                deleteQuietly(manifestPath);
+                continue;
+            }
+            SpooledFile file = new SpooledFile(data, manifest.getProperty("originalFilename"),
+                    manifest.getProperty("contentType"), Long.parseLong(manifest.getProperty("size")),
+                    manifest.getProperty("sha256"));
+            jobs.add(new SpooledJob(jobId, file));
+        }
+        return jobs;
+    }
+
+    private Path directory() {
+        return Paths.get(properties.getDirectory());
+    }
+
+    /**
+     * Copies a channel to the end of a file, feeding every byte to the digest as well.
+     *
+     * @return the number of bytes copied.
+     */
+    private static long copy(ReadableByteChannel source, FileChannel target, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+        long size = 0;
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            digest.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                size += target.write(buffer);
+            }
+            buffer.clear();
+        }
+        return size;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Deletes a file, logging rather than throwing on failure.
+     *
+     * @param path the file.
+     */
+    static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+}
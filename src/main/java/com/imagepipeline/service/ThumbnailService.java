@@ -1,89 +1,204 @@
 package com.imagepipeline.service;
 
 import com.imagepipeline.config.AwsProperties;
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.ChunkedImageOutputStream;
+import com.imagepipeline.image.FitMode;
+import com.imagepipeline.image.ImageContext;
+import com.imagepipeline.image.ImageHeader;
+import com.imagepipeline.image.ImageScaler;
+import com.imagepipeline.image.OutputFormat;
+import com.imagepipeline.image.RasterPool;
+import com.imagepipeline.image.ResampleFilter;
+import com.imagepipeline.model.RenditionInfo;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
-import javax.imageio.ImageIO;
-import java.awt.Graphics2D;
-import java.awt.Image;
-import java.awt.RenderingHints;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * Service for generating thumbnails and uploading them to S3.
+ * Service for generating the configured renditions of an image and uploading them to S3.
  */
 @Service
 @Slf4j
 public class ThumbnailService {
 
-    static final int THUMBNAIL_WIDTH = 150;
-    static final int THUMBNAIL_HEIGHT = 150;
-
-    private final S3Client s3Client;
+    private final S3AsyncClient s3Client;
     private final AwsProperties awsProperties;
+    private final PipelineProperties pipelineProperties;
+    private final EncodingService encodingService;
+    private final RasterPool rasterPool;
+    private final ForkJoinPool resizePool;
 
     /**
      * Constructs the ThumbnailService.
      *
-     * @param s3Client      the AWS S3 client.
-     * @param awsProperties configuration properties for AWS.
+     * @param s3Client           the AWS S3 client.
+     * @param awsProperties      configuration properties for AWS.
+     * @param pipelineProperties configuration properties for the pipeline.
+     * @param encodingService    the encoder for renditions.
+     * @param rasterPool         the pool the resized images are borrowed from.
+     * @param resizePool         the pool that resizes large images in row bands.
      */
-    public ThumbnailService(S3Client s3Client, AwsProperties awsProperties) {
+    public ThumbnailService(S3AsyncClient s3Client, AwsProperties awsProperties,
+                            PipelineProperties pipelineProperties, EncodingService encodingService,
+                            RasterPool rasterPool, @Qualifier("resizePool") ForkJoinPool resizePool) {
         this.s3Client = s3Client;
         this.awsProperties = awsProperties;
+        this.pipelineProperties = pipelineProperties;
+        this.encodingService = encodingService;
+        this.rasterPool = rasterPool;
+        this.resizePool = resizePool;
     }
 
     /**
-     * Generates and uploads a thumbnail.
+     * Returns the S3 key of a stored rendition.
      *
-     * @param file the image file.
-     * @throws IOException if an error occurs.
+     * @param imageId the image identifier.
+     * @param name    the rendition name.
+     * @param format  the format renditions are stored in.
+     * @return the S3 key.
      */
-    public void generateThumbnail(MultipartFile file) throws IOException {
-        BufferedImage originalImage = ImageIO.read(file.getInputStream());
-        BufferedImage thumbnail = resizeImage(originalImage, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+    public static String renditionKey(String imageId, String name, OutputFormat format) {
+        return "renditions/" + imageId + "/" + name + "." + format.getExtension();
+    }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(thumbnail, "jpg", baos);
-        byte[] thumbnailBytes = baos.toByteArray();
+    /**
+     * Generates all configured renditions and uploads them to S3 in parallel.
+     * The image is decoded once, close to the largest rendition, and every smaller
+     * rendition is scaled from the previous, larger one rather than from the original.
+     *
+     * @param context the per-job image context.
+     * @return a future completing with the stored renditions, largest first.
+     * @throws IOException if the image cannot be decoded or encoded.
+     */
+    public CompletableFuture<List<RenditionInfo>> generateRenditions(ImageContext context) throws IOException {
+        ImageHeader header = context.getHeader();
+        int sourceWidth = header.getWidth();
+        int sourceHeight = header.getHeight();
 
-        String thumbnailKey = "thumbnails/" + UUID.randomUUID().toString() + "_thumbnail_" + file.getOriginalFilename();
+        // Order renditions by the full-frame source size each one needs, largest first.
+        List<PipelineProperties.Rendition> chain = pipelineProperties.getRenditions().stream()
+                .sorted(Comparator.comparingInt((PipelineProperties.Rendition rendition) ->
+                        requiredSourceSize(sourceWidth, sourceHeight, rendition).width).reversed())
+                .toList();
+        if (chain.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        Dimension decodeSize = requiredSourceSize(sourceWidth, sourceHeight, chain.get(0));
+        BufferedImage previous = context.getImage(decodeSize.width, decodeSize.height);
+
+        OutputFormat format = encodingService.getRenditionFormat();
+        List<CompletableFuture<RenditionInfo>> uploads = new ArrayList<>();
+        // Resized images are borrowed from the raster pool. The decoded image belongs to
+        // the context; a resized one is returned once it is encoded and, for full-frame
+        // renditions, once the next step has been scaled from it.
+        BufferedImage pooledPrevious = null;
+        BufferedImage image = null;
+        try {
+            for (PipelineProperties.Rendition rendition : chain) {
+                Dimension size = ImageScaler.targetSize(sourceWidth, sourceHeight, rendition.getLongEdge(),
+                        rendition.getMode());
+                image = resizeImage(previous, size.width, size.height, rendition.getMode(), rendition.getFilter());
+                ChunkedImageOutputStream encoded = encodingService.encode(image, format, rendition.getTargetSize());
+                if (rendition.getMode() == FitMode.FIT) {
+                    // Only full-frame renditions can feed the next step of the chain.
+                    rasterPool.release(pooledPrevious);
+                    previous = image;
+                    pooledPrevious = image;
+                } else {
+                    rasterPool.release(image);
+                }
+                image = null;
+                String key = renditionKey(context.getImageId(), rendition.getName(), format);
+                RenditionInfo info = new RenditionInfo(rendition.getName(), key, size.width, size.height,
+                        encoded.length());
+                uploads.add(upload(info, encoded, format));
+            }
+        } finally {
+            rasterPool.release(image);
+            rasterPool.release(pooledPrevious);
+        }
+
+        return CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> uploads.stream().map(CompletableFuture::join).toList());
+    }
 
+    /**
+     * Computes the full-frame size a rendition has to be scaled from.
+     *
+     * @param sourceWidth  the original width.
+     * @param sourceHeight the original height.
+     * @param rendition    the rendition.
+     * @return the smallest full-frame size the rendition can be produced from.
+     */
+    private Dimension requiredSourceSize(int sourceWidth, int sourceHeight, PipelineProperties.Rendition rendition) {
+        if (rendition.getMode() == FitMode.CROP) {
+            // The short edge must still cover the crop square.
+            double scale = Math.min(1.0, (double) rendition.getLongEdge() / Math.min(sourceWidth, sourceHeight));
+            return new Dimension((int) Math.ceil(sourceWidth * scale), (int) Math.ceil(sourceHeight * scale));
+        }
+        return ImageScaler.targetSize(sourceWidth, sourceHeight, rendition.getLongEdge(), FitMode.FIT);
+    }
+
+    /**
+     * Uploads an encoded rendition to S3.
+     *
+     * @param info    the rendition description.
+     * @param encoded the encoded rendition, released once the upload succeeds.
+     * @param format  the format of the encoded rendition.
+     * @return a future completing with the rendition description.
+     */
+    private CompletableFuture<RenditionInfo> upload(RenditionInfo info, ChunkedImageOutputStream encoded,
+                                                    OutputFormat format) {
         PutObjectRequest request = PutObjectRequest.builder()
                 .bucket(awsProperties.getS3().getBucket())
-                .key(thumbnailKey)
-                .contentType("image/jpeg")
+                .key(info.getKey())
+                .contentType(format.getContentType())
                 .build();
 
-        s3Client.putObject(request, RequestBody.fromBytes(thumbnailBytes));
-        String thumbnailUrl = "https://s3.amazonaws.com/" + awsProperties.getS3().getBucket() + "/" + thumbnailKey;
-        log.info("Thumbnail uploaded to S3: {}", thumbnailUrl);
+        // The body reads the pooled buffers in place. They go back to the pool only after a
+        // successful upload: a failed or timed-out one may still have an attempt reading them,
+        // so their buffers are left to the garbage collector instead.
+        AsyncRequestBody body = AsyncRequestBody.fromRemainingByteBuffersUnsafe(encoded.buffers());
+        return s3Client.putObject(request, body).thenApply(response -> {
+            encoded.release();
+            String renditionUrl = "https://s3.amazonaws.com/" + awsProperties.getS3().getBucket() + "/" + info.getKey();
+            log.info("Rendition {} ({}x{}) uploaded to S3: {}", info.getName(), info.getWidth(), info.getHeight(),
+                    renditionUrl);
+            return info;
+        });
     }
 
     /**
-     * Resizes an image.
+     * Resizes an image in a single resample step, into a pooled raster. Large sources
+     * are resized in parallel row bands, except with the Java2D bicubic filter.
      *
-     * @param originalImage the original image.
+     * @param originalImage the source image, ideally already close to the target size.
      * @param targetWidth   the width.
      * @param targetHeight  the height.
-     * @return the resized BufferedImage.
+     * @param mode          whether to fit the whole image or center-crop it.
+     * @param filter        the resampling filter.
+     * @return the resized BufferedImage, to be returned to the raster pool.
      */
-    private BufferedImage resizeImage(BufferedImage originalImage, int targetWidth, int targetHeight) {
-        Image scaledImage = originalImage.getScaledInstance(targetWidth, targetHeight, Image.SCALE_SMOOTH);
-        BufferedImage resizedImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = resizedImage.createGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.drawImage(scaledImage, 0, 0, null);
-        g2d.dispose();
-        return resizedImage;
+    private BufferedImage resizeImage(BufferedImage originalImage, int targetWidth, int targetHeight, FitMode mode,
+                                      ResampleFilter filter) {
+        long sourcePixels = (long) originalImage.getWidth() * originalImage.getHeight();
+        boolean split = sourcePixels >= pipelineProperties.getExecutors().getResize().getMinPixels();
+        return ImageScaler.resample(originalImage, targetWidth, targetHeight, mode, filter, rasterPool,
+                split ? resizePool : null);
     }
 
 }
@@ -0,0 +1,197 @@
+package com.imagepipeline.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collects entries and hands them to {@link #send} in batches.
+ * A batch is sent as soon as it is full, or once its oldest entry has waited for the
+ * linger time. Each entry has its own future, which the subclass completes once the
+ * entry has been accepted by the remote service. Sends are asynchronous, so no thread
+ * waits on a batch in flight or on the backoff before a retry.
+ *
+ * @param <T> the entry type.
+ */
+@Slf4j
+abstract class WriteBehindBatcher<T> {
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+    private final Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this.
+    private List<Pending<T>> pending = new ArrayList<>();
+    private ScheduledFuture<?> lingerFlush;
+
+    /**
+     * Constructs the batcher.
+     *
+     * @param name the name of the batcher threads.
+     */
+    protected WriteBehindBatcher(String name) {
+        this.name = name;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name(name).daemon().factory());
+    }
+
+    /**
+     * Returns the maximum number of entries per batch.
+     *
+     * @return the batch size.
+     */
+    protected abstract int batchSize();
+
+    /**
+     * Returns how long an entry may wait for its batch to fill.
+     *
+     * @return the linger time.
+     */
+    protected abstract Duration linger();
+
+    /**
+     * Sends one batch and completes the future of every entry in it. Must not block.
+     *
+     * @param batch the entries of the batch; at most {@link #batchSize()}.
+     * @return a future completed once every entry of the batch has been settled.
+     */
+    protected abstract CompletableFuture<Void> send(List<Pending<T>> batch);
+
+    /**
+     * Queues an entry.
+     *
+     * @param entry the entry.
+     * @return a future completed by {@link #send} once the entry has been sent.
+     */
+    protected CompletableFuture<Void> enqueue(T entry) {
+        Pending<T> write = new Pending<>(entry, new CompletableFuture<>());
+        List<Pending<T>> full = null;
+        synchronized (this) {
+            pending.add(write);
+            if (pending.size() >= batchSize()) {
+                full = drain();
+            } else if (lingerFlush == null) {
+                lingerFlush = scheduler.schedule(this::flush, linger().toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return write.future();
+    }
+
+    /**
+     * Sends all pending entries now, regardless of batch size or linger time.
+     */
+    public void flush() {
+        List<Pending<T>> batch;
+        synchronized (this) {
+            batch = drain();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    /**
+     * Takes the pending entries and cancels the linger timer. Callers hold the lock.
+     *
+     * @return the drained entries.
+     */
+    private List<Pending<T>> drain() {
+        List<Pending<T>> batch = pending;
+        pending = new ArrayList<>();
+        if (lingerFlush != null) {
+            lingerFlush.cancel(false);
+            lingerFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Pending<T>> entries) {
+        int size = batchSize();
+        for (int from = 0; from < entries.size(); from += size) {
+            List<Pending<T>> batch = entries.subList(from, Math.min(entries.size(), from + size));
+            CompletableFuture<Void> sent;
+            try {
+                sent = send(batch);
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            // A batch that failed as a whole fails every entry still waiting.
+            CompletableFuture<Void> settled = sent.whenComplete((ignored, error) -> {
+                if (error != null) {
+                    log.error("Batch of {} failed: {}", name, unwrap(error).getMessage());
+                    batch.forEach(entry -> entry.future().completeExceptionally(unwrap(error)));
+                }
+            });
+            inFlight.add(settled);
+            settled.whenComplete((ignored, error) -> inFlight.remove(settled));
+        }
+    }
+
+    /**
+     * Returns a future that completes after an exponentially growing, randomly jittered delay,
+     * which spreads out retries of batches that were throttled at the same moment.
+     *
+     * @param baseMillis the backoff after the first attempt.
+     * @param attempt    the attempt that just failed, starting at 1.
+     * @return a future completed after the backoff.
+     */
+    protected static CompletableFuture<Void> backoff(long baseMillis, int attempt) {
+        long bound = baseMillis << Math.min(attempt - 1, 10);
+        long delay = ThreadLocalRandom.current().nextLong(bound / 2, bound + 1);
+        return CompletableFuture.runAsync(() -> {
+        }, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Strips the CompletionException wrapper added by future composition.
+     *
+     * @param error the error.
+     * @return the underlying cause.
+     */
+    protected static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Sends the entries still pending and stops the batcher threads.
+     */
+    public void shutdown() {
+        flush();
+        scheduler.shutdown();
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Batches of {} still in flight at shutdown", name);
+        } catch (ExecutionException e) {
+            // Already logged and reported to the callers.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An entry waiting to be sent, with the future of its caller.
+     *
+     * @param entry  the entry.
+     * @param future completed once the entry has been sent.
+     * @param <T>    the entry type.
+     */
+    protected record Pending<T>(T entry, CompletableFuture<Void> future) {
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.imagepipeline.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncConfigTest {
+
+    /**
+     * Tests that a task that does not fit in the CPU queue fails its stage instead of
+     * running on the thread that submitted it.
+     */
+    @Test
+    void testSaturatedCpuExecutorFailsTheStage() throws InterruptedException {
+        PipelineProperties properties = new PipelineProperties();
+        properties.getExecutors().getCpu().setThreads(1);
+        properties.getExecutors().getCpu().setQueueCapacity(1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ThreadPoolExecutor executor = new AsyncConfig().cpuExecutor(properties, registry);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Runnable blocking = () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            executor.execute(blocking);
+            executor.execute(blocking);
+
+            // One running, one queued: the stage is rejected and never runs here.
+            AtomicReference<Thread> ranOn = new AtomicReference<>();
+            CompletableFuture<Void> stage = CompletableFuture.completedFuture(null)
+                    .thenAcceptAsync(ignored -> ranOn.set(Thread.currentThread()), executor);
+            CompletionException thrown = assertThrows(CompletionException.class, stage::join);
+            assertInstanceOf(RejectedExecutionException.class, thrown.getCause());
+            assertNull(ranOn.get());
+            assertEquals(1.0, registry.get("executor.rejected").tag("name", "pipeline.cpu").functionCounter().count());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+}
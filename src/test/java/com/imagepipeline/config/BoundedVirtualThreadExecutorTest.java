@@ -0,0 +1,48 @@
+package com.imagepipeline.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundedVirtualThreadExecutorTest {
+
+    @Test
+    void testCapsConcurrencyAndRejectsWhenQueueIsFull() throws InterruptedException {
+        BoundedVirtualThreadExecutor executor = new BoundedVirtualThreadExecutor("test-io", 2, 1);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+        Runnable blocking = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished.countDown();
+        };
+
+        executor.execute(blocking);
+        executor.execute(blocking);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(blocking);
+
+        // Two running, one queued: the next task does not fit.
+        assertEquals(2, executor.getActiveCount());
+        assertEquals(1, executor.getQueueSize());
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(blocking));
+        assertEquals(1, executor.getRejectedCount());
+
+        // Releasing the running tasks drains the queue.
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+}
@@ -1,42 +1,84 @@
 package com.imagepipeline.controller;
 
-import com.imagepipeline.service.ImageProcessingService;
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.FitMode;
+import com.imagepipeline.image.OutputFormat;
+import com.imagepipeline.model.BatchProgress;
+import com.imagepipeline.model.S3ImportStatus;
+import com.imagepipeline.model.SimilarImage;
+import com.imagepipeline.service.AdmissionControlService;
+import com.imagepipeline.service.BatchUploadService;
 import com.imagepipeline.service.ProgressTrackerService;
+import com.imagepipeline.service.RenditionCache;
+import com.imagepipeline.service.ResizeService;
+import com.imagepipeline.service.S3ImportService;
+import com.imagepipeline.service.SimilarityIndex;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(ImageUploadController.class)
+@Import(PipelineProperties.class)
 class ImageUploadControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
     @MockitoBean
-    private ImageProcessingService imageProcessingService;
+    private AdmissionControlService admissionControlService;
 
     @MockitoBean
     private ProgressTrackerService progressTrackerService;
 
+    @MockitoBean
+    private SimilarityIndex similarityIndex;
+
+    @MockitoBean
+    private RenditionCache renditionCache;
+
+    @MockitoBean
+    private ResizeService resizeService;
+
+    @MockitoBean
+    private BatchUploadService batchUploadService;
+
+    @MockitoBean
+    private S3ImportService s3ImportService;
+
     /**
      * Tests the image upload endpoint.
      * Sends a multipart request and expects a JSON response with a jobId.
@@ -47,9 +89,9 @@ class ImageUploadControllerTest {
         byte[] content = "Test File Content".getBytes();
         MockMultipartFile file = new MockMultipartFile("file", "test.txt", MediaType.TEXT_PLAIN_VALUE, content);
 
-        // Stub the asynchronous processing method to immediately complete.
-        when(imageProcessingService.processImage(anyString(), any()))
-                .thenReturn(CompletableFuture.completedFuture(null));
+        // Stub the admission layer to start the job immediately.
+        when(admissionControlService.submit(anyString(), any()))
+                .thenReturn(AdmissionControlService.Admission.ADMITTED);
 
         // Perform a multipart request to /api/images/upload.
         mockMvc.perform(multipart("/api/images/upload")
@@ -57,8 +99,170 @@ class ImageUploadControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.jobId", not(emptyString())));
 
-        // Verify that processImage was called exactly once.
-        verify(imageProcessingService, times(1)).processImage(anyString(), any());
+        // Verify that the upload was submitted exactly once.
+        verify(admissionControlService, times(1)).submit(anyString(), any());
+    }
+
+    /**
+     * Tests that a saturated pipeline rejects the upload with Retry-After.
+     */
+    @Test
+    void testUploadRejectedWhenSaturated() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.jpg", MediaType.IMAGE_JPEG_VALUE, new byte[16]);
+        when(admissionControlService.submit(anyString(), any()))
+                .thenReturn(AdmissionControlService.Admission.REJECTED);
+
+        mockMvc.perform(multipart("/api/images/upload")
+                        .file(file))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+    }
+
+    /**
+     * Tests that a spooled upload is acknowledged with 202 Accepted.
+     */
+    @Test
+    void testUploadQueuedWhenSpooled() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "test.jpg", MediaType.IMAGE_JPEG_VALUE, new byte[16]);
+        when(admissionControlService.submit(anyString(), any()))
+                .thenReturn(AdmissionControlService.Admission.QUEUED);
+
+        mockMvc.perform(multipart("/api/images/upload")
+                        .file(file))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status", is("queued")))
+                .andExpect(jsonPath("$.jobId", not(emptyString())));
+    }
+
+    /**
+     * Tests that every file part of a multipart batch is handed to the batch service
+     * in order, and form fields are skipped.
+     */
+    @Test
+    void testUploadBatchMultipart() throws Exception {
+        BatchUploadService.Batch batch = mock(BatchUploadService.Batch.class);
+        when(batch.getId()).thenReturn("batch-1");
+        when(batchUploadService.start()).thenReturn(batch);
+        when(batchUploadService.getProgress("batch-1"))
+                .thenReturn(Optional.of(new BatchProgress("batch-1", false, 2, 2, 0, 0, 0, 0)));
+        String body = String.join("\r\n",
+                "--XYZ",
+                "Content-Disposition: form-data; name=\"note\"",
+                "",
+                "nightly",
+                "--XYZ",
+                "Content-Disposition: form-data; name=\"file\"; filename=\"a.jpg\"",
+                "Content-Type: image/jpeg",
+                "",
+                "aaaa",
+                "--XYZ",
+                "Content-Disposition: form-data; name=\"file\"; filename=\"b.png\"",
+                "Content-Type: image/png",
+                "",
+                "bbbb",
+                "--XYZ--",
+                "");
+
+        mockMvc.perform(post("/api/images/batch")
+                        .contentType("multipart/form-data; boundary=XYZ")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.batchId", is("batch-1")))
+                .andExpect(jsonPath("$.files", is(2)));
+
+        InOrder inOrder = inOrder(batchUploadService);
+        inOrder.verify(batchUploadService).submit(eq(batch), any(), eq("a.jpg"), eq("image/jpeg"));
+        inOrder.verify(batchUploadService).submit(eq(batch), any(), eq("b.png"), eq("image/png"));
+        inOrder.verify(batchUploadService).finish(batch);
+    }
+
+    /**
+     * Tests that an archive body is imported by format and other bodies are refused.
+     */
+    @Test
+    void testUploadBatchArchive() throws Exception {
+        BatchUploadService.Batch batch = mock(BatchUploadService.Batch.class);
+        when(batch.getId()).thenReturn("batch-2");
+        when(batchUploadService.start()).thenReturn(batch);
+        when(batchUploadService.getProgress("batch-2"))
+                .thenReturn(Optional.of(new BatchProgress("batch-2", false, 0, 0, 0, 0, 0, 0)));
+
+        mockMvc.perform(post("/api/images/batch")
+                        .contentType("application/x-tar")
+                        .content(new byte[1024]))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.batchId", is("batch-2")));
+        verify(batchUploadService).importArchive(eq(batch), any(), eq(BatchUploadService.ArchiveFormat.TAR));
+
+        mockMvc.perform(post("/api/images/batch")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("not an archive"))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
+    /**
+     * Tests that a batch body over the request size limit ends with 413 and the progress so far.
+     */
+    @Test
+    void testUploadBatchTooLarge() throws Exception {
+        BatchUploadService.Batch batch = mock(BatchUploadService.Batch.class);
+        when(batch.getId()).thenReturn("batch-4");
+        when(batchUploadService.start()).thenReturn(batch);
+        when(batchUploadService.getProgress("batch-4"))
+                .thenReturn(Optional.of(new BatchProgress("batch-4", false, 1, 1, 0, 0, 0, 0)));
+        doThrow(new FileUploadSizeException("too large", 2048, 1024))
+                .when(batchUploadService).importArchive(eq(batch), any(), eq(BatchUploadService.ArchiveFormat.TAR));
+
+        mockMvc.perform(post("/api/images/batch")
+                        .contentType("application/x-tar")
+                        .content(new byte[2048]))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.files", is(1)));
+        verify(batchUploadService).finish(batch);
+    }
+
+    /**
+     * Tests that batch progress is reported, and is 404 for an unknown batch.
+     */
+    @Test
+    void testGetBatchProgress() throws Exception {
+        when(batchUploadService.getProgress("batch-3"))
+                .thenReturn(Optional.of(new BatchProgress("batch-3", true, 10, 8, 2, 0, 5, 70)));
+        when(batchUploadService.getProgress("missing")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/images/batch/batch-3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.receiving", is(true)))
+                .andExpect(jsonPath("$.rejected", is(2)))
+                .andExpect(jsonPath("$.progress", is(70)));
+        mockMvc.perform(get("/api/images/batch/missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Tests starting, resuming and querying an import from S3.
+     */
+    @Test
+    void testS3Import() throws Exception {
+        S3ImportStatus status = new S3ImportStatus("import-1", "photos", "2024/", true, false, 5, 3, 1, 0,
+                List.of(), "2024/c.jpg", null);
+        when(s3ImportService.start("photos", "2024/")).thenReturn(status);
+        when(s3ImportService.resume("import-1")).thenReturn(Optional.of(status));
+        when(s3ImportService.resume("missing")).thenReturn(Optional.empty());
+        when(s3ImportService.getStatus("import-1")).thenReturn(Optional.of(status));
+
+        mockMvc.perform(post("/api/images/import").param("bucket", "photos").param("prefix", "2024/"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.importId", is("import-1")))
+                .andExpect(jsonPath("$.running", is(true)));
+        mockMvc.perform(post("/api/images/import/import-1/resume"))
+                .andExpect(status().isAccepted());
+        mockMvc.perform(post("/api/images/import/missing/resume"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/images/import/import-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(3)))
+                .andExpect(jsonPath("$.checkpoint", is("2024/c.jpg")));
     }
 
     /**
@@ -92,4 +296,90 @@ class ImageUploadControllerTest {
                 .andExpect(jsonPath("$.['job-456']", is(50)));
     }
 
+    /**
+     * Tests that the similar images of an indexed image are returned, and unknown images give 404.
+     */
+    @Test
+    void testGetSimilarImages() throws Exception {
+        when(similarityIndex.findSimilar(eq("image-1"), eq(6), eq(20)))
+                .thenReturn(Optional.of(List.of(new SimilarImage("image-2", 3))));
+        when(similarityIndex.findSimilar(eq("unknown"), anyInt(), anyInt())).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/images/image-1/similar").param("maxDistance", "6"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].imageId", is("image-2")))
+                .andExpect(jsonPath("$[0].distance", is(3)));
+        mockMvc.perform(get("/api/images/unknown/similar"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Tests that a rendition is served with its ETag, and that a matching If-None-Match gives 304.
+     */
+    @Test
+    void testGetRendition() throws Exception {
+        byte[] bytes = {1, 2, 3};
+        when(renditionCache.get("renditions/image-1/small.jpg")).thenReturn(CompletableFuture.completedFuture(
+                new RenditionCache.Rendition(bytes, MediaType.IMAGE_JPEG_VALUE, "\"abc\"")));
+
+        MvcResult served = mockMvc.perform(get("/api/images/image-1/renditions/small"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(served))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(content().contentType(MediaType.IMAGE_JPEG))
+                .andExpect(content().bytes(bytes));
+
+        MvcResult notModified = mockMvc.perform(get("/api/images/image-1/renditions/small")
+                        .header("If-None-Match", "\"xyz\", W/\"abc\""))
+                .andReturn();
+        mockMvc.perform(asyncDispatch(notModified))
+                .andExpect(status().isNotModified());
+
+        // Only configured renditions are looked up.
+        MvcResult unknown = mockMvc.perform(get("/api/images/image-1/renditions/original")).andReturn();
+        mockMvc.perform(asyncDispatch(unknown))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Tests that an allowed size is resized on demand and a disallowed one is rejected.
+     */
+    @Test
+    void testGetResizedImage() throws Exception {
+        ResizeService.Variant variant = new ResizeService.Variant("image-1", 256, 0, FitMode.FIT, OutputFormat.JPEG);
+        when(resizeService.variant(eq("image-1"), eq(256), isNull(), isNull(), isNull())).thenReturn(variant);
+        when(resizeService.variant(eq("image-1"), eq(257), isNull(), isNull(), isNull()))
+                .thenThrow(new IllegalArgumentException("Size 257 is not allowed"));
+        when(resizeService.resize(variant)).thenReturn(CompletableFuture.completedFuture(
+                new RenditionCache.Rendition(new byte[]{7}, MediaType.IMAGE_JPEG_VALUE, "\"v\"")));
+
+        MvcResult resized = mockMvc.perform(get("/api/images/image-1").param("w", "256")).andReturn();
+        mockMvc.perform(asyncDispatch(resized))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v\""))
+                .andExpect(content().bytes(new byte[]{7}));
+
+        MvcResult rejected = mockMvc.perform(get("/api/images/image-1").param("w", "257")).andReturn();
+        mockMvc.perform(asyncDispatch(rejected))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Tests that a render the pipeline has no room for is answered with 503 and a retry hint.
+     */
+    @Test
+    void testGetResizedImageWhenPipelineIsSaturated() throws Exception {
+        ResizeService.Variant variant = new ResizeService.Variant("image-1", 256, 0, FitMode.FIT, OutputFormat.JPEG);
+        when(resizeService.variant(eq("image-1"), eq(256), isNull(), isNull(), isNull())).thenReturn(variant);
+        when(resizeService.resize(variant)).thenReturn(CompletableFuture.failedFuture(
+                new RejectedExecutionException("CPU executor saturated")));
+
+        MvcResult result = mockMvc.perform(get("/api/images/image-1").param("w", "256")).andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+    }
+
 }
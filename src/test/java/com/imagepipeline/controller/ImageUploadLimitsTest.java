@@ -0,0 +1,68 @@
+package com.imagepipeline.controller;
+
+import com.imagepipeline.service.AdmissionControlService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Uploads through the servlet container, which enforces the multipart limits that MockMvc skips.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ImageUploadLimitsTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @MockitoBean
+    private AdmissionControlService admissionControlService;
+
+    /**
+     * Tests that an upload above the servlet default of 1MB is accepted.
+     */
+    @Test
+    void testUploadAboveDefaultLimit() throws IOException {
+        byte[] content = new byte[2 * 1024 * 1024];
+        // The container deletes the part once the request ends, so its size is read while it is submitted.
+        AtomicLong received = new AtomicLong();
+        when(admissionControlService.submit(anyString(), any())).thenAnswer(invocation -> {
+            received.set(invocation.getArgument(1, MultipartFile.class).getSize());
+            return AdmissionControlService.Admission.ADMITTED;
+        });
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "large.jpg";
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/api/images/upload",
+                new HttpEntity<>(body, headers), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(content.length, received.get());
+    }
+
+}
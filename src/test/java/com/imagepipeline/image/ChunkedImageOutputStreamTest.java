@@ -0,0 +1,47 @@
+package com.imagepipeline.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChunkedImageOutputStreamTest {
+
+    @Test
+    void testWritesSpanChunksAndSeekBack() throws IOException {
+        ByteBufferPool pool = new ByteBufferPool(4, 8);
+        ChunkedImageOutputStream output = new ChunkedImageOutputStream(pool);
+        output.write(new byte[]{1, 2, 3, 4, 5, 6});
+        output.write(7);
+        // Writers patch earlier bytes, such as lengths, after the fact.
+        output.seek(3);
+        output.write(new byte[]{40, 50});
+        output.seek(output.length());
+        output.writeShort(0x0809);
+
+        assertEquals(9, output.length());
+        assertArrayEquals(new byte[]{1, 2, 3, 40, 50, 6, 7, 8, 9}, output.toByteArray());
+        ByteBuffer[] buffers = output.buffers();
+        assertEquals(3, buffers.length);
+        assertEquals(4, buffers[0].remaining());
+        assertEquals(1, buffers[2].remaining());
+
+        output.seek(2);
+        byte[] read = new byte[3];
+        output.readFully(read);
+        assertArrayEquals(new byte[]{3, 40, 50}, read);
+
+        // Released buffers are reused by the next stream.
+        output.release();
+        assertEquals(12, pool.getRetainedBytes());
+        ChunkedImageOutputStream next = new ChunkedImageOutputStream(pool);
+        next.write(new byte[]{1, 2, 3, 4, 5});
+        assertEquals(2, pool.getHits());
+        assertEquals(3, pool.getMisses());
+        next.release();
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.imagepipeline.image;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageContextTest {
+
+    @Test
+    void testImageIsDecodedOnceAndShared() throws IOException {
+        try (ImageContext context = new ImageContext(pngFile(120, 80))) {
+            BufferedImage first = context.getImage();
+            BufferedImage second = context.getImage();
+
+            // Both stages must observe the very same raster.
+            assertSame(first, second);
+            assertEquals(120, context.getWidth());
+            assertEquals(80, context.getHeight());
+            assertEquals("png", context.getFormat());
+        }
+    }
+
+    @Test
+    void testSubsampledDecodeStaysAboveOversampledTarget() throws IOException {
+        try (ImageContext context = new ImageContext(pngFile(1200, 900))) {
+            BufferedImage small = context.getImage(150, 150);
+
+            // 900 / (150 * 2) = 3, so every third row and column is kept.
+            assertEquals(400, small.getWidth());
+            assertEquals(300, small.getHeight());
+            // A coarser request reuses the finer subsampled image.
+            assertSame(small, context.getImage(50, 50));
+        }
+    }
+
+    @Test
+    void testDecodeOverBudgetIsStreamed() throws IOException {
+        try (ImageContext context = new ImageContext("image-1", pngFile(1200, 900), 1, 64 * 1024)) {
+            BufferedImage streamed = context.getImage(160, 160);
+
+            // Subsampling by 2 gives 600x450; streaming scales that down to twice the target.
+            assertEquals(427, streamed.getWidth());
+            assertEquals(320, streamed.getHeight());
+            // A smaller request reuses the larger streamed image.
+            assertSame(streamed, context.getImage(100, 100));
+        }
+    }
+
+    @Test
+    void testSmallRequestReusesStreamedImage() throws IOException {
+        MockMultipartFile png = pngFile(1200, 900);
+        AtomicInteger reads = new AtomicInteger();
+        MockMultipartFile file = new MockMultipartFile("file", "test.png", "image/png", png.getBytes()) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                reads.incrementAndGet();
+                return super.getInputStream();
+            }
+        };
+        try (ImageContext context = new ImageContext("image-1", file, 1, 256 * 1024)) {
+            BufferedImage streamed = context.getImage(160, 160);
+            assertEquals(427, streamed.getWidth());
+            int readsAfterStream = reads.get();
+
+            // Subsampling by 7 would fit the budget, but the streamed image is already large enough.
+            assertSame(streamed, context.getImage(64, 64));
+            assertEquals(readsAfterStream, reads.get());
+        }
+    }
+
+    @Test
+    void testClosedContextRejectsAccess() throws IOException {
+        ImageContext context = new ImageContext(pngFile(10, 10));
+        context.getImage();
+        context.close();
+
+        assertThrows(IOException.class, context::getImage);
+    }
+
+    @Test
+    void testReleasedImagesKeepHeader() throws IOException {
+        try (ImageContext context = new ImageContext(pngFile(40, 30))) {
+            context.getImage();
+            context.releaseImages();
+
+            assertEquals(40, context.getWidth());
+            assertThrows(IOException.class, context::getImage);
+            assertThrows(IOException.class, () -> context.getImage(10, 10));
+        }
+    }
+
+    @Test
+    void testUnsupportedContentFails() {
+        MockMultipartFile file = new MockMultipartFile("file", "test.txt", "text/plain", "Hello World".getBytes());
+        try (ImageContext context = new ImageContext(file)) {
+            assertThrows(IOException.class, context::getImage);
+        }
+    }
+
+    private static MockMultipartFile pngFile(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", baos);
+        return new MockMultipartFile("file", "test.png", "image/png", baos.toByteArray());
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.imagepipeline.image;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ImageEncoderTest {
+
+    private static final BufferedImage IMAGE = picture(400, 300);
+
+    @Test
+    void testJpegQualityAndSettings() throws IOException {
+        JpegEncoder encoder = new JpegEncoder(true, true, ChromaSubsampling.YUV444);
+        byte[] low = encoder.encode(IMAGE, 0.3f);
+        byte[] high = encoder.encode(IMAGE, 0.9f);
+        assertTrue(low.length < high.length);
+
+        // Progressive frames start with SOF2 rather than SOF0.
+        assertTrue(containsMarker(high, 0xC2));
+        assertEquals(1, lumaSamplingFactor(high));
+        assertEquals(2, lumaSamplingFactor(new JpegEncoder(false, false, ChromaSubsampling.YUV420).encode(IMAGE, 0.9f)));
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(high));
+        assertEquals(400, decoded.getWidth());
+        assertEquals(300, decoded.getHeight());
+    }
+
+    @Test
+    void testEncodeWithinTargetSize() throws IOException {
+        JpegEncoder encoder = new JpegEncoder(false, true, ChromaSubsampling.YUV420);
+        int atMin = encoder.encode(IMAGE, 0.2f).length;
+        int atMax = encoder.encode(IMAGE, 0.95f).length;
+        int target = (atMin + atMax) / 2;
+
+        ChunkedImageOutputStream output = new ChunkedImageOutputStream(new ByteBufferPool(8192, 64));
+        encoder.encodeWithin(IMAGE, target, 0.2f, 0.95f, output);
+        assertTrue(output.length() <= target);
+        assertTrue(output.length() > atMin);
+        assertEquals(300, ImageIO.read(new ByteArrayInputStream(output.toByteArray())).getHeight());
+        // A budget that is already met keeps the maximum quality.
+        encoder.encodeWithin(IMAGE, atMax, 0.2f, 0.95f, output);
+        assertEquals(atMax, output.length());
+        // An unreachable budget falls back to the minimum quality.
+        encoder.encodeWithin(IMAGE, 100, 0.2f, 0.95f, output);
+        assertEquals(atMin, output.length());
+        output.release();
+    }
+
+    @Test
+    void testWebpRoundTrip() throws IOException {
+        assumeTrue(WebpEncoder.isAvailable());
+        byte[] webp = new WebpEncoder(false).encode(IMAGE, 0.75f);
+        assertArrayEquals("RIFF".getBytes(StandardCharsets.US_ASCII), Arrays.copyOf(webp, 4));
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(webp));
+        assertEquals(400, decoded.getWidth());
+        assertEquals(300, decoded.getHeight());
+    }
+
+    private static boolean containsMarker(byte[] jpeg, int marker) {
+        for (int i = 0; i + 1 < jpeg.length; i++) {
+            if ((jpeg[i] & 0xff) == 0xff && (jpeg[i + 1] & 0xff) == marker) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int lumaSamplingFactor(byte[] jpeg) throws IOException {
+        ImageReader reader = ImageIO.getImageReadersByFormatName("jpeg").next();
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg))) {
+            reader.setInput(input);
+            Element tree = (Element) reader.getImageMetadata(0).getAsTree("javax_imageio_jpeg_image_1.0");
+            Element luma = (Element) tree.getElementsByTagName("componentSpec").item(0);
+            return Integer.parseInt(luma.getAttribute("HsamplingFactor"));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static BufferedImage picture(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        // Noise, so that the encoded size depends on the quality the way a photo's does.
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(48) - 24;
+                Color color = new Color(image.getRGB(x, y));
+                image.setRGB(x, y, new Color(clamp(color.getRed() + noise), clamp(color.getGreen() + noise),
+                        clamp(color.getBlue() + noise)).getRGB());
+            }
+        }
+        return image;
+    }
+
+    private static int clamp(int value) {
+        return Math.clamp(value, 0, 255);
+    }
+
+}
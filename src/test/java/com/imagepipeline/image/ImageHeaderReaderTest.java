@@ -0,0 +1,114 @@
+package com.imagepipeline.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageHeaderReaderTest {
+
+    @Test
+    void testReadsPngDimensionsAndFormat() throws IOException {
+        byte[] png = encode(new BufferedImage(320, 200, BufferedImage.TYPE_INT_RGB), "png");
+
+        ImageHeader header = ImageHeaderReader.read(new ByteArrayInputStream(png));
+
+        assertEquals(320, header.getWidth());
+        assertEquals(200, header.getHeight());
+        assertEquals("png", header.getFormat());
+        assertEquals(3, header.getBands());
+        assertEquals(1, header.getOrientation());
+        assertNull(header.getCaptureTime());
+        assertNull(header.getCameraModel());
+    }
+
+    @Test
+    void testReadsJpegExifFields() throws IOException {
+        byte[] jpeg = encode(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "jpg");
+        byte[] withExif = insertApp1(jpeg, exifPayload(6, "TestCam X100", "2024:05:01 10:15:30"));
+
+        ImageHeader header = ImageHeaderReader.read(new ByteArrayInputStream(withExif));
+
+        assertEquals(64, header.getWidth());
+        assertEquals(48, header.getHeight());
+        assertEquals("jpeg", header.getFormat());
+        assertEquals(3, header.getBands());
+        assertEquals(6, header.getOrientation());
+        assertEquals("TestCam X100", header.getCameraModel());
+        assertEquals("2024-05-01T10:15:30", header.getCaptureTime());
+    }
+
+    @Test
+    void testRejectsNonImageContent() {
+        ByteArrayInputStream in = new ByteArrayInputStream("Hello World".getBytes());
+        assertThrows(IOException.class, () -> ImageHeaderReader.read(in));
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(image, format, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Builds a little-endian EXIF payload with Model, Orientation and DateTimeOriginal.
+     */
+    private static byte[] exifPayload(int orientation, String model, String dateTimeOriginal) {
+        byte[] modelBytes = (model + "\0").getBytes(StandardCharsets.US_ASCII);
+        byte[] dateBytes = (dateTimeOriginal + "\0").getBytes(StandardCharsets.US_ASCII);
+        int ifd0 = 8;
+        int ifd0Size = 2 + 3 * 12 + 4;
+        int modelOffset = ifd0 + ifd0Size;
+        int exifIfd = modelOffset + modelBytes.length;
+        int exifIfdSize = 2 + 12 + 4;
+        int dateOffset = exifIfd + exifIfdSize;
+
+        ByteBuffer tiff = ByteBuffer.allocate(dateOffset + dateBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(ifd0);
+        tiff.putShort((short) 3);
+        tiff.putShort((short) 0x0110).putShort((short) 2).putInt(modelBytes.length).putInt(modelOffset);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        tiff.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(exifIfd);
+        tiff.putInt(0);
+        tiff.put(modelBytes);
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x9003).putShort((short) 2).putInt(dateBytes.length).putInt(dateOffset);
+        tiff.putInt(0);
+        tiff.put(dateBytes);
+
+        byte[] prefix = {'E', 'x', 'i', 'f', 0, 0};
+        byte[] payload = new byte[prefix.length + tiff.capacity()];
+        System.arraycopy(prefix, 0, payload, 0, prefix.length);
+        System.arraycopy(tiff.array(), 0, payload, prefix.length, tiff.capacity());
+        return payload;
+    }
+
+    /**
+     * Inserts an APP1 segment right after the APP0 (JFIF) segment of a JPEG.
+     */
+    private static byte[] insertApp1(byte[] jpeg, byte[] payload) {
+        int app0Length = ((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF);
+        int insertAt = 4 + app0Length;
+        int segmentLength = payload.length + 2;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, insertAt);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(segmentLength >> 8);
+        out.write(segmentLength & 0xFF);
+        out.write(payload, 0, payload.length);
+        out.write(jpeg, insertAt, jpeg.length - insertAt);
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.imagepipeline.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerceptualHashTest {
+
+    @Test
+    void testResizedAndReencodedCopyIsNear() throws IOException {
+        BufferedImage original = picture(800, 600, false);
+        BufferedImage copy = jpegRoundTrip(ImageScaler.resample(original, 320, 240));
+
+        long hash = PerceptualHash.dHash(original);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(copy)) <= 4);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.dHash(picture(800, 600, true))) > 20);
+    }
+
+    private static BufferedImage picture(int width, int height, boolean mirrored) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(mirrored ? width : 0, 0, Color.BLACK, mirrored ? 0 : width, height, Color.WHITE));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.RED);
+        g.fillOval(mirrored ? width / 2 : width / 8, height / 4, width / 3, height / 2);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage jpegRoundTrip(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.imagepipeline.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RasterPoolTest {
+
+    @Test
+    void testNearbySizesShareAClassAndReuseArrays() {
+        RasterPool pool = new RasterPool(64L << 20);
+        BufferedImage first = pool.acquire(1000, 750);
+        assertEquals(BufferedImage.TYPE_INT_RGB, first.getType());
+        assertEquals(1000, first.getWidth());
+        assertEquals(750, first.getHeight());
+        int[] array = ((DataBufferInt) first.getRaster().getDataBuffer()).getData();
+        pool.release(first);
+        assertEquals((long) array.length * Integer.BYTES, pool.getRetainedBytes());
+
+        // 990x760 falls in the same size class as 1000x750.
+        BufferedImage second = pool.acquire(990, 760);
+        assertSame(array, ((DataBufferInt) second.getRaster().getDataBuffer()).getData());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    void testRetentionIsBounded() {
+        RasterPool pool = new RasterPool(4L << 20);
+        BufferedImage first = pool.acquire(1024, 1024);
+        BufferedImage second = pool.acquire(1024, 1024);
+        pool.release(first);
+        pool.release(second);
+        assertEquals(4L << 20, pool.getRetainedBytes());
+        pool.acquire(1024, 1024);
+        assertNotSame(second, pool.acquire(1024, 1024));
+        assertEquals(1, pool.getHits());
+    }
+
+    @Test
+    void testClassSizes() {
+        assertEquals(4096, RasterPool.classSize(4096));
+        assertEquals(5120, RasterPool.classSize(4097));
+        assertEquals(5120, RasterPool.classSize(5120));
+        assertEquals(786_432, RasterPool.classSize(750_000));
+    }
+
+    @Test
+    void testReusedRasterIsClearedUnderTransparentSource() {
+        RasterPool pool = new RasterPool(64L << 20);
+        BufferedImage dirty = pool.acquire(200, 200);
+        dirty.getRaster().setDataElements(0, 0, 200, 200, filled(200 * 200, 0xffffff));
+        pool.release(dirty);
+
+        BufferedImage transparent = new BufferedImage(400, 400, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage resized = ImageScaler.resample(transparent, 200, 200, FitMode.FIT, pool);
+        assertEquals(1, pool.getHits());
+        assertEquals(0xff000000, resized.getRGB(100, 100));
+    }
+
+    private static int[] filled(int length, int value) {
+        int[] pixels = new int[length];
+        Arrays.fill(pixels, value);
+        return pixels;
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.imagepipeline.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.imagepipeline.image.TestImages.picture;
+import static com.imagepipeline.image.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResamplerTest {
+
+    private static final BufferedImage SOURCE = picture(960, 720);
+
+    @Test
+    void testFiltersMatchJava2dBicubic() {
+        // Java2D at a 2x reduction, which is what the subsampled decode hands it.
+        BufferedImage reference = ImageScaler.resample(SOURCE, 480, 360);
+        for (ResampleFilter filter : new ResampleFilter[]{
+                ResampleFilter.LANCZOS3, ResampleFilter.MITCHELL, ResampleFilter.AREA}) {
+            BufferedImage resized = ImageScaler.resample(SOURCE, 480, 360, FitMode.FIT, filter, null);
+            double psnr = psnr(reference, resized);
+            double ssim = ssim(reference, resized);
+            assertTrue(psnr > 30, filter + " PSNR " + psnr);
+            assertTrue(ssim > 0.95, filter + " SSIM " + ssim);
+        }
+    }
+
+    @Test
+    void testVectorAndScalarKernelsAgree() {
+        RowKernel preferred = RowKernel.preferred();
+        Rectangle region = new Rectangle(0, 0, SOURCE.getWidth(), SOURCE.getHeight());
+        // An odd width leaves a tail after the last full vector.
+        BufferedImage vector = Resampler.resample(SOURCE, region, 237, 178, ResampleFilter.LANCZOS3, null, null,
+                preferred);
+        BufferedImage scalar = Resampler.resample(SOURCE, region, 237, 178, ResampleFilter.LANCZOS3, null, null,
+                new ScalarRowKernel());
+        assertTrue(psnr(scalar, vector) > 50);
+    }
+
+    @Test
+    void testBandedOutputIsIdentical() {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            for (ResampleFilter filter : ResampleFilter.values()) {
+                for (FitMode mode : FitMode.values()) {
+                    BufferedImage sequential = ImageScaler.resample(SOURCE, 301, 227, mode, filter, null, null);
+                    BufferedImage banded = ImageScaler.resample(SOURCE, 301, 227, mode, filter, null, forkJoinPool);
+                    assertArrayEquals(pixels(sequential), pixels(banded), filter + " " + mode);
+                }
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    @Test
+    void testWorkingSetBandsAreIdentical() {
+        Rectangle region = new Rectangle(0, 0, SOURCE.getWidth(), SOURCE.getHeight());
+        RowKernel kernel = new ScalarRowKernel();
+        for (ResampleFilter filter : ResampleFilter.values()) {
+            BufferedImage whole = Resampler.resample(SOURCE, region, 301, 227, filter, null, null, kernel,
+                    Long.MAX_VALUE);
+            // A few dozen source rows per band; the bands overlap where the vertical filter reaches.
+            BufferedImage banded = Resampler.resample(SOURCE, region, 301, 227, filter, null, null, kernel,
+                    1L << 20);
+            assertArrayEquals(pixels(whole), pixels(banded), filter.toString());
+        }
+        // Upscaling bounds the output rows per band as well.
+        Rectangle corner = new Rectangle(0, 0, 120, 90);
+        assertArrayEquals(
+                pixels(Resampler.resample(SOURCE, corner, 480, 360, ResampleFilter.LANCZOS3, null, null, kernel,
+                        Long.MAX_VALUE)),
+                pixels(Resampler.resample(SOURCE, corner, 480, 360, ResampleFilter.LANCZOS3, null, null, kernel,
+                        64L << 10)));
+    }
+
+    @Test
+    void testCropAndFlatColour() {
+        BufferedImage flat = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = flat.createGraphics();
+        g.setColor(new Color(10, 200, 90));
+        g.fillRect(0, 0, 300, 200);
+        g.dispose();
+
+        BufferedImage square = ImageScaler.resample(flat, 64, 64, FitMode.CROP, ResampleFilter.MITCHELL, null);
+        assertEquals(64, square.getWidth());
+        assertEquals(64, square.getHeight());
+        // Normalized weights keep a flat colour flat, edges included.
+        assertEquals(new Color(10, 200, 90).getRGB(), square.getRGB(0, 0));
+        assertEquals(new Color(10, 200, 90).getRGB(), square.getRGB(63, 31));
+    }
+
+    private static double psnr(BufferedImage a, BufferedImage b) {
+        double squaredError = 0;
+        int samples = 0;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                int p = a.getRGB(x, y);
+                int q = b.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int d = ((p >> shift) & 0xff) - ((q >> shift) & 0xff);
+                    squaredError += d * d;
+                    samples++;
+                }
+            }
+        }
+        double mse = squaredError / samples;
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255 * 255 / mse);
+    }
+
+    /**
+     * Mean SSIM of the luminance over 8x8 windows.
+     */
+    private static double ssim(BufferedImage a, BufferedImage b) {
+        double c1 = Math.pow(0.01 * 255, 2);
+        double c2 = Math.pow(0.03 * 255, 2);
+        double total = 0;
+        int windows = 0;
+        for (int wy = 0; wy + 8 <= a.getHeight(); wy += 8) {
+            for (int wx = 0; wx + 8 <= a.getWidth(); wx += 8) {
+                double sa = 0;
+                double sb = 0;
+                double saa = 0;
+                double sbb = 0;
+                double sab = 0;
+                for (int y = wy; y < wy + 8; y++) {
+                    for (int x = wx; x < wx + 8; x++) {
+                        double la = luminance(a.getRGB(x, y));
+                        double lb = luminance(b.getRGB(x, y));
+                        sa += la;
+                        sb += lb;
+                        saa += la * la;
+                        sbb += lb * lb;
+                        sab += la * lb;
+                    }
+                }
+                double ma = sa / 64;
+                double mb = sb / 64;
+                double va = saa / 64 - ma * ma;
+                double vb = sbb / 64 - mb * mb;
+                double cov = sab / 64 - ma * mb;
+                total += (2 * ma * mb + c1) * (2 * cov + c2) / ((ma * ma + mb * mb + c1) * (va + vb + c2));
+                windows++;
+            }
+        }
+        return total / windows;
+    }
+
+    private static double luminance(int rgb) {
+        return 0.299 * ((rgb >> 16) & 0xff) + 0.587 * ((rgb >> 8) & 0xff) + 0.114 * (rgb & 0xff);
+    }
+
+}
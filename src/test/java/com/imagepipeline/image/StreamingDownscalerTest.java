@@ -0,0 +1,91 @@
+package com.imagepipeline.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static com.imagepipeline.image.TestImages.maxDifference;
+import static com.imagepipeline.image.TestImages.picture;
+import static com.imagepipeline.image.TestImages.pixels;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingDownscalerTest {
+
+    private static final BufferedImage SOURCE = picture(901, 677);
+
+    @Test
+    void testMatchesInMemoryResample() {
+        Rectangle region = new Rectangle(0, 0, SOURCE.getWidth(), SOURCE.getHeight());
+        for (ResampleFilter filter : ResampleFilter.values()) {
+            BufferedImage expected = Resampler.resample(SOURCE, region, 301, 226, filter, null, null);
+            BufferedImage streamed = stream(SOURCE, 64, 301, 226, filter);
+
+            // Same weights; only the order of float operations differs.
+            assertTrue(maxDifference(expected, streamed) <= 1, filter.name());
+        }
+    }
+
+    @Test
+    void testBandHeightDoesNotChangeOutput() {
+        int[] reference = pixels(stream(SOURCE, SOURCE.getHeight(), 257, 193, ResampleFilter.LANCZOS3));
+        for (int bandHeight : new int[]{1, 7, 100}) {
+            assertArrayEquals(reference, pixels(stream(SOURCE, bandHeight, 257, 193, ResampleFilter.LANCZOS3)),
+                    "band height " + bandHeight);
+        }
+    }
+
+    @Test
+    void testMissingRowsFail() {
+        StreamingDownscaler downscaler = new StreamingDownscaler(100, 100, 10, 10, ResampleFilter.AREA);
+        downscaler.accept(new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB));
+
+        assertThrows(IllegalStateException.class, downscaler::finish);
+        assertThrows(IllegalArgumentException.class,
+                () -> downscaler.accept(new BufferedImage(100, 51, BufferedImage.TYPE_INT_RGB)));
+    }
+
+    @Test
+    void testDecodeStreamingMatchesWholeDecode() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(SOURCE, "png", png);
+        for (int subsampling : new int[]{1, 2}) {
+            BufferedImage decoded = ImageDecoder.decode(new ByteArrayInputStream(png.toByteArray()), subsampling);
+            BufferedImage expected = Resampler.resample(decoded,
+                    new Rectangle(0, 0, decoded.getWidth(), decoded.getHeight()), 200, 150, ResampleFilter.AREA,
+                    null, null);
+
+            BufferedImage streamed;
+            try (MemoryCacheImageInputStream iis =
+                         new MemoryCacheImageInputStream(new ByteArrayInputStream(png.toByteArray()))) {
+                // Bands of about 40 decoded rows.
+                long bandBytes = 40L * Integer.BYTES * decoded.getWidth();
+                streamed = ImageDecoder.decodeStreaming(iis, subsampling, bandBytes, 200, 150, ResampleFilter.AREA);
+            }
+
+            assertEquals(200, streamed.getWidth());
+            assertEquals(150, streamed.getHeight());
+            assertTrue(maxDifference(expected, streamed) <= 1, "subsampling " + subsampling);
+        }
+    }
+
+    private static BufferedImage stream(BufferedImage source, int bandHeight, int targetWidth, int targetHeight,
+                                        ResampleFilter filter) {
+        StreamingDownscaler downscaler = new StreamingDownscaler(source.getWidth(), source.getHeight(),
+                targetWidth, targetHeight, filter);
+        for (int y = 0; y < source.getHeight(); y += bandHeight) {
+            downscaler.accept(source.getSubimage(0, y, source.getWidth(),
+                    Math.min(bandHeight, source.getHeight() - y)));
+        }
+        return downscaler.finish();
+    }
+
+}
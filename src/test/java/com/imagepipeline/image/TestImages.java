@@ -0,0 +1,68 @@
+package com.imagepipeline.image;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Test pictures and pixel comparisons shared by the resampling tests.
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+    /**
+     * Draws a gradient crossed by antialiased lines and a filled oval, so that a resize
+     * has smooth areas as well as hard edges to get right.
+     *
+     * @param width  the width.
+     * @param height the height.
+     * @return the RGB picture.
+     */
+    static BufferedImage picture(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.WHITE);
+        g.setStroke(new BasicStroke(6));
+        for (int x = 0; x < width; x += 120) {
+            g.drawLine(x, 0, width - x, height);
+        }
+        g.setColor(Color.RED);
+        g.fillOval(width / 4, height / 4, width / 3, height / 3);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * @param image the image.
+     * @return the packed RGB pixels of the image, row by row.
+     */
+    static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    /**
+     * @param a an image.
+     * @param b an image of the same size.
+     * @return the largest difference between two corresponding colour samples.
+     */
+    static int maxDifference(BufferedImage a, BufferedImage b) {
+        int[] pa = pixels(a);
+        int[] pb = pixels(b);
+        int max = 0;
+        for (int i = 0; i < pa.length; i++) {
+            for (int shift = 0; shift < 24; shift += 8) {
+                max = Math.max(max, Math.abs((pa[i] >> shift & 0xff) - (pb[i] >> shift & 0xff)));
+            }
+        }
+        return max;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.image.SpooledFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "pipeline.admission.max-in-flight-jobs=1",
+        "pipeline.admission.overflow=spool",
+        "pipeline.admission.max-spooled-jobs=1",
+        "pipeline.spool.directory=${java.io.tmpdir}/image-pipeline-test/spool"
+})
+class AdmissionControlServiceTest {
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @MockitoBean
+    private ImageProcessingService imageProcessingService;
+
+    @Test
+    void testSpoolsWhenSaturatedAndRejectsWhenSpoolIsFull() throws IOException {
+        CompletableFuture<Void> firstJob = new CompletableFuture<>();
+        CompletableFuture<Void> spooledJob = new CompletableFuture<>();
+        when(imageProcessingService.processImage(eq("job-1"), any(SpooledFile.class), isNull())).thenReturn(firstJob);
+        when(imageProcessingService.processImage(eq("job-2"), any(SpooledFile.class), isNull())).thenReturn(spooledJob);
+
+        assertEquals(AdmissionControlService.Admission.ADMITTED, admissionControlService.submit("job-1", upload()));
+        assertEquals(AdmissionControlService.Admission.QUEUED, admissionControlService.submit("job-2", upload()));
+        assertEquals(AdmissionControlService.Admission.REJECTED, admissionControlService.submit("job-3", upload()));
+        assertEquals(1, admissionControlService.getInFlightJobs());
+        assertEquals(1, admissionControlService.getSpooledJobs());
+        verify(imageProcessingService, never()).processImage(eq("job-2"), any(MultipartFile.class), any());
+
+        // Admitted jobs run from their spooled copy too.
+        verify(imageProcessingService).processImage(eq("job-1"), any(SpooledFile.class), isNull());
+
+        // Finishing the running job starts the spooled one from disk.
+        firstJob.complete(null);
+        verify(imageProcessingService).processImage(eq("job-2"), any(SpooledFile.class), isNull());
+        assertEquals(0, admissionControlService.getSpooledJobs());
+
+        // The spooled file is removed once its job ends.
+        spooledJob.complete(null);
+        assertEquals(0, admissionControlService.getInFlightJobs());
+        assertFalse(Files.exists(Path.of(System.getProperty("java.io.tmpdir"),
+                "image-pipeline-test", "spool", "job-2.bin")));
+    }
+
+    private static MockMultipartFile upload() {
+        return new MockMultipartFile("file", "test.jpg", "image/jpeg", new byte[1024]);
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.image.SpooledFile;
+import com.imagepipeline.model.BatchProgress;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "pipeline.spool.directory=${java.io.tmpdir}/image-pipeline-test/batch-spool",
+        "pipeline.admission.batch-max-file-size=64B"
+})
+class BatchUploadServiceTest {
+
+    @Autowired
+    private BatchUploadService batchUploadService;
+
+    @Autowired
+    private ProgressTrackerService progressTrackerService;
+
+    @MockitoBean
+    private AdmissionControlService admissionControlService;
+
+    @Test
+    void testZipEntriesAreSpooledAndAdmittedInOrder() throws Exception {
+        List<byte[]> contents = List.of(bytes("first"), bytes("second"));
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry("photos/"));
+            out.putNextEntry(new ZipEntry("photos/a.jpg"));
+            out.write(contents.get(0));
+            out.putNextEntry(new ZipEntry("__MACOSX/photos/._a.jpg"));
+            out.write(bytes("resource fork"));
+            out.putNextEntry(new ZipEntry("photos/.DS_Store"));
+            out.write(bytes("finder"));
+            out.putNextEntry(new ZipEntry("photos/b.png"));
+            out.write(contents.get(1));
+        }
+        ArgumentCaptor<SpooledFile> files = ArgumentCaptor.forClass(SpooledFile.class);
+        when(admissionControlService.admit(anyString(), files.capture(), any(Duration.class))).thenReturn(true);
+
+        BatchUploadService.Batch batch = batchUploadService.start();
+        batchUploadService.importArchive(batch, new ByteArrayInputStream(zip.toByteArray()),
+                BatchUploadService.ArchiveFormat.ZIP);
+        batchUploadService.finish(batch);
+
+        assertEquals(2, files.getAllValues().size());
+        assertEquals("a.jpg", files.getAllValues().get(0).getOriginalFilename());
+        assertEquals("image/jpeg", files.getAllValues().get(0).getContentType());
+        assertEquals("b.png", files.getAllValues().get(1).getOriginalFilename());
+        for (int i = 0; i < 2; i++) {
+            assertArrayEquals(contents.get(i), Files.readAllBytes(files.getAllValues().get(i).getPath()));
+        }
+        BatchProgress progress = batchUploadService.getProgress(batch.getId()).orElseThrow();
+        assertFalse(progress.isReceiving());
+        assertEquals(2, progress.getFiles());
+        assertEquals(2, progress.getAdmitted());
+    }
+
+    @Test
+    void testRejectedEntriesAreCountedAndProgressIsAggregated() throws Exception {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(new GzipCompressorOutputStream(tar))) {
+            for (String name : List.of("1.jpg", "2.jpg", "3.jpg")) {
+                TarArchiveEntry entry = new TarArchiveEntry(name);
+                entry.setSize(4);
+                out.putArchiveEntry(entry);
+                out.write(bytes(name.substring(0, 1) + "abc"));
+                out.closeArchiveEntry();
+            }
+        }
+        ArgumentCaptor<String> jobIds = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SpooledFile> files = ArgumentCaptor.forClass(SpooledFile.class);
+        when(admissionControlService.admit(jobIds.capture(), files.capture(), any(Duration.class)))
+                .thenReturn(true, true, false);
+
+        BatchUploadService.Batch batch = batchUploadService.start();
+        batchUploadService.importArchive(batch, new ByteArrayInputStream(tar.toByteArray()),
+                BatchUploadService.ArchiveFormat.TAR_GZIP);
+        progressTrackerService.setProgress(jobIds.getAllValues().get(0), 100);
+        progressTrackerService.setProgress(jobIds.getAllValues().get(1), 50);
+
+        BatchProgress progress = batchUploadService.getProgress(batch.getId()).orElseThrow();
+        assertEquals(3, progress.getFiles());
+        assertEquals(2, progress.getAdmitted());
+        assertEquals(1, progress.getRejected());
+        assertEquals(1, progress.getCompleted());
+        assertEquals(75, progress.getProgress());
+        assertEquals(0, progress.getFailed());
+        verify(admissionControlService, times(3)).admit(anyString(), any(SpooledFile.class), any(Duration.class));
+        // The rejected entry is removed from the spool.
+        assertTrue(Files.exists(files.getAllValues().get(0).getPath()));
+        assertFalse(Files.exists(files.getAllValues().get(2).getPath()));
+
+        // A failed job is counted, and ends as far as the batch's progress is concerned.
+        progressTrackerService.setFailed(jobIds.getAllValues().get(1));
+        progress = batchUploadService.getProgress(batch.getId()).orElseThrow();
+        assertEquals(1, progress.getFailed());
+        assertEquals(1, progress.getCompleted());
+        assertEquals(100, progress.getProgress());
+    }
+
+    @Test
+    void testOversizedEntryIsRejectedAndTheBatchGoesOn() throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry("a.jpg"));
+            out.write(bytes("small"));
+            out.putNextEntry(new ZipEntry("huge.jpg"));
+            out.write(new byte[1000]);
+            out.putNextEntry(new ZipEntry("c.jpg"));
+            out.write(bytes("small too"));
+        }
+        ArgumentCaptor<SpooledFile> files = ArgumentCaptor.forClass(SpooledFile.class);
+        when(admissionControlService.admit(anyString(), files.capture(), any(Duration.class))).thenReturn(true);
+
+        BatchUploadService.Batch batch = batchUploadService.start();
+        batchUploadService.importArchive(batch, new ByteArrayInputStream(zip.toByteArray()),
+                BatchUploadService.ArchiveFormat.ZIP);
+        batchUploadService.finish(batch);
+
+        assertEquals(List.of("a.jpg", "c.jpg"),
+                files.getAllValues().stream().map(SpooledFile::getOriginalFilename).toList());
+        BatchProgress progress = batchUploadService.getProgress(batch.getId()).orElseThrow();
+        assertEquals(3, progress.getFiles());
+        assertEquals(2, progress.getAdmitted());
+        assertEquals(1, progress.getRejected());
+        // Nothing of the oversized entry is left in the spool.
+        try (Stream<Path> spooled = Files.list(files.getValue().getPath().getParent())) {
+            assertTrue(spooled.noneMatch(path -> path.getFileName().toString().endsWith(".part")));
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
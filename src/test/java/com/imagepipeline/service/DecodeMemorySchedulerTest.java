@@ -0,0 +1,109 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.ImageContext;
+import com.imagepipeline.image.ResampleFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecodeMemorySchedulerTest {
+
+    @Test
+    void testSmallJobsPassWaitingLargeOnes() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        DecodeMemoryScheduler scheduler = new DecodeMemoryScheduler(properties(1000), meterRegistry);
+
+        CompletableFuture<DecodeMemoryScheduler.Reservation> first = scheduler.reserve(600);
+        CompletableFuture<DecodeMemoryScheduler.Reservation> large = scheduler.reserve(700);
+        CompletableFuture<DecodeMemoryScheduler.Reservation> small = scheduler.reserve(300);
+
+        // The small job fits next to the first; the large one waits for room.
+        assertTrue(first.isDone());
+        assertTrue(small.isDone());
+        assertFalse(large.isDone());
+        assertEquals(900, scheduler.getReservedBytes());
+        assertEquals(1, scheduler.getWaitingJobs());
+
+        first.join().close();
+        // Closing twice releases once.
+        first.join().close();
+
+        assertTrue(large.isDone());
+        assertEquals(1000, scheduler.getReservedBytes());
+        assertEquals(0, scheduler.getWaitingJobs());
+        assertEquals(3, meterRegistry.get("pipeline.decode.memory.wait").timer().count());
+        assertEquals(1000, meterRegistry.get("pipeline.decode.memory.reserved").gauge().value());
+    }
+
+    @Test
+    void testOversizedJobRunsAlone() {
+        DecodeMemoryScheduler scheduler = new DecodeMemoryScheduler(properties(1000), new SimpleMeterRegistry());
+
+        CompletableFuture<DecodeMemoryScheduler.Reservation> running = scheduler.reserve(100);
+        CompletableFuture<DecodeMemoryScheduler.Reservation> oversized = scheduler.reserve(5000);
+        CompletableFuture<DecodeMemoryScheduler.Reservation> behind = scheduler.reserve(100);
+
+        // Jobs queue behind the oversized one so the reservations drain.
+        assertFalse(oversized.isDone());
+        assertFalse(behind.isDone());
+
+        running.join().close();
+        assertTrue(oversized.isDone());
+        assertFalse(behind.isDone());
+
+        oversized.join().close();
+        assertTrue(behind.isDone());
+    }
+
+    @Test
+    void testFootprintFromHeader() throws IOException {
+        DecodeMemoryScheduler scheduler = new DecodeMemoryScheduler(properties(1000), new SimpleMeterRegistry());
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        try (ImageContext image = new ImageContext(
+                new MockMultipartFile("file", "test.png", "image/png", png.toByteArray()));
+             ImageContext text = new ImageContext(
+                     new MockMultipartFile("file", "test.txt", "text/plain", "Hello World".getBytes()))) {
+            assertEquals(40 * 30 * 3, scheduler.footprint(image));
+            assertEquals(0, scheduler.footprint(text));
+        }
+    }
+
+    @Test
+    void testFootprintIncludesResampleWorkingSet() throws IOException {
+        PipelineProperties properties = properties(1000);
+        PipelineProperties.Rendition rendition = new PipelineProperties.Rendition();
+        rendition.setFilter(ResampleFilter.LANCZOS3);
+        properties.setRenditions(List.of(rendition));
+        DecodeMemoryScheduler scheduler = new DecodeMemoryScheduler(properties, new SimpleMeterRegistry());
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        try (ImageContext image = new ImageContext(
+                new MockMultipartFile("file", "test.png", "image/png", png.toByteArray()))) {
+            // The raster, plus three float planes per channel for the source, the horizontal pass and the output.
+            assertEquals(40 * 30 * 3 + 3 * 3 * 4 * 40 * 30, scheduler.footprint(image));
+        }
+    }
+
+    private static PipelineProperties properties(long maxReserved) {
+        PipelineProperties properties = new PipelineProperties();
+        properties.getDecode().setMaxReserved(DataSize.ofBytes(maxReserved));
+        return properties;
+    }
+
+}
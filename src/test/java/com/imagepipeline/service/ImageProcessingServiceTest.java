@@ -1,5 +1,9 @@
 package com.imagepipeline.service;
 
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.ImageContext;
+import com.imagepipeline.image.SpooledFile;
+import com.imagepipeline.model.ImageMetadata;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -7,13 +11,31 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -27,6 +49,15 @@ class ImageProcessingServiceTest {
     @Autowired
     private ProgressTrackerService progressTrackerService;
 
+    @Autowired
+    private DecodeMemoryScheduler decodeMemoryScheduler;
+
+    @Autowired
+    private DeduplicationIndex deduplicationIndex;
+
+    @Autowired
+    private PipelineProperties pipelineProperties;
+
     @MockitoBean
     private S3StorageService s3StorageService;
 
@@ -45,10 +76,15 @@ class ImageProcessingServiceTest {
         MultipartFile file = new MockMultipartFile("file", "test.txt", "text/plain", "Hello World".getBytes());
 
         // Stub dependent services to simply succeed.
-        when(s3StorageService.uploadToS3(any(MultipartFile.class))).thenReturn("http://s3.amazonaws.com/dummy/test.txt");
-        doNothing().when(metadataService).extractAndStoreMetadata(any(MultipartFile.class), anyString());
-        doNothing().when(thumbnailService).generateThumbnail(any(MultipartFile.class));
-        doNothing().when(notificationService).notifyImageUpload(anyString());
+        when(s3StorageService.uploadToS3(anyString(), any(MultipartFile.class)))
+                .thenReturn(CompletableFuture.completedFuture("http://s3.amazonaws.com/dummy/test.txt"));
+        when(thumbnailService.generateRenditions(any(ImageContext.class)))
+                .thenReturn(CompletableFuture.completedFuture(List.of()));
+        when(metadataService.extractMetadata(any(ImageContext.class)))
+                .thenReturn(ImageMetadata.builder().imageId("image123").build());
+        when(metadataService.storeMetadata(any(ImageMetadata.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(notificationService.notifyImageUpload(any(ImageMetadata.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
 
         String jobId = "job123";
 
@@ -61,9 +97,144 @@ class ImageProcessingServiceTest {
         assertEquals(100, progress);
 
         // Verify that each dependency was called exactly once.
-        verify(s3StorageService, times(1)).uploadToS3(any(MultipartFile.class));
-        verify(metadataService, times(1)).extractAndStoreMetadata(any(MultipartFile.class), anyString());
-        verify(thumbnailService, times(1)).generateThumbnail(any(MultipartFile.class));
-        verify(notificationService, times(1)).notifyImageUpload(anyString());
+        verify(s3StorageService, times(1)).uploadToS3(anyString(), any(MultipartFile.class));
+        verify(thumbnailService, times(1)).generateRenditions(any(ImageContext.class));
+        verify(metadataService, times(1)).extractMetadata(any(ImageContext.class));
+        verify(metadataService, times(1)).storeMetadata(argThat(metadata ->
+                "http://s3.amazonaws.com/dummy/test.txt".equals(metadata.getImageUrl())));
+        verify(notificationService, times(1)).notifyImageUpload(argThat(metadata ->
+                "http://s3.amazonaws.com/dummy/test.txt".equals(metadata.getImageUrl())));
+    }
+
+    @Test
+    void testUploadAndRenditionsRunConcurrently() throws Exception {
+        MultipartFile file = new MockMultipartFile("file", "test.txt", "text/plain", "Hello World".getBytes());
+        CountDownLatch renditionsStarted = new CountDownLatch(1);
+
+        // The upload only finishes once rendition generation has started, which deadlocks a sequential pipeline.
+        when(s3StorageService.uploadToS3(anyString(), any(MultipartFile.class))).thenAnswer(invocation ->
+                CompletableFuture.supplyAsync(() -> {
+                    try {
+                        assertTrue(renditionsStarted.await(5, TimeUnit.SECONDS),
+                                "renditions did not start during the upload");
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return "http://s3.amazonaws.com/dummy/test.txt";
+                }));
+        when(thumbnailService.generateRenditions(any(ImageContext.class))).thenAnswer(invocation -> {
+            renditionsStarted.countDown();
+            return CompletableFuture.completedFuture(List.of());
+        });
+        when(metadataService.extractMetadata(any(ImageContext.class)))
+                .thenReturn(ImageMetadata.builder().imageId("image456").build());
+        when(metadataService.storeMetadata(any(ImageMetadata.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(notificationService.notifyImageUpload(any(ImageMetadata.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        imageProcessingService.processImage("job456", file).get(10, TimeUnit.SECONDS);
+
+        assertEquals(100, progressTrackerService.getProgress("job456"));
+    }
+
+    @Test
+    void testDecodeMemoryIsReleasedBeforeTheFinalStages() throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "png", png);
+        MultipartFile file = new MockMultipartFile("file", "test.png", "image/png", png.toByteArray());
+        CompletableFuture<Void> notified = new CompletableFuture<>();
+        List<ImageContext> contexts = new CopyOnWriteArrayList<>();
+
+        when(s3StorageService.uploadToS3(anyString(), any(MultipartFile.class)))
+                .thenReturn(CompletableFuture.completedFuture("http://s3.amazonaws.com/dummy/test.png"));
+        when(thumbnailService.generateRenditions(any(ImageContext.class))).thenAnswer(invocation -> {
+            ImageContext context = invocation.getArgument(0);
+            context.getImage();
+            contexts.add(context);
+            return CompletableFuture.completedFuture(List.of());
+        });
+        when(metadataService.extractMetadata(any(ImageContext.class)))
+                .thenReturn(ImageMetadata.builder().imageId("image789").build());
+        when(metadataService.storeMetadata(any(ImageMetadata.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(notificationService.notifyImageUpload(any(ImageMetadata.class))).thenReturn(notified);
+
+        CompletableFuture<Void> job = imageProcessingService.processImage("job789", file);
+        verify(notificationService, timeout(5000)).notifyImageUpload(any(ImageMetadata.class));
+
+        // The notification is still pending, but nothing holds decode memory any more.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (decodeMemoryScheduler.getReservedBytes() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, decodeMemoryScheduler.getReservedBytes());
+        assertFalse(job.isDone());
+        assertThrows(IOException.class, () -> contexts.get(0).getImage());
+        assertEquals(64, contexts.get(0).getWidth());
+        notified.complete(null);
+        job.get(10, TimeUnit.SECONDS);
+        assertThrows(IOException.class, () -> contexts.get(0).getWidth());
+    }
+
+    @Test
+    void testRejectedStageFailsTheJobAndReleasesItsDuplicates() throws Exception {
+        Executor rejecting = task -> {
+            throw new RejectedExecutionException("Executor saturated");
+        };
+        ImageProcessingService saturated = new ImageProcessingService(s3StorageService, metadataService,
+                thumbnailService, progressTrackerService, notificationService, deduplicationIndex,
+                decodeMemoryScheduler, pipelineProperties, rejecting, rejecting);
+        String hash = "1e".repeat(32);
+        when(s3StorageService.uploadToS3(anyString(), any(MultipartFile.class)))
+                .thenReturn(CompletableFuture.completedFuture("http://s3.amazonaws.com/dummy/a.jpg"));
+
+        // The rejection fails the job rather than escaping from processImage.
+        CompletableFuture<Void> first = saturated.processImage("job-rejected-1",
+                new SpooledFile(Path.of("first.bin"), "a.jpg", "image/jpeg", 11, hash));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+
+        // The failed claim is settled, so a duplicate is processed again instead of waiting forever.
+        CompletableFuture<Void> second = saturated.processImage("job-rejected-2",
+                new SpooledFile(Path.of("second.bin"), "b.jpg", "image/jpeg", 11, hash));
+        assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testDuplicateUploadSkipsProcessing() throws Exception {
+        String hash = "0f".repeat(32);
+        MultipartFile first = new SpooledFile(Path.of("first.bin"), "a.jpg", "image/jpeg", 11, hash);
+        MultipartFile second = new SpooledFile(Path.of("second.bin"), "b.jpg", "image/jpeg", 11, hash);
+        CompletableFuture<String> upload = new CompletableFuture<>();
+
+        when(s3StorageService.uploadToS3(anyString(), any(MultipartFile.class))).thenReturn(upload);
+        when(thumbnailService.generateRenditions(any(ImageContext.class)))
+                .thenReturn(CompletableFuture.completedFuture(List.of()));
+        when(metadataService.extractMetadata(any(ImageContext.class))).thenAnswer(invocation ->
+                ImageMetadata.builder().imageId(invocation.<ImageContext>getArgument(0).getImageId()).build());
+        when(metadataService.storeMetadata(any(ImageMetadata.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(notificationService.notifyImageUpload(any(ImageMetadata.class)))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        // The duplicate arrives while the first job is still uploading, and waits for it.
+        CompletableFuture<Void> firstJob = imageProcessingService.processImage("job-first", first);
+        CompletableFuture<Void> secondJob = imageProcessingService.processImage("job-second", second);
+        assertNotEquals(100, progressTrackerService.getProgress("job-second"));
+        upload.complete("http://s3.amazonaws.com/dummy/a.jpg");
+        firstJob.get(10, TimeUnit.SECONDS);
+        secondJob.get(10, TimeUnit.SECONDS);
+
+        // A later duplicate completes at once.
+        MultipartFile third = new SpooledFile(Path.of("third.bin"), "c.jpg", "image/jpeg", 11, hash);
+        imageProcessingService.processImage("job-third", third).get(10, TimeUnit.SECONDS);
+
+        String imageId = progressTrackerService.getImageId("job-first");
+        assertEquals(imageId, progressTrackerService.getImageId("job-second"));
+        assertEquals(imageId, progressTrackerService.getImageId("job-third"));
+        assertEquals(100, progressTrackerService.getProgress("job-second"));
+        assertEquals(100, progressTrackerService.getProgress("job-third"));
+        verify(s3StorageService, times(1)).uploadToS3(anyString(), any(MultipartFile.class));
+        verify(thumbnailService, times(1)).generateRenditions(any(ImageContext.class));
+        verify(metadataService, times(1)).storeMetadata(argThat(metadata -> hash.equals(metadata.getContentHash())));
+        verify(s3StorageService, never()).uploadToS3(anyString(), argThat(file -> file == second || file == third));
     }
 }
@@ -1,26 +1,33 @@
 package com.imagepipeline.service;
 
 import com.imagepipeline.config.AwsProperties;
+import com.imagepipeline.image.ImageContext;
+import com.imagepipeline.model.ImageMetadata;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 class MetadataServiceTest {
@@ -32,10 +39,13 @@ class MetadataServiceTest {
     private AwsProperties awsProperties;
 
     @MockitoBean
-    private DynamoDbClient dynamoDbClient;
+    private DynamoDbAsyncClient dynamoDbClient;
 
     @Test
     void testExtractAndStoreMetadata() throws IOException {
+        when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(BatchWriteItemResponse.builder().build()));
+
         // Create a valid dummy image.
         int width = 100;
         int height = 100;
@@ -56,10 +66,18 @@ class MetadataServiceTest {
         MultipartFile file = new MockMultipartFile("file", "test.png", "image/png", imageBytes);
 
         // Call the metadata extraction and storage method.
-        metadataService.extractAndStoreMetadata(file, "http://s3.amazonaws.com/dummy/test.png");
+        try (ImageContext context = new ImageContext(file)) {
+            ImageMetadata metadata = metadataService.extractMetadata(context);
+            assertEquals(width, metadata.getWidth());
+            assertEquals(height, metadata.getHeight());
+            metadataService.storeMetadata(metadata.toBuilder()
+                    .imageUrl("http://s3.amazonaws.com/dummy/test.png")
+                    .renditions(List.of())
+                    .build()).join();
+        }
 
-        // Verify that the DynamoDB client's putItem method was called.
-        verify(dynamoDbClient, times(1)).putItem(any(PutItemRequest.class));
+        // Verify that the item was written through a batch write.
+        verify(dynamoDbClient, times(1)).batchWriteItem(any(BatchWriteItemRequest.class));
     }
 
 }
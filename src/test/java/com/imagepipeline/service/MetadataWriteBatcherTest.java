@@ -0,0 +1,107 @@
+package com.imagepipeline.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "aws.dynamodb.table=ImageMetadata",
+        "aws.dynamodb.batch-linger=50ms",
+        "aws.dynamodb.batch-max-attempts=3"
+})
+class MetadataWriteBatcherTest {
+
+    @Autowired
+    private MetadataWriteBatcher metadataWriteBatcher;
+
+    @MockitoBean
+    private DynamoDbAsyncClient dynamoDbClient;
+
+    @Test
+    void testGroupsItemsIntoBatchesOfAtMost25() {
+        ConcurrentLinkedQueue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+        when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            batchSizes.add(request.requestItems().get("ImageMetadata").size());
+            return CompletableFuture.completedFuture(BatchWriteItemResponse.builder().build());
+        });
+
+        // 25 items fill a batch at once; the remaining 5 go out when the linger time expires.
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(metadataWriteBatcher.put(item("image-" + i)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).orTimeout(5, TimeUnit.SECONDS).join();
+
+        assertEquals(List.of(5, 25), batchSizes.stream().sorted().toList());
+    }
+
+    @Test
+    void testRetriesUnprocessedItemsAndCompletesEachItemWhenWritten() {
+        AtomicBoolean throttled = new AtomicBoolean();
+        when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            List<WriteRequest> writes = request.requestItems().get("ImageMetadata");
+            // The first call leaves the second item unprocessed.
+            if (throttled.compareAndSet(false, true)) {
+                return CompletableFuture.completedFuture(BatchWriteItemResponse.builder()
+                        .unprocessedItems(Map.of("ImageMetadata", List.of(writes.get(1))))
+                        .build());
+            }
+            return CompletableFuture.completedFuture(BatchWriteItemResponse.builder().build());
+        });
+
+        CompletableFuture<Void> first = metadataWriteBatcher.put(item("image-a"));
+        CompletableFuture<Void> second = metadataWriteBatcher.put(item("image-b"));
+        metadataWriteBatcher.flush();
+
+        first.orTimeout(5, TimeUnit.SECONDS).join();
+        second.orTimeout(5, TimeUnit.SECONDS).join();
+        verify(dynamoDbClient, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    void testFailsItemsThatStayUnprocessed() {
+        when(dynamoDbClient.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(
+                    BatchWriteItemResponse.builder().unprocessedItems(request.requestItems()).build());
+        });
+
+        CompletableFuture<Void> future = metadataWriteBatcher.put(item("image-x"));
+        metadataWriteBatcher.flush();
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> future.orTimeout(5, TimeUnit.SECONDS).join());
+        assertTrue(error.getCause().getMessage().contains("unprocessed"));
+        verify(dynamoDbClient, times(3)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    private static Map<String, AttributeValue> item(String imageId) {
+        return Map.of("imageId", AttributeValue.builder().s(imageId).build());
+    }
+
+}
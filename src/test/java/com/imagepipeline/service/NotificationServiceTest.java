@@ -1,37 +1,105 @@
 package com.imagepipeline.service;
 
-import com.imagepipeline.config.AwsProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imagepipeline.model.ImageMetadata;
+import com.imagepipeline.model.RenditionInfo;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
-import software.amazon.awssdk.services.sns.SnsClient;
-import software.amazon.awssdk.services.sns.model.PublishRequest;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+        "aws.sns.digest.enabled=true",
+        "aws.sns.digest.max-images=2"
+})
 class NotificationServiceTest {
 
     @Autowired
     private NotificationService notificationService;
 
     @Autowired
-    private AwsProperties awsProperties;
+    private ObjectMapper objectMapper;
 
     @MockitoBean
-    private SnsClient snsClient;
+    private SnsAsyncClient snsClient;
 
     @Test
-    void testNotifyImageUpload() {
-        String imageUrl = "http://s3.amazonaws.com/dummy/test.jpg";
+    void testNotifyImageUploadPublishesJsonEventsAndDigest() throws Exception {
+        ConcurrentLinkedQueue<PublishBatchRequestEntry> published = new ConcurrentLinkedQueue<>();
+        when(snsClient.publishBatch(any(PublishBatchRequest.class))).thenAnswer(invocation -> {
+            PublishBatchRequest request = invocation.getArgument(0);
+            published.addAll(request.publishBatchRequestEntries());
+            return CompletableFuture.completedFuture(PublishBatchResponse.builder().build());
+        });
+
+        // Two uploads fill the digest, so it is published alongside the two individual messages.
+        notificationService.notifyImageUpload(metadata("image-1")).get(5, TimeUnit.SECONDS);
+        notificationService.notifyImageUpload(metadata("image-2")).get(5, TimeUnit.SECONDS);
+        notificationService.flushDigest();
+        await(() -> published.size() == 3);
 
-        // Invoke the notification method.
-        notificationService.notifyImageUpload(imageUrl);
+        List<JsonNode> events = published.stream()
+                .filter(entry -> entry.messageAttributes().get("type").stringValue().equals("image.uploaded"))
+                .map(entry -> readTree(entry.message()))
+                .toList();
+        assertEquals(2, events.size());
+        JsonNode event = events.stream().filter(node -> node.get("imageId").asText().equals("image-1")).findFirst()
+                .orElseThrow();
+        assertEquals("http://s3.amazonaws.com/dummy/image-1.jpg", event.get("imageUrl").asText());
+        assertEquals(1600, event.get("width").asInt());
+        assertEquals("jpeg", event.get("format").asText());
+        assertEquals(1, event.get("renditionUrls").size());
 
-        // Verify that the SNS clients publish method was called.
-        verify(snsClient, times(1)).publish(any(PublishRequest.class));
+        JsonNode digest = published.stream()
+                .filter(entry -> entry.messageAttributes().get("type").stringValue().equals("image.uploaded.digest"))
+                .map(entry -> readTree(entry.message()))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(2, digest.get("count").asInt());
+        assertEquals(2, digest.get("images").size());
     }
+
+    private static ImageMetadata metadata(String imageId) {
+        return ImageMetadata.builder()
+                .imageId(imageId)
+                .imageUrl("http://s3.amazonaws.com/dummy/" + imageId + ".jpg")
+                .width(1600)
+                .height(1200)
+                .format("jpeg")
+                .renditions(List.of(new RenditionInfo("small", "renditions/" + imageId + "/small.jpg", 480, 360, 1000)))
+                .build();
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean(), "timed out waiting for messages");
+    }
+
 }
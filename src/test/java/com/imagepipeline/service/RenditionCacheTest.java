@@ -0,0 +1,87 @@
+package com.imagepipeline.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+class RenditionCacheTest {
+
+    @Autowired
+    private RenditionCache renditionCache;
+
+    @MockitoBean
+    private S3AsyncClient s3Client;
+
+    @Test
+    void testConcurrentMissesShareOneFetch() {
+        byte[] bytes = {1, 2, 3};
+        CompletableFuture<ResponseBytes<GetObjectResponse>> fetch = new CompletableFuture<>();
+        when(s3Client.getObject(argThat((GetObjectRequest request) -> request.key().equals("renditions/a/small.jpg")),
+                any(AsyncResponseTransformer.class))).thenReturn(fetch);
+
+        CompletableFuture<RenditionCache.Rendition> first = renditionCache.get("renditions/a/small.jpg");
+        CompletableFuture<RenditionCache.Rendition> second = renditionCache.get("renditions/a/small.jpg");
+        fetch.complete(ResponseBytes.fromByteArray(
+                GetObjectResponse.builder().eTag("\"abc\"").contentType("image/jpeg").build(), bytes));
+
+        assertSame(first.join(), second.join());
+        assertArrayEquals(bytes, first.join().bytes());
+        assertEquals("\"abc\"", first.join().eTag());
+        // Served from the heap tier from now on.
+        renditionCache.get("renditions/a/small.jpg").join();
+        verify(s3Client, times(1)).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+    }
+
+    @Test
+    void testMissingRenditionIsNotCached() {
+        when(s3Client.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+                .thenReturn(CompletableFuture.failedFuture(NoSuchKeyException.builder().message("missing").build()));
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> renditionCache.get("renditions/b/small.jpg").join());
+        assertInstanceOf(NoSuchKeyException.class, error.getCause());
+        assertThrows(CompletionException.class, () -> renditionCache.get("renditions/b/small.jpg").join());
+        verify(s3Client, times(2)).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+    }
+
+    @Test
+    void testDiskTierRoundTrip() throws Exception {
+        Path directory = Files.createTempDirectory("rendition-cache");
+        RenditionDiskCache diskCache = new RenditionDiskCache(directory, 1024 * 1024, Runnable::run);
+        RenditionCache.Rendition rendition = new RenditionCache.Rendition(new byte[]{4, 5, 6}, "image/jpeg", "\"e\"");
+
+        assertNull(diskCache.get("renditions/c/small.jpg"));
+        diskCache.put("renditions/c/small.jpg", rendition);
+
+        RenditionCache.Rendition read = diskCache.get("renditions/c/small.jpg");
+        assertArrayEquals(rendition.bytes(), read.bytes());
+        assertEquals("image/jpeg", read.contentType());
+        assertEquals("\"e\"", read.eTag());
+    }
+
+}
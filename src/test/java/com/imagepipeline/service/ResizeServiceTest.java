@@ -0,0 +1,73 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.image.FitMode;
+import com.imagepipeline.image.OutputFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+class ResizeServiceTest {
+
+    @Autowired
+    private ResizeService resizeService;
+
+    @MockitoBean
+    private S3AsyncClient s3Client;
+
+    @Test
+    void testVariantsAreNormalizedAndValidated() {
+        assertEquals(resizeService.variant("a", 256, null, null, "jpg").key(),
+                resizeService.variant("a", 256, null, "FIT", "jpeg").key());
+        assertEquals(new ResizeService.Variant("a", 128, 128, FitMode.CROP, OutputFormat.PNG),
+                resizeService.variant("a", null, 128, "crop", "png"));
+        assertThrows(IllegalArgumentException.class, () -> resizeService.variant("a", 257, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> resizeService.variant("a", null, null, null, null));
+        assertThrows(IllegalArgumentException.class, () -> resizeService.variant("a", 256, null, null, "bmp"));
+    }
+
+    @Test
+    void testConcurrentRequestsShareOneRender() throws Exception {
+        // A 4:3 source rendition; the smallest one that covers twice 256 is "medium".
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(1080, 810, BufferedImage.TYPE_INT_RGB), "jpg", baos);
+        CompletableFuture<ResponseBytes<GetObjectResponse>> fetch = new CompletableFuture<>();
+        when(s3Client.getObject(argThat((GetObjectRequest request) -> request.key().equals("renditions/img/medium.jpg")),
+                any(AsyncResponseTransformer.class))).thenReturn(fetch);
+
+        ResizeService.Variant variant = resizeService.variant("img", 256, 256, "crop", "png");
+        CompletableFuture<RenditionCache.Rendition> first = resizeService.resize(variant);
+        CompletableFuture<RenditionCache.Rendition> second = resizeService.resize(variant);
+        fetch.complete(ResponseBytes.fromByteArray(GetObjectResponse.builder().eTag("\"src\"").build(),
+                baos.toByteArray()));
+
+        assertSame(first.join(), second.join());
+        BufferedImage resized = ImageIO.read(new ByteArrayInputStream(first.join().bytes()));
+        assertEquals(256, resized.getWidth());
+        assertEquals(256, resized.getHeight());
+        assertEquals("image/png", first.join().contentType());
+        verify(s3Client, times(1)).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+    }
+
+}
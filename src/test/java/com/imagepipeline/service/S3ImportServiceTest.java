@@ -0,0 +1,249 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.config.PipelineProperties;
+import com.imagepipeline.image.SpooledFile;
+import com.imagepipeline.model.S3ImportStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "pipeline.s3-import.directory=${java.io.tmpdir}/image-pipeline-test/s3-import",
+        "pipeline.s3-import.page-size=3",
+        "pipeline.s3-import.concurrency=2",
+        "pipeline.admission.max-in-flight-jobs=1"
+})
+class S3ImportServiceTest {
+
+    @Autowired
+    private S3ImportService s3ImportService;
+
+    @Autowired
+    private PipelineProperties pipelineProperties;
+
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @MockitoBean
+    private S3AsyncClient s3Client;
+
+    @MockitoBean
+    private ImageProcessingService imageProcessingService;
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    @Test
+    void testImportPagesThroughPrefixAndSkipsNonImages() throws Exception {
+        objects.put("2024/a.jpg", image("jpeg"));
+        objects.put("2024/b/", new byte[0]);
+        objects.put("2024/c.txt", "Hello World".getBytes());
+        objects.put("2024/d.png", image("png"));
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(request.continuationToken() == null
+                    ? page("page-2", "2024/a.jpg", "2024/b/", "2024/c.txt")
+                    : page(null, "2024/d.png"));
+        });
+        stubGetObject();
+        Map<String, SpooledFile> files = new ConcurrentHashMap<>();
+        Map<String, byte[]> contents = new ConcurrentHashMap<>();
+        List<Integer> inFlightJobs = new CopyOnWriteArrayList<>();
+        when(imageProcessingService.processImage(anyString(), any(SpooledFile.class), anyString()))
+                .thenAnswer(invocation -> {
+                    inFlightJobs.add(admissionControlService.getInFlightJobs());
+                    SpooledFile file = invocation.getArgument(1);
+                    files.put(invocation.getArgument(2), file);
+                    contents.put(invocation.getArgument(2), Files.readAllBytes(file.getPath()));
+                    return CompletableFuture.completedFuture(null);
+                });
+
+        S3ImportStatus started = s3ImportService.start("photos", "2024/");
+        S3ImportStatus status = awaitEnd(started.getImportId());
+
+        assertTrue(status.isCompleted());
+        assertNull(status.getError());
+        assertEquals(4, status.getListed());
+        assertEquals(2, status.getImported());
+        assertEquals(2, status.getSkipped());
+        assertEquals(0, status.getFailed());
+        assertEquals(List.of(), status.getFailedKeys());
+        assertEquals("2024/d.png", status.getCheckpoint());
+        // Each job is admitted against the shared limit of one job in flight.
+        assertEquals(List.of(1, 1), inFlightJobs);
+        assertEquals(0, admissionControlService.getInFlightJobs());
+
+        // The stored objects are the originals; only images are downloaded whole.
+        SpooledFile jpeg = files.get("https://s3.amazonaws.com/photos/2024/a.jpg");
+        assertEquals("a.jpg", jpeg.getOriginalFilename());
+        assertEquals("image/jpeg", jpeg.getContentType());
+        assertNotNull(jpeg.getContentHash());
+        assertArrayEquals(objects.get("2024/a.jpg"), contents.get("https://s3.amazonaws.com/photos/2024/a.jpg"));
+        assertEquals("image/png", files.get("https://s3.amazonaws.com/photos/2024/d.png").getContentType());
+        assertFalse(Files.exists(jpeg.getPath()));
+        verify(s3Client).listObjectsV2(argThat((ListObjectsV2Request request) ->
+                "page-2".equals(request.continuationToken()) && request.maxKeys() == 3));
+        verify(s3Client, never()).getObject(argThat((GetObjectRequest request) -> request.key().equals("2024/c.txt")
+                && request.range() == null), any(AsyncResponseTransformer.class));
+        verify(s3Client, never()).getObject(argThat((GetObjectRequest request) -> request.key().equals("2024/b/")),
+                any(AsyncResponseTransformer.class));
+
+        // The status survives in the checkpoint.
+        assertEquals(2, s3ImportService.getStatus(started.getImportId()).orElseThrow().getImported());
+    }
+
+    @Test
+    void testResumeStartsAfterCheckpointAndRetriesFailedKeys() throws Exception {
+        String importId = UUID.randomUUID().toString();
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("importId", importId);
+        checkpoint.setProperty("bucket", "photos");
+        checkpoint.setProperty("prefix", "");
+        checkpoint.setProperty("completed", "false");
+        checkpoint.setProperty("imported", "2");
+        checkpoint.setProperty("skipped", "0");
+        checkpoint.setProperty("failed", "1");
+        checkpoint.setProperty("startAfter", "b.jpg");
+        checkpoint.setProperty("failedKey.0", "a.jpg");
+        Path directory = Paths.get(pipelineProperties.getS3Import().getDirectory());
+        Files.createDirectories(directory);
+        try (OutputStream out = Files.newOutputStream(directory.resolve(importId + ".properties"))) {
+            checkpoint.store(out, null);
+        }
+
+        objects.put("a.jpg", image("jpeg"));
+        objects.put("c.jpg", image("jpeg"));
+        objects.put("d.jpg", image("jpeg"));
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+                .thenReturn(CompletableFuture.completedFuture(page(null, "c.jpg", "d.jpg")));
+        stubGetObject();
+        when(imageProcessingService.processImage(anyString(), any(SpooledFile.class),
+                eq("https://s3.amazonaws.com/photos/a.jpg"))).thenReturn(CompletableFuture.completedFuture(null));
+        when(imageProcessingService.processImage(anyString(), any(SpooledFile.class),
+                eq("https://s3.amazonaws.com/photos/c.jpg"))).thenReturn(CompletableFuture.completedFuture(null));
+        when(imageProcessingService.processImage(anyString(), any(SpooledFile.class),
+                eq("https://s3.amazonaws.com/photos/d.jpg")))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Unable to decode")));
+
+        assertTrue(s3ImportService.resume(importId).isPresent());
+        S3ImportStatus status = awaitEnd(importId);
+
+        verify(s3Client).listObjectsV2(argThat((ListObjectsV2Request request) -> "b.jpg".equals(request.startAfter())));
+        assertTrue(status.isCompleted());
+        // a.jpg is retried and imported; d.jpg fails in its place.
+        assertEquals(4, status.getImported());
+        assertEquals(1, status.getFailed());
+        assertEquals(List.of("d.jpg"), status.getFailedKeys());
+        assertEquals("d.jpg", status.getCheckpoint());
+
+        // A complete import with failures is resumed for its retries, and the failed keys survive in the checkpoint.
+        Properties saved = new Properties();
+        try (InputStream in = Files.newInputStream(directory.resolve(importId + ".properties"))) {
+            saved.load(in);
+        }
+        assertEquals("d.jpg", saved.getProperty("failedKey.0"));
+        when(imageProcessingService.processImage(anyString(), any(SpooledFile.class),
+                eq("https://s3.amazonaws.com/photos/d.jpg"))).thenReturn(CompletableFuture.completedFuture(null));
+        when(s3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+                .thenReturn(CompletableFuture.completedFuture(page(null)));
+        assertTrue(s3ImportService.resume(importId).isPresent());
+        status = awaitEnd(importId);
+
+        assertTrue(status.isCompleted());
+        assertEquals(5, status.getImported());
+        assertEquals(0, status.getFailed());
+        assertEquals(List.of(), status.getFailedKeys());
+    }
+
+    /**
+     * Serves the test objects; ranged requests get only the requested leading bytes.
+     */
+    private void stubGetObject() {
+        when(s3Client.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+                .thenAnswer(invocation -> {
+                    GetObjectRequest request = invocation.getArgument(0);
+                    byte[] bytes = objects.get(request.key());
+                    GetObjectResponse response = GetObjectResponse.builder()
+                            .contentType("binary/octet-stream")
+                            .build();
+                    if (request.range() != null) {
+                        int end = Integer.parseInt(request.range().substring(request.range().indexOf('-') + 1));
+                        return CompletableFuture.completedFuture(ResponseBytes.fromByteArray(response,
+                                Arrays.copyOf(bytes, Math.min(bytes.length, end + 1))));
+                    }
+                    return CompletableFuture.completedFuture(new ResponseInputStream<>(response,
+                            AbortableInputStream.create(new ByteArrayInputStream(bytes))));
+                });
+    }
+
+    private ListObjectsV2Response page(String nextContinuationToken, String... keys) {
+        return ListObjectsV2Response.builder()
+                .contents(Arrays.stream(keys)
+                        .map(key -> S3Object.builder().key(key).size((long) objects.get(key).length).build())
+                        .toList())
+                .isTruncated(nextContinuationToken != null)
+                .nextContinuationToken(nextContinuationToken)
+                .build();
+    }
+
+    private S3ImportStatus awaitEnd(String importId) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        S3ImportStatus status = s3ImportService.getStatus(importId).orElseThrow();
+        while (status.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = s3ImportService.getStatus(importId).orElseThrow();
+        }
+        assertFalse(status.isRunning());
+        return status;
+    }
+
+    private static byte[] image(String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+
+}
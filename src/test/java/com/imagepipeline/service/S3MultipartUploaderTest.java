@@ -0,0 +1,119 @@
+package com.imagepipeline.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "aws.s3.multipart-threshold=5MB",
+        "aws.s3.part-size=5MB",
+        "aws.s3.part-max-attempts=2"
+})
+class S3MultipartUploaderTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @Autowired
+    private S3StorageService s3StorageService;
+
+    @MockitoBean
+    private S3AsyncClient s3Client;
+
+    @Test
+    void testLargeFileUsesMultipartAndRetriesOnlyFailedPart() throws IOException {
+        // 12 MB with 5 MB parts: 5 + 5 + 2.
+        MultipartFile file = new MockMultipartFile("file", "big.jpg", "image/jpeg", new byte[12 * MB]);
+
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-1").build()));
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+        AtomicBoolean failedOnce = new AtomicBoolean();
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            if (request.partNumber() == 2 && failedOnce.compareAndSet(false, true)) {
+                return CompletableFuture.failedFuture(S3Exception.builder().message("transient").statusCode(500).build());
+            }
+            return CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build());
+        });
+
+        s3StorageService.uploadToS3(file).join();
+
+        // Three parts plus a single retry of part 2.
+        verify(s3Client, times(4)).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(s3Client).completeMultipartUpload(argThat((CompleteMultipartUploadRequest request) -> {
+            List<CompletedPart> parts = request.multipartUpload().parts();
+            return parts.size() == 3
+                    && parts.get(0).partNumber() == 1
+                    && parts.get(1).eTag().equals("etag-2")
+                    && parts.get(2).partNumber() == 3;
+        }));
+    }
+
+    @Test
+    void testExhaustedPartAbortsUpload() {
+        MultipartFile file = new MockMultipartFile("file", "big.jpg", "image/jpeg", new byte[6 * MB]);
+
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-2").build()));
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.failedFuture(S3Exception.builder().message("down").statusCode(503).build()));
+        when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+
+        CompletionException error = assertThrows(CompletionException.class, () -> s3StorageService.uploadToS3(file).join());
+        assertInstanceOf(IOException.class, error.getCause());
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testSmallFileUsesSinglePut() throws IOException {
+        MultipartFile file = new MockMultipartFile("file", "small.jpg", "image/jpeg", new byte[MB]);
+
+        when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        String url = s3StorageService.uploadToS3(file).join();
+
+        assertTrue(url.endsWith("_small.jpg"));
+        verify(s3Client, times(1)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+}
@@ -7,11 +7,12 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -27,22 +28,25 @@ class S3StorageServiceTest {
     private AwsProperties awsProperties;
 
     @MockitoBean
-    private S3Client s3Client;
+    private S3AsyncClient s3Client;
 
     @Test
-    void testUploadToS3() throws IOException {
+    void testUploadToS3() {
         // Create a dummy file.
         MultipartFile file = new MockMultipartFile("file", "test.txt", "text/plain", "Hello World".getBytes());
 
+        when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
         // Invoke the upload method.
-        String url = s3StorageService.uploadToS3(file);
+        String url = s3StorageService.uploadToS3(file).join();
 
         // Assert that the returned URL is not null and contains the bucket name.
         assertNotNull(url);
         assertTrue(url.contains(awsProperties.getS3().getBucket()));
 
         // Verify that the S3 client's putObject method was called exactly once.
-        verify(s3Client, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3Client, times(1)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
     }
 
 }
@@ -0,0 +1,49 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.model.SimilarImage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimilarityIndexTest {
+
+    @Test
+    void testFindsEveryHashWithinDistance() {
+        SimilarityIndex index = new SimilarityIndex(new SimpleMeterRegistry());
+        Random random = new Random(42);
+        long query = random.nextLong();
+        index.add("query", query);
+        for (int i = 0; i < 10_000; i++) {
+            index.add("random-" + i, random.nextLong());
+        }
+        // Near-duplicates whose differing bits are spread over all four chunks.
+        index.add("near-3", query ^ 0x0001_0000_0100_0001L);
+        index.add("near-9", query ^ 0x0103_0007_0003_0001L);
+        index.add("far-11", query ^ 0x0107_000F_0003_0001L);
+
+        List<SimilarImage> similar = index.findSimilar("query", 10, 20).orElseThrow();
+
+        // Matches agree with a brute-force scan; random hashes lie about 32 bits away.
+        assertEquals(List.of("near-3", "near-9"), similar.stream().map(SimilarImage::getImageId).toList());
+        assertEquals(3, similar.get(0).getDistance());
+        assertEquals(9, similar.get(1).getDistance());
+        assertTrue(index.findSimilar("missing", 10, 20).isEmpty());
+    }
+
+    @Test
+    void testReplacingAHashMovesTheImage() {
+        SimilarityIndex index = new SimilarityIndex(new SimpleMeterRegistry());
+        index.add("a", 0L);
+        index.add("b", 1L);
+        index.add("b", -1L);
+
+        assertTrue(index.findSimilar("a", 10, 20).orElseThrow().isEmpty());
+        assertEquals(2, index.size());
+    }
+
+}
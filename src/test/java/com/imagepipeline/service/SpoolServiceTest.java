@@ -0,0 +1,60 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.image.SpooledFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "pipeline.spool.directory=${java.io.tmpdir}/image-pipeline-test/spool-service")
+class SpoolServiceTest {
+
+    @Autowired
+    private SpoolService spoolService;
+
+    @MockitoBean
+    private AdmissionControlService admissionControlService;
+
+    @Test
+    void testSpoolRecoverAndComplete() throws Exception {
+        byte[] bytes = new byte[100_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        SpooledFile spooled = spoolService.spool("job-1",
+                new MockMultipartFile("file", "test.jpg", "image/jpeg", bytes));
+        assertEquals(bytes.length, spooled.getSize());
+        assertArrayEquals(bytes, Files.readAllBytes(spooled.getPath()));
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        assertEquals(hash, spooled.getContentHash());
+
+        // A leftover of an interrupted write is discarded; the complete entry is recovered.
+        Path partial = spooled.getPath().resolveSibling("job-2.bin.part");
+        Files.write(partial, new byte[10]);
+        List<SpoolService.SpooledJob> jobs = spoolService.recover();
+        assertEquals(1, jobs.size());
+        assertEquals("job-1", jobs.get(0).jobId());
+        assertEquals("test.jpg", jobs.get(0).file().getOriginalFilename());
+        assertEquals("image/jpeg", jobs.get(0).file().getContentType());
+        assertEquals(bytes.length, jobs.get(0).file().getSize());
+        assertEquals(hash, jobs.get(0).file().getContentHash());
+        assertFalse(Files.exists(partial));
+
+        spoolService.complete("job-1");
+        assertFalse(Files.exists(spooled.getPath()));
+        assertTrue(spoolService.recover().isEmpty());
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.imagepipeline.service;
+
+import com.imagepipeline.image.ImageContext;
+import com.imagepipeline.model.RenditionInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+class ThumbnailServiceTest {
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @MockitoBean
+    private S3AsyncClient s3Client;
+
+    @Test
+    void testGenerateRenditions() throws IOException {
+        when(s3Client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        // A 4:3 image smaller than the largest configured rendition.
+        BufferedImage image = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", baos);
+        MockMultipartFile file = new MockMultipartFile("file", "test.png", "image/png", baos.toByteArray());
+
+        List<RenditionInfo> renditions;
+        try (ImageContext context = new ImageContext("image-1", file)) {
+            renditions = thumbnailService.generateRenditions(context).join();
+        }
+
+        Map<String, RenditionInfo> byName = renditions.stream()
+                .collect(Collectors.toMap(RenditionInfo::getName, Function.identity()));
+        assertEquals(4, byName.size());
+        // Images are never upscaled.
+        assertSize(byName.get("large"), 1600, 1200);
+        assertSize(byName.get("medium"), 1080, 810);
+        assertSize(byName.get("small"), 480, 360);
+        // Crop renditions are square.
+        assertSize(byName.get("thumbnail"), 150, 150);
+        assertEquals("renditions/image-1/thumbnail.jpg", byName.get("thumbnail").getKey());
+        renditions.forEach(rendition -> assertTrue(rendition.getBytes() > 0));
+
+        // Every rendition is uploaded.
+        verify(s3Client, times(4)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+    }
+
+    private static void assertSize(RenditionInfo rendition, int width, int height) {
+        assertEquals(width, rendition.getWidth());
+        assertEquals(height, rendition.getHeight());
+    }
+
+}